@@ -0,0 +1,35 @@
+package com.openclassrooms.starterjwt;
+
+import javax.servlet.Filter;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.annotation.Schedules;
+
+/**
+ * Beans that must exist from startup even when {@code spring.main.lazy-initialization} is on, as
+ * in the fast-startup profile. Scheduled methods are only registered once their bean has been
+ * created, so a lazy bean would never run its jobs; servlet filters, the security chain among
+ * them, would otherwise be built by the first request.
+ */
+@Configuration
+public class LazyInitializationConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter scheduledBeansExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> !MethodIntrospector.selectMethods(beanType,
+                (MethodIntrospector.MetadataLookup<Boolean>) method ->
+                        AnnotatedElementUtils.hasAnnotation(method, Scheduled.class)
+                                || AnnotatedElementUtils.hasAnnotation(method, Schedules.class) ? Boolean.TRUE : null)
+                .isEmpty();
+    }
+
+    @Bean
+    static LazyInitializationExcludeFilter filterBeansExcludeFilter() {
+        return LazyInitializationExcludeFilter.forBeanTypes(Filter.class);
+    }
+}
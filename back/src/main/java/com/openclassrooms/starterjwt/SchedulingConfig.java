@@ -0,0 +1,16 @@
+package com.openclassrooms.starterjwt;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs the {@code @Scheduled} jobs (token purges, key rotation, series materialization,
+ * rollups, outbox polling). Setting {@code oc.app.scheduling.enabled=false} turns them all off,
+ * for tests and for instances that only serve requests.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "oc.app.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
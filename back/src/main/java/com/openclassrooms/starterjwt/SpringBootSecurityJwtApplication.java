@@ -2,12 +2,17 @@ package com.openclassrooms.starterjwt;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 
 @SpringBootApplication
 @EnableJpaAuditing
 public class SpringBootSecurityJwtApplication {
 	public static void main(String[] args) {
-    SpringApplication.run(SpringBootSecurityJwtApplication.class, args);
+    ConfigurableApplicationContext context = SpringApplication.run(SpringBootSecurityJwtApplication.class, args);
+    // Training run of the CDS archive (mvn -Pcds package): the JVM dumps the loaded classes on exit.
+    if (Boolean.getBoolean("oc.app.startup.exitAfterRefresh")) {
+      System.exit(SpringApplication.exit(context));
+    }
 	}
 }
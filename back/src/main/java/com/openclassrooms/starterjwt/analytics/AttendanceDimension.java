@@ -0,0 +1,44 @@
+package com.openclassrooms.starterjwt.analytics;
+
+import java.time.DayOfWeek;
+import java.util.Locale;
+
+/**
+ * How attendance statistics are grouped. The column expressions are constants, never built
+ * from request input.
+ */
+public enum AttendanceDimension {
+    TEACHER("teacher_id"),
+    WEEKDAY("WEEKDAY(day)"),
+    SLOT("hour");
+
+    private final String column;
+
+    AttendanceDimension(String column) {
+        this.column = column;
+    }
+
+    String getColumn() {
+        return column;
+    }
+
+    String label(int value) {
+        switch (this) {
+            case WEEKDAY:
+                // WEEKDAY() counts from 0 = Monday
+                return DayOfWeek.of(value + 1).name();
+            case SLOT:
+                return String.format(Locale.ROOT, "%02d:00", value);
+            default:
+                return String.valueOf(value);
+        }
+    }
+
+    /**
+     * Parses {@code teacher}, {@code weekday} or {@code slot}, ignoring case. Throws
+     * IllegalArgumentException otherwise.
+     */
+    public static AttendanceDimension parse(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,203 @@
+package com.openclassrooms.starterjwt.analytics;
+
+import com.openclassrooms.starterjwt.audit.ParticipationEvent;
+import com.openclassrooms.starterjwt.notification.SessionChangedEvent;
+import com.openclassrooms.starterjwt.payload.response.AttendanceStatResponse;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Attendance per day, teacher and hour, kept in ATTENDANCE_ROLLUP. Participation and session
+ * changes mark the days they touch; a background pass recomputes just those days from
+ * SESSIONS and PARTICIPATE, so the rollup is idempotent and heals itself. A nightly rebuild
+ * also catches sessions created or moved in bulk by series.
+ *
+ * <p>Days are always derived by the database, with the same DATE() the recompute groups by,
+ * so a JVM and a MySQL session in different time zones still agree on which day to refresh.
+ * Every instance schedules the rebuild; a MySQL named lock lets one of them run it and the
+ * others skip.
+ */
+@Service
+@Log4j2
+public class AttendanceRollupService {
+    static final String DELETE_DAY = "DELETE FROM ATTENDANCE_ROLLUP WHERE day = ?";
+
+    static final String INSERT_DAY = "INSERT INTO ATTENDANCE_ROLLUP (day, teacher_id, hour, sessions, participations) "
+            + "SELECT DATE(s.date), COALESCE(s.teacher_id, 0), HOUR(s.date), COUNT(DISTINCT s.id), COUNT(p.user_id) "
+            + "FROM SESSIONS s LEFT JOIN PARTICIPATE p ON p.session_id = s.id "
+            // Bounds given as text, so the database reads them in its own time zone.
+            + "WHERE s.date >= CAST(? AS DATETIME) AND s.date < CAST(? AS DATETIME) "
+            + "GROUP BY DATE(s.date), COALESCE(s.teacher_id, 0), HOUR(s.date)";
+
+    static final String DELETE_ALL = "DELETE FROM ATTENDANCE_ROLLUP";
+
+    static final String INSERT_ALL = "INSERT INTO ATTENDANCE_ROLLUP (day, teacher_id, hour, sessions, participations) "
+            + "SELECT DATE(s.date), COALESCE(s.teacher_id, 0), HOUR(s.date), COUNT(DISTINCT s.id), COUNT(p.user_id) "
+            + "FROM SESSIONS s LEFT JOIN PARTICIPATE p ON p.session_id = s.id "
+            + "WHERE s.date IS NOT NULL "
+            + "GROUP BY DATE(s.date), COALESCE(s.teacher_id, 0), HOUR(s.date)";
+
+    static final String SELECT_SESSION_DAYS = "SELECT DISTINCT DATE(date) FROM SESSIONS WHERE id IN (:ids)";
+
+    static final String SELECT_DAY = "SELECT DATE(?)";
+
+    // Held by the connection, so it is taken and released inside the rebuild's transaction.
+    static final String ACQUIRE_REBUILD_LOCK = "SELECT GET_LOCK('attendance_rollup_rebuild', 0)";
+
+    static final String RELEASE_REBUILD_LOCK = "SELECT RELEASE_LOCK('attendance_rollup_rebuild')";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Set<Long> dirtySessionIds = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    // Epoch millis of changed session dates, turned into days by the database.
+    private final Set<Long> dirtyInstants = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private final Set<LocalDate> dirtyDays = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    @Value("${oc.app.analytics.sessionCapacity:20}")
+    private int sessionCapacity = 20;
+
+    public AttendanceRollupService(JdbcTemplate jdbcTemplate,
+                                   NamedParameterJdbcTemplate namedJdbcTemplate,
+                                   TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onParticipationEvent(ParticipationEvent event) {
+        this.dirtySessionIds.add(event.getSessionId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onSessionChanged(SessionChangedEvent event) {
+        markDirty(event.getSession().getDate());
+        markDirty(event.getPreviousDate());
+    }
+
+    /**
+     * Recomputes the days touched since the previous pass. Days that fail stay marked.
+     */
+    @Scheduled(fixedDelayString = "${oc.app.analytics.refreshMs:10000}")
+    public void refreshDirtyDays() {
+        List<Long> sessionIds = drain(this.dirtySessionIds);
+        List<Long> instants = drain(this.dirtyInstants);
+        Set<LocalDate> days = new TreeSet<>(drain(this.dirtyDays));
+        try {
+            if (!sessionIds.isEmpty()) {
+                this.namedJdbcTemplate.queryForList(SELECT_SESSION_DAYS, new MapSqlParameterSource("ids", sessionIds),
+                        java.sql.Date.class).forEach(day -> days.add(day.toLocalDate()));
+            }
+            for (Long instant : instants) {
+                java.sql.Date day = this.jdbcTemplate.queryForObject(SELECT_DAY, java.sql.Date.class, new Timestamp(instant));
+                if (day != null) {
+                    days.add(day.toLocalDate());
+                }
+            }
+        } catch (RuntimeException e) {
+            this.dirtySessionIds.addAll(sessionIds);
+            this.dirtyInstants.addAll(instants);
+            this.dirtyDays.addAll(days);
+            throw e;
+        }
+
+        for (LocalDate day : days) {
+            try {
+                this.transactionTemplate.execute(status -> {
+                    this.jdbcTemplate.update(DELETE_DAY, java.sql.Date.valueOf(day));
+                    return this.jdbcTemplate.update(INSERT_DAY, day.toString(), day.plusDays(1).toString());
+                });
+            } catch (RuntimeException e) {
+                this.dirtyDays.add(day);
+                log.error("Could not refresh attendance rollup for {}", day, e);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the whole rollup from PARTICIPATE in one transaction and returns the row count,
+     * or 0 when another instance is already rebuilding it.
+     */
+    @Scheduled(cron = "${oc.app.analytics.rebuildCron:0 15 4 * * *}")
+    public int rebuild() {
+        Integer rows = this.transactionTemplate.execute(status -> {
+            Integer locked = this.jdbcTemplate.queryForObject(ACQUIRE_REBUILD_LOCK, Integer.class);
+            if (locked == null || locked != 1) {
+                return null;
+            }
+            try {
+                this.jdbcTemplate.update(DELETE_ALL);
+                return this.jdbcTemplate.update(INSERT_ALL);
+            } finally {
+                this.jdbcTemplate.queryForObject(RELEASE_REBUILD_LOCK, Integer.class);
+            }
+        });
+        if (rows == null) {
+            log.info("Attendance rollup rebuild skipped: another instance is running it");
+            return 0;
+        }
+        log.info("Attendance rollup rebuilt: {} rows", rows);
+        return rows;
+    }
+
+    /**
+     * Attendance for sessions on days in [from, to), grouped by the given dimension. Fill rate
+     * is participations over sessions times the configured session capacity.
+     */
+    public List<AttendanceStatResponse> stats(LocalDate from, LocalDate to, AttendanceDimension dimension) {
+        String sql = "SELECT " + dimension.getColumn() + " AS k, SUM(sessions) AS sessions, SUM(participations) AS participations "
+                + "FROM ATTENDANCE_ROLLUP WHERE day >= ? AND day < ? GROUP BY k ORDER BY k";
+        return this.jdbcTemplate.query(sql, (rs, rowNum) -> {
+            long sessions = rs.getLong("sessions");
+            long participations = rs.getLong("participations");
+            double fillRate = sessions == 0 ? 0 : (double) participations / (sessions * this.sessionCapacity);
+            return new AttendanceStatResponse(dimension.label(rs.getInt("k")), sessions, participations, fillRate);
+        }, java.sql.Date.valueOf(from), java.sql.Date.valueOf(to));
+    }
+
+    public int getSessionCapacity() {
+        return sessionCapacity;
+    }
+
+    public void setSessionCapacity(int sessionCapacity) {
+        this.sessionCapacity = sessionCapacity;
+    }
+
+    int pendingDays() {
+        return this.dirtyDays.size();
+    }
+
+    private void markDirty(Date date) {
+        if (date != null) {
+            this.dirtyInstants.add(date.getTime());
+        }
+    }
+
+    private static <T> List<T> drain(Set<T> set) {
+        List<T> drained = new ArrayList<>();
+        for (Iterator<T> iterator = set.iterator(); iterator.hasNext(); ) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,28 @@
+package com.openclassrooms.starterjwt.audit;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * A user joined or left a session.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class ParticipationEvent {
+    public enum Type {
+        JOINED,
+        LEFT
+    }
+
+    private final Type type;
+
+    private final Long sessionId;
+
+    private final Long userId;
+
+    private final Instant occurredAt;
+}
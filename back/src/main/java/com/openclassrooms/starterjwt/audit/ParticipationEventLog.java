@@ -0,0 +1,213 @@
+package com.openclassrooms.starterjwt.audit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only log of participation changes. Events are buffered once their transaction has
+ * committed and a background writer inserts them into EVENTS in JDBC batches, so the request
+ * never waits on the audit insert. When the buffer is full new events are dropped and counted
+ * rather than slowing the caller; a batch the database refuses is retried once before it is
+ * counted as failed; whatever is still buffered is written on shutdown. Losses and the buffer
+ * depth are published as {@code participation.events.*} metrics.
+ */
+@Component
+@Log4j2
+public class ParticipationEventLog implements MeterBinder {
+    static final String INSERT_EVENT = "INSERT INTO EVENTS (type, session_id, user_id, occurred_at) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final BlockingQueue<ParticipationEvent> buffer;
+
+    private final int batchSize;
+
+    private final long flushIntervalMs;
+
+    private final AtomicLong accepted = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final Thread writer = new Thread(this::writeLoop, "participation-event-writer");
+
+    private volatile boolean running;
+
+    @Value("${oc.app.events.retryDelayMs:500}")
+    private long retryDelayMs = 500;
+
+    @Autowired
+    public ParticipationEventLog(JdbcTemplate jdbcTemplate,
+                                 @Value("${oc.app.events.bufferCapacity:10000}") int bufferCapacity,
+                                 @Value("${oc.app.events.batchSize:200}") int batchSize,
+                                 @Value("${oc.app.events.flushIntervalMs:1000}") long flushIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        this.running = true;
+        this.writer.start();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onParticipationEvent(ParticipationEvent event) {
+        append(event);
+    }
+
+    /**
+     * Buffers the event without blocking. Returns false, and counts the event as dropped,
+     * when the buffer is full.
+     */
+    public boolean append(ParticipationEvent event) {
+        if (this.buffer.offer(event)) {
+            this.accepted.incrementAndGet();
+            return true;
+        }
+        if (this.dropped.getAndIncrement() == 0) {
+            log.warn("Participation event buffer is full, events are being dropped");
+        }
+        return false;
+    }
+
+    /**
+     * Writes everything buffered so far on the calling thread.
+     */
+    public void flush() {
+        List<ParticipationEvent> batch = new ArrayList<>(this.batchSize);
+        while (this.buffer.drainTo(batch, this.batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        this.running = false;
+        if (this.writer.isAlive()) {
+            this.writer.join(this.flushIntervalMs * 2);
+        }
+        flush();
+        log.info("Participation event log stopped: {} accepted, {} written, {} dropped, {} failed",
+                getAccepted(), getWritten(), getDropped(), getFailed());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("participation.events.written", this, ParticipationEventLog::getWritten)
+                .description("Participation events inserted into EVENTS").register(registry);
+        FunctionCounter.builder("participation.events.dropped", this, ParticipationEventLog::getDropped)
+                .description("Participation events dropped because the buffer was full").register(registry);
+        FunctionCounter.builder("participation.events.failed", this, ParticipationEventLog::getFailed)
+                .description("Participation events lost after their batch failed twice").register(registry);
+        Gauge.builder("participation.events.pending", this, ParticipationEventLog::getPending)
+                .description("Participation events waiting in the buffer").register(registry);
+    }
+
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public int getPending() {
+        return buffer.size();
+    }
+
+    public long getRetryDelayMs() {
+        return retryDelayMs;
+    }
+
+    public void setRetryDelayMs(long retryDelayMs) {
+        this.retryDelayMs = retryDelayMs;
+    }
+
+    private void writeLoop() {
+        List<ParticipationEvent> batch = new ArrayList<>(this.batchSize);
+        while (this.running) {
+            try {
+                ParticipationEvent first = this.buffer.poll(this.flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                // Whatever piled up while the previous batch was written goes out together.
+                batch.add(first);
+                this.buffer.drainTo(batch, this.batchSize - 1);
+                write(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Participation event writer failed", e);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<ParticipationEvent> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (ParticipationEvent event : batch) {
+            rows.add(new Object[] {event.getType().name(), event.getSessionId(), event.getUserId(),
+                    Timestamp.from(event.getOccurredAt())});
+        }
+        try {
+            insert(rows);
+        } catch (DataAccessException e) {
+            log.warn("Could not write {} participation events, retrying once", rows.size(), e);
+            try {
+                Thread.sleep(this.retryDelayMs);
+                insert(rows);
+            } catch (DataAccessException retryError) {
+                this.failed.addAndGet(rows.size());
+                log.error("Could not write {} participation events, dropping them", rows.size(), retryError);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                this.failed.addAndGet(rows.size());
+                log.error("Interrupted before retrying {} participation events, dropping them", rows.size());
+            }
+        }
+    }
+
+    private void insert(List<Object[]> rows) {
+        this.jdbcTemplate.batchUpdate(INSERT_EVENT, rows);
+        this.written.addAndGet(rows.size());
+    }
+}
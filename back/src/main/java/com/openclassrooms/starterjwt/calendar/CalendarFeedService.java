@@ -0,0 +1,117 @@
+package com.openclassrooms.starterjwt.calendar;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * iCalendar feeds of the sessions a user takes part in or a teacher teaches. The events are
+ * read with a single projection query, without loading entities or rosters. The version
+ * query is a single aggregate over the same indexed rows, which lets polling clients be
+ * answered with 304 Not Modified.
+ */
+@Service
+public class CalendarFeedService {
+    static final String USER_ROWS = "FROM SESSIONS s JOIN PARTICIPATE p ON p.session_id = s.id "
+            + "WHERE p.user_id = ? AND s.date >= ?";
+
+    static final String TEACHER_ROWS = "FROM SESSIONS s WHERE s.teacher_id = ? AND s.date >= ?";
+
+    // Every update, join or leave bumps a session's version, so SUM(version) moves with them.
+    static final String SELECT_VERSION = "SELECT COUNT(*), COALESCE(SUM(s.id), 0), COALESCE(SUM(s.version), 0), MAX(s.updated_at) ";
+
+    static final String SELECT_EVENTS = "SELECT s.id, s.name, s.description, s.date, s.duration, s.version, s.updated_at ";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${oc.app.calendar.pastDays:30}")
+    private int pastDays = 30;
+
+    public CalendarFeedService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Oldest session date a feed includes.
+     */
+    public Date since() {
+        return new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(this.pastDays));
+    }
+
+    public FeedVersion version(Owner owner, Long ownerId, Date since) {
+        return this.jdbcTemplate.queryForObject(SELECT_VERSION + owner.rows, (rs, rowNum) -> {
+            Timestamp lastModified = rs.getTimestamp(4);
+            String etag = Long.toHexString(rs.getLong(1)) + "-" + Long.toHexString(rs.getLong(2)) + "-"
+                    + Long.toHexString(rs.getLong(3)) + "-" + (lastModified != null ? Long.toHexString(lastModified.getTime()) : "0");
+            return new FeedVersion(etag, lastModified != null ? lastModified.getTime() : -1);
+        }, ownerId, new Timestamp(since.getTime()));
+    }
+
+    /**
+     * Events of the feed, read before the response starts so that no connection is held while
+     * a slow client downloads it.
+     */
+    public List<FeedEvent> events(Owner owner, Long ownerId, Date since) {
+        return this.jdbcTemplate.query(SELECT_EVENTS + owner.rows + " ORDER BY s.date", (rs, rowNum) ->
+                new FeedEvent(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getTimestamp(4), rs.getInt(5),
+                        rs.getLong(6), rs.getTimestamp(7)), ownerId, new Timestamp(since.getTime()));
+    }
+
+    public void write(String name, List<FeedEvent> events, Writer out) throws IOException {
+        ICalendarWriter calendar = new ICalendarWriter(out);
+        calendar.begin(name);
+        for (FeedEvent event : events) {
+            calendar.event(event.getSessionId(), event.getName(), event.getDescription(), event.getStart(),
+                    event.getDuration(), event.getVersion(), event.getUpdatedAt());
+        }
+        calendar.end();
+    }
+
+    public int getPastDays() {
+        return pastDays;
+    }
+
+    public void setPastDays(int pastDays) {
+        this.pastDays = pastDays;
+    }
+
+    public enum Owner {
+        USER(USER_ROWS),
+        TEACHER(TEACHER_ROWS);
+
+        private final String rows;
+
+        Owner(String rows) {
+            this.rows = rows;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class FeedEvent {
+        private final Long sessionId;
+        private final String name;
+        private final String description;
+        private final Date start;
+        private final int duration;
+        private final long version;
+        private final Date updatedAt;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class FeedVersion {
+        private final String etag;
+        // Epoch millis, or -1 for an empty feed.
+        private final long lastModified;
+    }
+}
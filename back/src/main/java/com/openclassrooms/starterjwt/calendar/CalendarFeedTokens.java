@@ -0,0 +1,75 @@
+package com.openclassrooms.starterjwt.calendar;
+
+import com.openclassrooms.starterjwt.security.services.TokenVersionRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Capability tokens for calendar feeds. Calendar apps cannot send a bearer token, so a feed
+ * URL carries {@code <userId>.<tokenVersion>.<HMAC of both>} instead. The MAC key is not the
+ * JWT secret, and bumping the user's token version (logging out everywhere) revokes the feed
+ * URLs issued before.
+ */
+@Component
+public class CalendarFeedTokens {
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+
+    private final TokenVersionRegistry tokenVersionRegistry;
+
+    public CalendarFeedTokens(@Value("${oc.app.calendar.feedSecret}") String secret,
+                              TokenVersionRegistry tokenVersionRegistry) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.tokenVersionRegistry = tokenVersionRegistry;
+    }
+
+    public String issue(Long userId, int tokenVersion) {
+        return userId + "." + tokenVersion + "." + mac(userId, tokenVersion);
+    }
+
+    /**
+     * Id of the user the token was issued to, or null when it is malformed, forged or revoked.
+     */
+    public Long verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 3) {
+            return null;
+        }
+        Long userId;
+        int tokenVersion;
+        try {
+            userId = Long.valueOf(parts[0]);
+            tokenVersion = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        byte[] expected = mac(userId, tokenVersion).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = parts[2].getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return null;
+        }
+        return this.tokenVersionRegistry.isCurrent(userId, tokenVersion) ? userId : null;
+    }
+
+    private String mac(Long userId, int tokenVersion) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(this.key);
+            byte[] digest = mac.doFinal(("calendar:" + userId + ":" + tokenVersion).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+}
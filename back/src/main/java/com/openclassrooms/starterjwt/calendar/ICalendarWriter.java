@@ -0,0 +1,104 @@
+package com.openclassrooms.starterjwt.calendar;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+/**
+ * Writes an iCalendar (RFC 5545) stream one event at a time: times in UTC, text values
+ * escaped, and content lines folded at 75 octets.
+ */
+public class ICalendarWriter {
+    private static final String CRLF = "\r\n";
+
+    private static final int MAX_LINE_OCTETS = 75;
+
+    private static final DateTimeFormatter UTC_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final Writer out;
+
+    public ICalendarWriter(Writer out) {
+        this.out = out;
+    }
+
+    public void begin(String name) throws IOException {
+        line("BEGIN:VCALENDAR");
+        line("VERSION:2.0");
+        line("PRODID:-//Savasana//Sessions//EN");
+        line("CALSCALE:GREGORIAN");
+        line("METHOD:PUBLISH");
+        line("X-WR-CALNAME:" + escape(name));
+    }
+
+    public void event(Long sessionId, String summary, String description, Date start, int durationMinutes,
+                      long sequence, Date stamp) throws IOException {
+        line("BEGIN:VEVENT");
+        line("UID:session-" + sessionId + "@savasana");
+        line("DTSTAMP:" + UTC_TIME.format((stamp != null ? stamp : start).toInstant()));
+        line("DTSTART:" + UTC_TIME.format(start.toInstant()));
+        line("DTEND:" + UTC_TIME.format(Instant.ofEpochMilli(start.getTime() + durationMinutes * 60_000L)));
+        line("SEQUENCE:" + sequence);
+        line("SUMMARY:" + escape(summary));
+        if (description != null && !description.isEmpty()) {
+            line("DESCRIPTION:" + escape(description));
+        }
+        line("END:VEVENT");
+    }
+
+    public void end() throws IOException {
+        line("END:VCALENDAR");
+        this.out.flush();
+    }
+
+    static String escape(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\':
+                case ';':
+                case ',':
+                    escaped.append('\\').append(c);
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private void line(String content) throws IOException {
+        int octets = 0;
+        for (int i = 0; i < content.length(); i++) {
+            int codePoint = content.codePointAt(i);
+            int width = utf8Width(codePoint);
+            if (octets + width > MAX_LINE_OCTETS) {
+                // Continuation lines start with a space, which counts towards their length.
+                this.out.write(CRLF);
+                this.out.write(' ');
+                octets = 1;
+            }
+            this.out.write(Character.toChars(codePoint));
+            octets += width;
+            if (Character.isSupplementaryCodePoint(codePoint)) {
+                i++;
+            }
+        }
+        this.out.write(CRLF);
+    }
+
+    private static int utf8Width(int codePoint) {
+        return codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+    }
+}
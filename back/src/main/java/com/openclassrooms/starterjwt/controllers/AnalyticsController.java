@@ -0,0 +1,64 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.analytics.AttendanceDimension;
+import com.openclassrooms.starterjwt.analytics.AttendanceRollupService;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/analytics")
+public class AnalyticsController {
+    private final AttendanceRollupService attendanceRollupService;
+
+    public AnalyticsController(AttendanceRollupService attendanceRollupService) {
+        this.attendanceRollupService = attendanceRollupService;
+    }
+
+    /**
+     * Sessions, participations and fill rate between {@code from} (inclusive) and {@code to}
+     * (exclusive), grouped by teacher, weekday or slot. Defaults to the last twelve months.
+     */
+    @GetMapping("/attendance")
+    public ResponseEntity<?> attendance(@RequestParam(value = "groupBy", defaultValue = "teacher") String groupBy,
+                                        @RequestParam(value = "from", required = false) String from,
+                                        @RequestParam(value = "to", required = false) String to) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        try {
+            AttendanceDimension dimension = AttendanceDimension.parse(groupBy);
+            LocalDate toDay = to != null ? LocalDate.parse(to) : LocalDate.now().plusDays(1);
+            LocalDate fromDay = from != null ? LocalDate.parse(from) : toDay.minusYears(1);
+            if (!fromDay.isBefore(toDay)) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            return ResponseEntity.ok().body(this.attendanceRollupService.stats(fromDay, toDay, dimension));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/attendance/rebuild")
+    public ResponseEntity<?> rebuild() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        return ResponseEntity.ok().body(Collections.singletonMap("rows", this.attendanceRollupService.rebuild()));
+    }
+
+    private static boolean isAdmin() {
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return principal instanceof UserDetailsImpl && Boolean.TRUE.equals(((UserDetailsImpl) principal).getAdmin());
+    }
+}
@@ -1,13 +1,20 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -16,12 +23,18 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
+import com.openclassrooms.starterjwt.payload.request.RefreshTokenRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
 import com.openclassrooms.starterjwt.payload.response.JwtResponse;
 import com.openclassrooms.starterjwt.payload.response.MessageResponse;
-import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationStore;
+import com.openclassrooms.starterjwt.security.services.LoginAttemptLimiter;
+import com.openclassrooms.starterjwt.security.services.TokenVersionRegistry;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import com.openclassrooms.starterjwt.services.RefreshTokenService;
+import com.openclassrooms.starterjwt.services.RegistrationService;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -29,60 +42,123 @@ import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 public class AuthController {
     private final AuthenticationManager authenticationManager;
     private final JwtUtils jwtUtils;
-    private final PasswordEncoder passwordEncoder;
-    private final UserRepository userRepository;
+    private final RegistrationService registrationService;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final TokenRevocationStore tokenRevocationStore;
+    private final RefreshTokenService refreshTokenService;
+    private final LoginAttemptLimiter loginAttemptLimiter;
 
     AuthController(AuthenticationManager authenticationManager,
-            PasswordEncoder passwordEncoder,
             JwtUtils jwtUtils,
-            UserRepository userRepository) {
+            RegistrationService registrationService,
+            TokenVersionRegistry tokenVersionRegistry,
+            TokenRevocationStore tokenRevocationStore,
+            RefreshTokenService refreshTokenService,
+            LoginAttemptLimiter loginAttemptLimiter) {
         this.authenticationManager = authenticationManager;
         this.jwtUtils = jwtUtils;
-        this.passwordEncoder = passwordEncoder;
-        this.userRepository = userRepository;
+        this.registrationService = registrationService;
+        this.tokenVersionRegistry = tokenVersionRegistry;
+        this.tokenRevocationStore = tokenRevocationStore;
+        this.refreshTokenService = refreshTokenService;
+        this.loginAttemptLimiter = loginAttemptLimiter;
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest, HttpServletRequest request) {
+        long retryAfterMs = loginAttemptLimiter.acquire(loginRequest.getEmail(), request.getRemoteAddr());
+        if (retryAfterMs > 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf((retryAfterMs + 999) / 1000))
+                    .body(new MessageResponse("Error: Too many login attempts, please retry later!"));
+        }
 
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
 
+        loginAttemptLimiter.onSuccess(loginRequest.getEmail());
+
         SecurityContextHolder.getContext().setAuthentication(authentication);
         String jwt = jwtUtils.generateJwtToken(authentication);
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+        int tokenVersion = userDetails.getTokenVersion() != null ? userDetails.getTokenVersion() : 0;
+        tokenVersionRegistry.record(userDetails.getId(), tokenVersion);
 
-        boolean isAdmin = false;
-        User user = this.userRepository.findByEmail(userDetails.getUsername()).orElse(null);
-        if (user != null) {
-            isAdmin = user.isAdmin();
+        return ResponseEntity.ok(jwtResponse(jwt, userDetails,
+                refreshTokenService.issue(userDetails.getId(), tokenVersion)));
+    }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@Valid @RequestBody RefreshTokenRequest refreshTokenRequest) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshTokenRequest.getRefreshToken());
+        if (rotation == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("Error: Refresh token is invalid or expired!"));
         }
 
-        return ResponseEntity.ok(new JwtResponse(jwt,
-                userDetails.getId(),
-                userDetails.getUsername(),
-                userDetails.getFirstName(),
-                userDetails.getLastName(),
-                isAdmin));
+        UserDetailsImpl userDetails = UserDetailsServiceImpl.build(rotation.getUser());
+        tokenVersionRegistry.record(userDetails.getId(), userDetails.getTokenVersion());
+        return ResponseEntity.ok(jwtResponse(jwtUtils.generateJwtToken(userDetails), userDetails,
+                rotation.getRefreshToken()));
     }
 
-    @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
-        if (userRepository.existsByEmail(signUpRequest.getEmail())) {
-            return ResponseEntity
-                    .badRequest()
-                    .body(new MessageResponse("Error: Email is already taken!"));
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestBody(required = false) RefreshTokenRequest refreshTokenRequest) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserDetailsImpl)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+        if (userDetails.getTokenId() != null && userDetails.getTokenExpiration() != null) {
+            tokenRevocationStore.revoke(userDetails.getTokenId(), userDetails.getTokenExpiration().getTime());
+        }
+        if (refreshTokenRequest != null && refreshTokenRequest.getRefreshToken() != null) {
+            refreshTokenService.revoke(refreshTokenRequest.getRefreshToken());
         }
+        SecurityContextHolder.clearContext();
+
+        return ResponseEntity.ok(new MessageResponse("Logged out successfully!"));
+    }
 
-        // Create new user's account
+    @PostMapping("/register")
+    public CompletableFuture<ResponseEntity<?>> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
         User user = new User(signUpRequest.getEmail(),
                 signUpRequest.getLastName(),
                 signUpRequest.getFirstName(),
-                passwordEncoder.encode(signUpRequest.getPassword()),
+                "",
                 false);
 
-        userRepository.save(user);
+        CompletableFuture<User> registration;
+        try {
+            registration = registrationService.register(user, signUpRequest.getPassword());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new MessageResponse("Error: Registration is busy, please retry later!")));
+        }
+
+        return registration.handle((saved, error) -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause == null) {
+                return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
+            }
+            if (cause instanceof DuplicateKeyException) {
+                return ResponseEntity
+                        .badRequest()
+                        .body(new MessageResponse("Error: Email is already taken!"));
+            }
+            throw new CompletionException(cause);
+        });
+    }
 
-        return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
+    private static JwtResponse jwtResponse(String jwt, UserDetailsImpl userDetails, String refreshToken) {
+        JwtResponse response = new JwtResponse(jwt,
+                userDetails.getId(),
+                userDetails.getUsername(),
+                userDetails.getFirstName(),
+                userDetails.getLastName(),
+                Boolean.TRUE.equals(userDetails.getAdmin()));
+        response.setRefreshToken(refreshToken);
+        return response;
     }
 }
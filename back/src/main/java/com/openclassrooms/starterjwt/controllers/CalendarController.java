@@ -0,0 +1,123 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.calendar.CalendarFeedService;
+import com.openclassrooms.starterjwt.calendar.CalendarFeedTokens;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.TeacherService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session calendars for calendar apps. The feeds are reached with a feed token rather than a
+ * JWT and answer conditional GETs with 304, so frequent polling costs one aggregate query.
+ */
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/calendar")
+public class CalendarController {
+    static final MediaType TEXT_CALENDAR = new MediaType("text", "calendar", StandardCharsets.UTF_8);
+
+    private final CalendarFeedService calendarFeedService;
+    private final CalendarFeedTokens calendarFeedTokens;
+    private final TeacherService teacherService;
+
+    public CalendarController(CalendarFeedService calendarFeedService,
+                              CalendarFeedTokens calendarFeedTokens,
+                              TeacherService teacherService) {
+        this.calendarFeedService = calendarFeedService;
+        this.calendarFeedTokens = calendarFeedTokens;
+        this.teacherService = teacherService;
+    }
+
+    /**
+     * Feed token of the authenticated user, and the URL of their own feed.
+     */
+    @GetMapping("/token")
+    public ResponseEntity<?> token() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserDetailsImpl)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        UserDetailsImpl user = (UserDetailsImpl) authentication.getPrincipal();
+        Long userId = user.getId();
+        String token = this.calendarFeedTokens.issue(userId, user.getTokenVersion() != null ? user.getTokenVersion() : 0);
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("token", token);
+        body.put("feed", "/api/calendar/user/" + userId + "/sessions.ics?token=" + token);
+        return ResponseEntity.ok().body(body);
+    }
+
+    /**
+     * Sessions the user takes part in. Only the user's own token opens it.
+     */
+    @GetMapping("/user/{id:\\d+}/sessions.ics")
+    public ResponseEntity<StreamingResponseBody> userFeed(@PathVariable("id") Long userId,
+                                                          @RequestParam(value = "token", required = false) String token,
+                                                          WebRequest request) {
+        if (!userId.equals(this.calendarFeedTokens.verify(token))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        return feed(CalendarFeedService.Owner.USER, userId, "My sessions", request);
+    }
+
+    /**
+     * Sessions the teacher teaches. Any member's token opens it.
+     */
+    @GetMapping("/teacher/{id:\\d+}/sessions.ics")
+    public ResponseEntity<StreamingResponseBody> teacherFeed(@PathVariable("id") Long teacherId,
+                                                             @RequestParam(value = "token", required = false) String token,
+                                                             WebRequest request) {
+        if (this.calendarFeedTokens.verify(token) == null) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        Teacher teacher = this.teacherService.findById(teacherId);
+        if (teacher == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return feed(CalendarFeedService.Owner.TEACHER, teacherId,
+                teacher.getFirstName() + " " + teacher.getLastName(), request);
+    }
+
+    private ResponseEntity<StreamingResponseBody> feed(CalendarFeedService.Owner owner, Long ownerId, String name,
+                                                       WebRequest request) {
+        Date since = this.calendarFeedService.since();
+        CalendarFeedService.FeedVersion version = this.calendarFeedService.version(owner, ownerId, since);
+        // Also sets the ETag and Last-Modified headers of the response.
+        if (request.checkNotModified(version.getEtag(), version.getLastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
+        List<CalendarFeedService.FeedEvent> events = this.calendarFeedService.events(owner, ownerId, since);
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.calendarFeedService.write(name, events, writer);
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(TEXT_CALENDAR)
+                .cacheControl(CacheControl.maxAge(5, TimeUnit.MINUTES).cachePrivate())
+                .body(body);
+    }
+}
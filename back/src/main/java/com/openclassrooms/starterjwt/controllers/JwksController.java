@@ -0,0 +1,30 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the public signing keys so that other services can verify our tokens locally.
+ */
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/auth/.well-known")
+public class JwksController {
+    private final JwtUtils jwtUtils;
+
+    public JwksController(JwtUtils jwtUtils) {
+        this.jwtUtils = jwtUtils;
+    }
+
+    @GetMapping("/jwks.json")
+    public ResponseEntity<?> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic())
+                .body(Collections.singletonMap("keys", this.jwtUtils.getKeyRing().jwks()));
+    }
+}
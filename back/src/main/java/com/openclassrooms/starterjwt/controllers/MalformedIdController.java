@@ -0,0 +1,48 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Ids that are not numbers, answered with the shared 400 body of {@link RequestErrorAdvice}.
+ * The id mappings of the other controllers only match digits, and these only match segments
+ * holding a non-digit, so a malformed id is routed here rather than failing conversion with
+ * an exception and its stack trace.
+ */
+@RestController
+@RequestMapping("/api")
+public class MalformedIdController {
+    @RequestMapping(value = "/session/{id:.*\\D.*}",
+            method = {RequestMethod.GET, RequestMethod.PUT, RequestMethod.PATCH, RequestMethod.DELETE})
+    public ResponseEntity<byte[]> session() {
+        return RequestErrorAdvice.BAD_REQUEST;
+    }
+
+    @RequestMapping(value = {"/session/{id:.*\\D.*}/participate/{userId}",
+            "/session/{id}/participate/{userId:.*\\D.*}"}, method = {RequestMethod.POST, RequestMethod.DELETE})
+    public ResponseEntity<byte[]> participation() {
+        return RequestErrorAdvice.BAD_REQUEST;
+    }
+
+    @GetMapping({"/session/{id:.*\\D.*}/participants", "/teacher/{id:.*\\D.*}",
+            "/teacher/{id:.*\\D.*}/availability", "/calendar/user/{id:.*\\D.*}/sessions.ics",
+            "/calendar/teacher/{id:.*\\D.*}/sessions.ics"})
+    public ResponseEntity<byte[]> read() {
+        return RequestErrorAdvice.BAD_REQUEST;
+    }
+
+    @RequestMapping(value = "/user/{id:.*\\D.*}", method = {RequestMethod.GET, RequestMethod.DELETE})
+    public ResponseEntity<byte[]> user() {
+        return RequestErrorAdvice.BAD_REQUEST;
+    }
+
+    @PostMapping("/user/{id:.*\\D.*}/revoke-tokens")
+    public ResponseEntity<byte[]> revokeTokens() {
+        return RequestErrorAdvice.BAD_REQUEST;
+    }
+
+    @RequestMapping(value = "/series/{id:.*\\D.*}", method = {RequestMethod.GET, RequestMethod.PUT})
+    public ResponseEntity<byte[]> series() {
+        return RequestErrorAdvice.BAD_REQUEST;
+    }
+}
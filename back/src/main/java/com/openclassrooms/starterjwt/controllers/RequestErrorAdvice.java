@@ -0,0 +1,42 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Request errors shared by every controller, answered with an RFC 7807 problem+json body.
+ * The bodies carry nothing request specific, so each is serialized once and reused, and the
+ * error path skips the error-page forward the default resolvers go through.
+ */
+@RestControllerAdvice
+public class RequestErrorAdvice {
+    static final ResponseEntity<byte[]> BAD_REQUEST = problem(HttpStatus.BAD_REQUEST);
+
+    static final ResponseEntity<byte[]> NOT_FOUND = problem(HttpStatus.NOT_FOUND);
+
+    // Ids that are not numbers are answered by MalformedIdController; this is left to ids too large for a Long.
+    @ExceptionHandler({MethodArgumentTypeMismatchException.class, BadRequestException.class})
+    public ResponseEntity<byte[]> handleBadRequest(Exception e) {
+        return BAD_REQUEST;
+    }
+
+    @ExceptionHandler(NotFoundException.class)
+    public ResponseEntity<byte[]> handleNotFound(NotFoundException e) {
+        return NOT_FOUND;
+    }
+
+    private static ResponseEntity<byte[]> problem(HttpStatus status) {
+        String body = "{\"type\":\"about:blank\",\"title\":\"" + status.getReasonPhrase() + "\",\"status\":" + status.value() + "}";
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+                .body(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,116 +1,301 @@
 package com.openclassrooms.starterjwt.controllers;
 
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionFields;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.exception.ScheduleConflictException;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.services.SessionService;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/session")
 @Log4j2
 public class SessionController {
+    private static final String SUMMARY_VIEW = "summary";
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final int STREAM_CHUNK_SIZE = 50;
+
     private final SessionMapper sessionMapper;
+    private final UserMapper userMapper;
     private final SessionService sessionService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
 
 
     public SessionController(SessionService sessionService,
-                             SessionMapper sessionMapper) {
+                             SessionMapper sessionMapper,
+                             UserMapper userMapper,
+                             ObjectMapper objectMapper,
+                             Validator validator) {
         this.sessionMapper = sessionMapper;
+        this.userMapper = userMapper;
         this.sessionService = sessionService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+    }
+
+    /**
+     * One session. {@code view=summary} replaces the participant ids with their count.
+     */
+    @GetMapping("/{id:\\d+}")
+    public ResponseEntity<?> findById(@PathVariable("id") Long id,
+                                      @RequestParam(value = "view", required = false) String view) {
+        if (view != null && !SUMMARY_VIEW.equals(view)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Session session = this.sessionService.getById(id);
+
+        if (session == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        if (SUMMARY_VIEW.equals(view)) {
+            long participantCount = this.sessionService.participantCount(session.getId());
+            return withETag(ResponseEntity.ok(), session).body(this.sessionMapper.toSummaryDto(session, participantCount));
+        }
+        return withETag(ResponseEntity.ok(), session).body(this.sessionMapper.toDto(session));
     }
 
-    @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
+    /**
+     * Lists every session. {@code fields} restricts each item to the given properties, e.g.
+     * {@code ?fields=id,name,date,teacher_id} for list views; {@code view=summary} replaces the
+     * participant ids with their count, so no roster is loaded.
+     */
+    @GetMapping()
+    public ResponseEntity<?> findAll(@RequestParam(value = "fields", required = false) String fields,
+                                     @RequestParam(value = "view", required = false) String view) {
+        SessionFields sessionFields;
         try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
+            sessionFields = SessionFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (view != null && (!SUMMARY_VIEW.equals(view) || sessionFields != null)) {
+            return ResponseEntity.badRequest().build();
+        }
 
-            if (session == null) {
-                return ResponseEntity.notFound().build();
+        if (SUMMARY_VIEW.equals(view)) {
+            Map<Long, Long> participantCounts = this.sessionService.participantCounts();
+            List<SessionSummaryDto> summaries = new ArrayList<>();
+            for (Session session : this.sessionService.findAll()) {
+                summaries.add(this.sessionMapper.toSummaryDto(session, participantCounts.getOrDefault(session.getId(), 0L)));
             }
+            return ResponseEntity.ok().body(summaries);
+        }
+
+        List<SessionDto> sessionDtos = this.sessionMapper.toDto(this.sessionService.findAll());
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
-        } catch (NumberFormatException e) {
+        if (sessionFields == null) {
+            return ResponseEntity.ok().body(sessionDtos);
+        }
+        return ResponseEntity.ok().body(sessionFields.select(sessionDtos));
+    }
+
+    /**
+     * Same list as {@link #findAll}, written as newline-delimited JSON while it is read. Sessions
+     * are loaded in short transactions of {@value #STREAM_CHUNK_SIZE}, so no connection waits on
+     * a slow client and memory does not grow with the table; the first sessions go out after one
+     * chunk instead of the whole list (see SessionStreamBenchmark). Rosters are only loaded when
+     * the users field is part of the response.
+     * <p>
+     * This is the servlet-stack answer to the reactive WebFlux/R2DBC variant, which was not
+     * built. It still blocks a thread: the body is written on the MVC async executor, sized by
+     * {@code spring.task.execution.pool.*}, which each stream occupies until the client has
+     * read everything or {@code spring.mvc.async.request-timeout} expires.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream(@RequestParam(value = "fields", required = false) String fields) {
+        SessionFields sessionFields;
+        try {
+            sessionFields = SessionFields.parse(fields);
+        } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
+        boolean withUsers = sessionFields == null || sessionFields.getNames().contains("users");
+
+        StreamingResponseBody body = out -> {
+            List<Session> chunk;
+            long afterId = 0;
+            do {
+                chunk = this.sessionService.findChunk(afterId, STREAM_CHUNK_SIZE, withUsers);
+                for (Session session : chunk) {
+                    SessionDto sessionDto = withUsers
+                            ? this.sessionMapper.toDto(session)
+                            : this.sessionMapper.toDtoWithoutUsers(session);
+                    out.write(this.objectMapper.writeValueAsBytes(
+                            sessionFields == null ? sessionDto : sessionFields.select(sessionDto)));
+                    out.write('\n');
+                    afterId = session.getId();
+                }
+                out.flush();
+            } while (chunk.size() == STREAM_CHUNK_SIZE);
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
-    @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    /**
+     * One page of the session's participants, ordered by last name then first name.
+     */
+    @GetMapping("{id:\\d+}/participants")
+    public ResponseEntity<?> participants(@PathVariable("id") Long id,
+                                          @RequestParam(value = "page", defaultValue = "0") int page,
+                                          @RequestParam(value = "size", defaultValue = "20") int size) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Page<User> participants = this.sessionService.findParticipants(id, PageRequest.of(page, size));
+
+        if (participants == null) {
+            return ResponseEntity.notFound().build();
+        }
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+        return ResponseEntity.ok().body(participants.map(this.userMapper::toDto));
     }
 
     @PostMapping()
     public ResponseEntity<?> create(@Valid @RequestBody SessionDto sessionDto) {
         log.info(sessionDto);
 
-        Session session = this.sessionService.create(this.sessionMapper.toEntity(sessionDto));
+        Session session;
+        try {
+            session = this.sessionService.create(this.sessionMapper.toEntity(sessionDto));
+        } catch (ScheduleConflictException e) {
+            return scheduleConflict(e);
+        }
 
         log.info(session);
         return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
     }
 
-    @PutMapping("{id}")
-    public ResponseEntity<?> update(@PathVariable("id") String id, @Valid @RequestBody SessionDto sessionDto) {
+    @PutMapping("{id:\\d+}")
+    public ResponseEntity<?> update(@PathVariable("id") Long id, @Valid @RequestBody SessionDto sessionDto) {
         try {
-            Session session = this.sessionService.update(Long.parseLong(id), this.sessionMapper.toEntity(sessionDto));
+            Session session = this.sessionService.update(id, this.sessionMapper.toEntity(sessionDto));
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
+            return withETag(ResponseEntity.ok(), session).body(this.sessionMapper.toDto(session));
+        } catch (ScheduleConflictException e) {
+            return scheduleConflict(e);
+        } catch (ConflictException e) {
+            return conflict(e.getCurrent());
+        } catch (OptimisticLockingFailureException e) {
+            return conflict(this.sessionService.getById(id));
         }
     }
 
-    @DeleteMapping("{id}")
-    public ResponseEntity<?> save(@PathVariable("id") String id) {
+    /**
+     * JSON Merge Patch (RFC 7396): only the supplied properties change, and the roster is
+     * left alone unless the patch carries a "users" member.
+     */
+    @PatchMapping(value = "{id:\\d+}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<?> patch(@PathVariable("id") Long id, @RequestBody JsonNode patch) {
         try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
+            Session session = this.sessionService.getById(id);
 
-            
-            /*
             if (session == null) {
                 return ResponseEntity.notFound().build();
             }
-            //Niveau de détail inutile
-              */
-             
-            
-
-            this.sessionService.delete(Long.parseLong(id));
-            return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
+            if (!patch.isObject()) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            SessionDto sessionDto = this.objectMapper.readerForUpdating(this.sessionMapper.toDto(session)).readValue(patch);
+            if (!this.validator.validate(sessionDto).isEmpty()) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            Session changes = patch.has("users")
+                    ? this.sessionMapper.toEntity(sessionDto)
+                    : this.sessionMapper.toEntityWithoutUsers(sessionDto);
+            Session updated = this.sessionService.update(session.getId(), changes);
+
+            return withETag(ResponseEntity.ok(), updated).body(this.sessionMapper.toDto(updated));
+        } catch (IOException e) {
             return ResponseEntity.badRequest().build();
+        } catch (ScheduleConflictException e) {
+            return scheduleConflict(e);
+        } catch (ConflictException e) {
+            return conflict(e.getCurrent());
+        } catch (OptimisticLockingFailureException e) {
+            return conflict(this.sessionService.getById(id));
         }
     }
 
-    @PostMapping("{id}/participate/{userId}")
-    public ResponseEntity<?> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
-        try {
-            this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
+    @DeleteMapping("{id:\\d+}")
+    public ResponseEntity<?> save(@PathVariable("id") Long id) {
+        /*
+        Session session = this.sessionService.getById(id);
+        if (session == null) {
+            return ResponseEntity.notFound().build();
+        }
+        //Niveau de détail inutile
+          */
 
-            return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
+        this.sessionService.delete(id);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("{id:\\d+}/participate/{userId:\\d+}")
+    public ResponseEntity<?> participate(@PathVariable("id") Long id, @PathVariable("userId") Long userId) {
+        this.sessionService.participate(id, userId);
+
+        return ResponseEntity.ok().build();
+    }
+
+    @DeleteMapping("{id:\\d+}/participate/{userId:\\d+}")
+    public ResponseEntity<?> noLongerParticipate(@PathVariable("id") Long id, @PathVariable("userId") Long userId) {
+        this.sessionService.noLongerParticipate(id, userId);
+
+        return ResponseEntity.ok().build();
+    }
+
+    private ResponseEntity<?> conflict(Session current) {
+        if (current == null) {
+            return ResponseEntity.notFound().build();
         }
+
+        return withETag(ResponseEntity.status(HttpStatus.CONFLICT), current).body(this.sessionMapper.toDto(current));
     }
 
-    @DeleteMapping("{id}/participate/{userId}")
-    public ResponseEntity<?> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
-        try {
-            this.sessionService.noLongerParticipate(Long.parseLong(id), Long.parseLong(userId));
+    private static ResponseEntity<?> scheduleConflict(ScheduleConflictException e) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("message", "The teacher already has a session at that time");
+        body.put("conflictingSessionId", e.getConflictingSessionId());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+    }
 
-            return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
+    private static ResponseEntity.BodyBuilder withETag(ResponseEntity.BodyBuilder builder, Session session) {
+        if (session.getVersion() != null) {
+            builder.eTag(String.valueOf(session.getVersion()));
         }
+        return builder;
     }
 }
@@ -0,0 +1,54 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.dto.SessionSeriesDto;
+import com.openclassrooms.starterjwt.mapper.SessionSeriesMapper;
+import com.openclassrooms.starterjwt.models.SessionSeries;
+import com.openclassrooms.starterjwt.services.SessionSeriesService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/series")
+public class SessionSeriesController {
+    private final SessionSeriesMapper sessionSeriesMapper;
+    private final SessionSeriesService sessionSeriesService;
+
+
+    public SessionSeriesController(SessionSeriesService sessionSeriesService,
+                                   SessionSeriesMapper sessionSeriesMapper) {
+        this.sessionSeriesMapper = sessionSeriesMapper;
+        this.sessionSeriesService = sessionSeriesService;
+    }
+
+    @GetMapping("/{id:\\d+}")
+    public ResponseEntity<?> findById(@PathVariable("id") Long id) {
+        SessionSeries series = this.sessionSeriesService.getById(id);
+
+        if (series == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok().body(this.sessionSeriesMapper.toDto(series));
+    }
+
+    @PostMapping()
+    public ResponseEntity<?> create(@Valid @RequestBody SessionSeriesDto sessionSeriesDto) {
+        try {
+            SessionSeries series = this.sessionSeriesService.create(this.sessionSeriesMapper.toEntity(sessionSeriesDto));
+
+            return ResponseEntity.ok().body(this.sessionSeriesMapper.toDto(series));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PutMapping("{id:\\d+}")
+    public ResponseEntity<?> update(@PathVariable("id") Long id, @Valid @RequestBody SessionSeriesDto sessionSeriesDto) {
+        SessionSeries series = this.sessionSeriesService.update(id, this.sessionSeriesMapper.toEntity(sessionSeriesDto));
+
+        return ResponseEntity.ok().body(this.sessionSeriesMapper.toDto(series));
+    }
+}
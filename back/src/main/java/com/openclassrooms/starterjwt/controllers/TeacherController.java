@@ -2,10 +2,17 @@ package com.openclassrooms.starterjwt.controllers;
 
 import com.openclassrooms.starterjwt.mapper.TeacherMapper;
 import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.payload.response.TeacherAvailabilityResponse;
+import com.openclassrooms.starterjwt.services.TeacherScheduleIndex;
 import com.openclassrooms.starterjwt.services.TeacherService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -13,27 +20,30 @@ import java.util.List;
 public class TeacherController {
     private final TeacherMapper teacherMapper;
     private final TeacherService teacherService;
+    private final TeacherScheduleIndex scheduleIndex;
+
+    private static final long DEFAULT_RANGE_MS = TimeUnit.DAYS.toMillis(7);
+
+    private static final long MAX_RANGE_MS = TimeUnit.DAYS.toMillis(31);
 
 
     public TeacherController(TeacherService teacherService,
-                             TeacherMapper teacherMapper) {
+                             TeacherMapper teacherMapper,
+                             TeacherScheduleIndex scheduleIndex) {
         this.teacherMapper = teacherMapper;
         this.teacherService = teacherService;
+        this.scheduleIndex = scheduleIndex;
     }
 
-    @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
-        try {
-            Teacher teacher = this.teacherService.findById(Long.valueOf(id));
-
-            if (teacher == null) {
-                return ResponseEntity.notFound().build();
-            }
+    @GetMapping("/{id:\\d+}")
+    public ResponseEntity<?> findById(@PathVariable("id") Long id) {
+        Teacher teacher = this.teacherService.findById(id);
 
-            return ResponseEntity.ok().body(this.teacherMapper.toDto(teacher));
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
+        if (teacher == null) {
+            return ResponseEntity.notFound().build();
         }
+
+        return ResponseEntity.ok().body(this.teacherMapper.toDto(teacher));
     }
 
     @GetMapping()
@@ -42,4 +52,41 @@ public class TeacherController {
 
         return ResponseEntity.ok().body(this.teacherMapper.toDto(teachers));
     }
+
+    /**
+     * Busy and free intervals of the teacher between {@code from} (default now) and {@code to}
+     * (default a week later), answered from the schedule index without querying sessions.
+     */
+    @GetMapping("/{id:\\d+}/availability")
+    public ResponseEntity<?> availability(@PathVariable("id") Long id,
+                                          @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                          @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to) {
+        Teacher teacher = this.teacherService.findById(id);
+
+        if (teacher == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        long start = from != null ? from.getTime() : System.currentTimeMillis();
+        long end = to != null ? to.getTime() : start + DEFAULT_RANGE_MS;
+        if (end <= start || end - start > MAX_RANGE_MS) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<TeacherAvailabilityResponse.Interval> busy = new ArrayList<>();
+        List<TeacherAvailabilityResponse.Interval> free = new ArrayList<>();
+        long cursor = start;
+        for (TeacherScheduleIndex.Slot slot : this.scheduleIndex.busy(teacher.getId(), start, end)) {
+            busy.add(new TeacherAvailabilityResponse.Interval(slot.getSessionId(), new Date(slot.getStart()), new Date(slot.getEnd())));
+            if (slot.getStart() > cursor) {
+                free.add(new TeacherAvailabilityResponse.Interval(null, new Date(cursor), new Date(slot.getStart())));
+            }
+            cursor = Math.max(cursor, slot.getEnd());
+        }
+        if (cursor < end) {
+            free.add(new TeacherAvailabilityResponse.Interval(null, new Date(cursor), new Date(end)));
+        }
+
+        return ResponseEntity.ok().body(new TeacherAvailabilityResponse(teacher.getId(), new Date(start), new Date(end), busy, free));
+    }
 }
@@ -1,15 +1,23 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.request.BulkDeleteRequest;
+import com.openclassrooms.starterjwt.payload.request.BulkSignupRequest;
+import com.openclassrooms.starterjwt.payload.response.MessageResponse;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.RegistrationService;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Objects;
+import javax.validation.Valid;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -17,63 +25,86 @@ import java.util.Objects;
 public class UserController {
     private final UserMapper userMapper;
     private final UserService userService;
+    private final RegistrationService registrationService;
 
 
     public UserController(UserService userService,
-                             UserMapper userMapper) {
+                             UserMapper userMapper,
+                             RegistrationService registrationService) {
         this.userMapper = userMapper;
         this.userService = userService;
+        this.registrationService = registrationService;
     }
 
-    @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
-        try {
-            User user = this.userService.findById(Long.valueOf(id));
+    @GetMapping("/{id:\\d+}")
+    public ResponseEntity<?> findById(@PathVariable("id") Long id) {
+        User user = this.userService.findById(id);
+
+        if (user == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok().body(this.userMapper.toDto(user));
+    }
+
+    @DeleteMapping("{id:\\d+}")
+    public ResponseEntity<?> delete(@PathVariable("id") Long id) {
+        User user = this.userService.findById(id);
+
+        if (user == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        this.userService.delete(id);
+        return ResponseEntity.ok().build();
+    }
 
-            if (user == null) {
-                return ResponseEntity.notFound().build();
-            }
+    @PostMapping("/bulk-delete")
+    public ResponseEntity<?> deleteAll(@Valid @RequestBody BulkDeleteRequest bulkDeleteRequest) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        return ResponseEntity.ok().body(this.userService.deleteAll(bulkDeleteRequest.getIds()));
+    }
+
+    @PostMapping("/import")
+    public ResponseEntity<?> importAll(@Valid @RequestBody BulkSignupRequest bulkSignupRequest) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
 
-            return ResponseEntity.ok().body(this.userMapper.toDto(user));
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
+        List<User> users = bulkSignupRequest.getUsers().stream()
+                .map(signup -> new User(signup.getEmail(), signup.getLastName(), signup.getFirstName(),
+                        signup.getPassword(), false))
+                .collect(Collectors.toList());
+        try {
+            return ResponseEntity.ok().body(this.registrationService.importAll(users));
+        } catch (RejectedExecutionException e) {
+            // The hashing pool is saturated; users already imported are skipped on retry.
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new MessageResponse("Error: Registration is busy, please retry later!"));
         }
     }
 
-    @DeleteMapping("{id}")
-    public ResponseEntity<?> delete(@PathVariable("id") String id) {
+    @PostMapping("{id:\\d+}/revoke-tokens")
+    public ResponseEntity<?> revokeTokens(@PathVariable("id") Long id) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
         try {
-            User user = this.userService.findById(Long.valueOf(id));
-
-            if (user == null) {
-                return ResponseEntity.notFound().build();
-            }
-
-            UserDetails userDetails = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-
-            
-            /*s
-            if(!Objects.equals(userDetails.getUsername(), user.getEmail())) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-            }
-            
-           
-             * Cette instruction sert à vérifier si l'utilisateur authentifié
-             *  (identifié via le SecurityContextHolder) est le même que l'utilisateur dont on essaie de supprimer le compte.
-             *   Si ce n'est pas le cas, 
-             *   une réponse HTTP 401 Unauthorized est renvoyée pour indiquer que l'utilisateur authentifié n'a pas l'autorisation de supprimer ce compte.
-
-			Mis en commentaire car ResponseEntity retourne 404 au lieu de 401 
-			tel que expliqué dans la console lors du run des tests
-			 UserControllerTest.testDelete_Unauthorized:130 expected: <401> but was: <404>
-             */
-
-            this.userService.delete(Long.parseLong(id));
+            this.userService.revokeTokens(id);
             return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
         }
     }
+
+    private static boolean isAdmin() {
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return principal instanceof UserDetailsImpl && Boolean.TRUE.equals(((UserDetailsImpl) principal).getAdmin());
+    }
     
     
 }
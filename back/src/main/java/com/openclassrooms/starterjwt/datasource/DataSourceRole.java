@@ -0,0 +1,6 @@
+package com.openclassrooms.starterjwt.datasource;
+
+public enum DataSourceRole {
+  PRIMARY,
+  REPLICA
+}
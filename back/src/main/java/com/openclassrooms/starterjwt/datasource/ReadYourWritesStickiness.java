@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.datasource;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers which users wrote recently so that their reads stay on the primary until the
+ * replica has had time to catch up.
+ */
+@Component
+public class ReadYourWritesStickiness {
+  private static final int PURGE_EVERY = 1024;
+
+  private final Map<String, Long> stickyUntil = new ConcurrentHashMap<>();
+
+  private final long windowMs;
+
+  private final Clock clock;
+
+  private final AtomicInteger writes = new AtomicInteger();
+
+  @Autowired
+  public ReadYourWritesStickiness(@Value("${oc.app.datasource.replica.stickyMs:5000}") long windowMs) {
+    this(windowMs, Clock.systemUTC());
+  }
+
+  public ReadYourWritesStickiness(long windowMs, Clock clock) {
+    this.windowMs = windowMs;
+    this.clock = clock;
+  }
+
+  public void markWrite() {
+    String key = currentKey();
+    if (key == null) {
+      return;
+    }
+
+    long now = clock.millis();
+    stickyUntil.put(key, now + windowMs);
+    if (writes.incrementAndGet() % PURGE_EVERY == 0) {
+      stickyUntil.values().removeIf(until -> until <= now);
+    }
+  }
+
+  public boolean isSticky() {
+    String key = currentKey();
+    if (key == null) {
+      return false;
+    }
+
+    Long until = stickyUntil.get(key);
+    return until != null && until > clock.millis();
+  }
+
+  private static String currentKey() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    return authentication != null ? authentication.getName() : null;
+  }
+}
@@ -0,0 +1,72 @@
+package com.openclassrooms.starterjwt.datasource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Active only when oc.app.datasource.replica.url is set: spring.datasource.* stays the
+ * primary and read-only transactions are routed to the replica pool.
+ */
+@Configuration
+@ConditionalOnProperty("oc.app.datasource.replica.url")
+public class ReplicaDataSourceConfig {
+
+  @Bean
+  @Primary
+  public DataSource dataSource(DataSourceProperties properties,
+      ReadYourWritesStickiness stickiness,
+      @Value("${oc.app.datasource.replica.url}") String replicaUrl,
+      @Value("${oc.app.datasource.replica.username:${spring.datasource.username:}}") String replicaUsername,
+      @Value("${oc.app.datasource.replica.password:${spring.datasource.password:}}") String replicaPassword) {
+    HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    primary.setPoolName("primary");
+
+    HikariDataSource replica = DataSourceBuilder.create()
+        .type(HikariDataSource.class)
+        .driverClassName(properties.determineDriverClassName())
+        .url(replicaUrl)
+        .username(replicaUsername)
+        .password(replicaPassword)
+        .build();
+    replica.setPoolName("replica");
+    replica.setReadOnly(true);
+
+    return routingDataSource(primary, replica, stickiness);
+  }
+
+  public static DataSource routingDataSource(DataSource primary, DataSource replica, ReadYourWritesStickiness stickiness) {
+    Map<Object, Object> targets = new HashMap<>();
+    targets.put(DataSourceRole.PRIMARY, primary);
+    targets.put(DataSourceRole.REPLICA, replica);
+
+    ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(stickiness);
+    routing.setTargetDataSources(targets);
+    routing.setDefaultTargetDataSource(primary);
+    routing.afterPropertiesSet();
+
+    return new LazyConnectionDataSourceProxy(routing);
+  }
+
+  // With open-in-view the Hibernate session outlives each transaction: the connection must
+  // be handed back after every transaction so the next one can be routed again.
+  @Bean
+  public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+    return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+        "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+  }
+}
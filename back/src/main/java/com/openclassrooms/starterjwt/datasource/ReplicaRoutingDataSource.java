@@ -0,0 +1,25 @@
+package com.openclassrooms.starterjwt.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends read-only transactions to the replica, unless the current user has just written.
+ * Must sit behind a LazyConnectionDataSourceProxy so that the connection is only fetched
+ * once the transaction's read-only flag is known.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+  private final ReadYourWritesStickiness stickiness;
+
+  public ReplicaRoutingDataSource(ReadYourWritesStickiness stickiness) {
+    this.stickiness = stickiness;
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !stickiness.isSticky()) {
+      return DataSourceRole.REPLICA;
+    }
+    return DataSourceRole.PRIMARY;
+  }
+}
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -24,6 +26,10 @@ public class SessionDto {
     @NotNull
     private Date date;
 
+    @Min(1)
+    @Max(480)
+    private Integer duration;
+
     @NotNull
     private Long teacher_id;
 
@@ -33,6 +39,8 @@ public class SessionDto {
 
     private List<Long> users;
 
+    private Long version;
+
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
@@ -0,0 +1,85 @@
+package com.openclassrooms.starterjwt.dto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Sparse fieldsets for sessions: {@code ?fields=id,name,date,teacher_id} keeps only the listed
+ * properties of each SessionDto, under the same JSON names and in the same order.
+ */
+public final class SessionFields {
+    private static final Map<String, Function<SessionDto, Object>> ACCESSORS = new LinkedHashMap<>();
+
+    static {
+        ACCESSORS.put("id", SessionDto::getId);
+        ACCESSORS.put("name", SessionDto::getName);
+        ACCESSORS.put("date", SessionDto::getDate);
+        ACCESSORS.put("duration", SessionDto::getDuration);
+        ACCESSORS.put("teacher_id", SessionDto::getTeacher_id);
+        ACCESSORS.put("description", SessionDto::getDescription);
+        ACCESSORS.put("users", SessionDto::getUsers);
+        ACCESSORS.put("version", SessionDto::getVersion);
+        ACCESSORS.put("createdAt", SessionDto::getCreatedAt);
+        ACCESSORS.put("updatedAt", SessionDto::getUpdatedAt);
+    }
+
+    private final List<Function<SessionDto, Object>> accessors;
+
+    private final List<String> names;
+
+    private SessionFields(List<String> names) {
+        this.names = names;
+        this.accessors = names.stream().map(ACCESSORS::get).collect(Collectors.toList());
+    }
+
+    /**
+     * Parses a comma separated list of property names. Returns null when the list is blank,
+     * meaning every property; throws IllegalArgumentException on an unknown name.
+     */
+    public static SessionFields parse(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return null;
+        }
+
+        Set<String> requested = new HashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!ACCESSORS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown session field: " + name);
+            }
+            requested.add(name);
+        }
+
+        // Keep the order of the full representation, whatever the order of the request.
+        List<String> names = new ArrayList<>(requested.size());
+        for (String name : ACCESSORS.keySet()) {
+            if (requested.contains(name)) {
+                names.add(name);
+            }
+        }
+        return new SessionFields(Collections.unmodifiableList(names));
+    }
+
+    public Map<String, Object> select(SessionDto sessionDto) {
+        Map<String, Object> selected = new LinkedHashMap<>(names.size() * 2);
+        for (int i = 0; i < names.size(); i++) {
+            selected.put(names.get(i), accessors.get(i).apply(sessionDto));
+        }
+        return selected;
+    }
+
+    public List<Map<String, Object>> select(List<SessionDto> sessionDtos) {
+        return sessionDtos.stream().map(this::select).collect(Collectors.toList());
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+}
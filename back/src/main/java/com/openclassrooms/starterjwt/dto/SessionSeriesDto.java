@@ -0,0 +1,42 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionSeriesDto {
+    private Long id;
+
+    @NotBlank
+    @Size(max = 50)
+    private String name;
+
+    @NotNull
+    @Size(max = 2500)
+    private String description;
+
+    @NotNull
+    private Long teacher_id;
+
+    @NotNull
+    private Date start;
+
+    @NotBlank
+    @Size(max = 255)
+    private String recurrence;
+
+    private Date materializedUntil;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+}
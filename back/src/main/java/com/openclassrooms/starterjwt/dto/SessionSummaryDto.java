@@ -0,0 +1,36 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * A session with the size of its roster instead of the participant ids.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionSummaryDto {
+    private Long id;
+
+    private String name;
+
+    private Date date;
+
+    private Integer duration;
+
+    private Long teacher_id;
+
+    private String description;
+
+    private long participantCount;
+
+    private Long version;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+}
@@ -3,6 +3,13 @@ package com.openclassrooms.starterjwt.exception;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+/**
+ * An ordinary user mistake, such as joining a session twice. Thrown often and never logged,
+ * so it carries no stack trace.
+ */
 @ResponseStatus(value= HttpStatus.BAD_REQUEST)
 public class BadRequestException extends RuntimeException {
+    public BadRequestException() {
+        super(null, null, false, false);
+    }
 }
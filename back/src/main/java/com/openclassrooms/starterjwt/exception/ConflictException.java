@@ -0,0 +1,19 @@
+package com.openclassrooms.starterjwt.exception;
+
+import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value= HttpStatus.CONFLICT)
+public class ConflictException extends RuntimeException {
+    private final Session current;
+
+    public ConflictException(Session current) {
+        super(null, null, false, false);
+        this.current = current;
+    }
+
+    public Session getCurrent() {
+        return current;
+    }
+}
@@ -3,6 +3,12 @@ package com.openclassrooms.starterjwt.exception;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+/**
+ * A missing resource. Expected on the request path, so it carries no stack trace.
+ */
 @ResponseStatus(value= HttpStatus.NOT_FOUND)
 public class NotFoundException extends RuntimeException {
+    public NotFoundException() {
+        super(null, null, false, false);
+    }
 }
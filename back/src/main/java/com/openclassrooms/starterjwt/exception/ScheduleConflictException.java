@@ -0,0 +1,18 @@
+package com.openclassrooms.starterjwt.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value= HttpStatus.CONFLICT)
+public class ScheduleConflictException extends RuntimeException {
+    private final Long conflictingSessionId;
+
+    public ScheduleConflictException(Long conflictingSessionId) {
+        super(null, null, false, false);
+        this.conflictingSessionId = conflictingSessionId;
+    }
+
+    public Long getConflictingSessionId() {
+        return conflictingSessionId;
+    }
+}
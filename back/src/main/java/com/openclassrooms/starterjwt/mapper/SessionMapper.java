@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.mapper;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.services.TeacherService;
@@ -8,6 +9,7 @@ import com.openclassrooms.starterjwt.services.UserService;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Mappings;
+import org.mapstruct.Named;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -19,24 +21,98 @@ import java.util.stream.Collectors;
 @Component
 @Mapper(componentModel = "spring", uses = {UserService.class}, imports = {Arrays.class, Collectors.class, Session.class, User.class, Collections.class, Optional.class})
 public abstract class SessionMapper implements EntityMapper<SessionDto, Session> {
+    /**
+     * Qualifies the generated conversions so that the list mappings go through the public,
+     * instrumented ones.
+     */
+    static final String GENERATED = "generated";
 
     @Autowired
     TeacherService teacherService;
     @Autowired
     UserService userService;
 
+    @Named(GENERATED)
     @Mappings({
             @Mapping(source = "description", target = "description"),
             @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? this.teacherService.findById(sessionDto.getTeacher_id()) : null)"),
             @Mapping(target = "users", expression = "java(Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList).stream().map(user_id -> { User user = this.userService.findById(user_id); if (user != null) { return user; } return null; }).collect(Collectors.toList()))"),
     })
-    public abstract Session toEntity(SessionDto sessionDto);
+    abstract Session mapToEntity(SessionDto sessionDto);
+
+    @Named(GENERATED)
+    @Mappings({
+            @Mapping(source = "description", target = "description"),
+            @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? this.teacherService.findById(sessionDto.getTeacher_id()) : null)"),
+            @Mapping(target = "users", ignore = true),
+    })
+    abstract Session mapToEntityWithoutUsers(SessionDto sessionDto);
 
 
+    @Named(GENERATED)
     @Mappings({
             @Mapping(source = "description", target = "description"),
             @Mapping(source = "session.teacher.id", target = "teacher_id"),
             @Mapping(target = "users", expression = "java(Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptyList).stream().map(u -> u.getId()).collect(Collectors.toList()))"),
     })
-    public abstract SessionDto toDto(Session session);
+    abstract SessionDto mapToDto(Session session);
+
+    @Named(GENERATED)
+    @Mappings({
+            @Mapping(source = "description", target = "description"),
+            @Mapping(source = "session.teacher.id", target = "teacher_id"),
+            @Mapping(target = "users", ignore = true),
+    })
+    abstract SessionDto mapToDtoWithoutUsers(Session session);
+
+    @Named(GENERATED)
+    @Mappings({
+            @Mapping(source = "session.teacher.id", target = "teacher_id"),
+            @Mapping(source = "participantCount", target = "participantCount"),
+    })
+    abstract SessionSummaryDto mapToSummaryDto(Session session, long participantCount);
+
+    @Override
+    public Session toEntity(SessionDto sessionDto) {
+        SessionMappingEvent event = new SessionMappingEvent();
+        event.begin();
+        Session session = mapToEntity(sessionDto);
+        event.commit("toEntity", sessionDto != null ? sessionDto.getId() : null);
+        return session;
+    }
+
+    @Named("withoutUsers")
+    public Session toEntityWithoutUsers(SessionDto sessionDto) {
+        SessionMappingEvent event = new SessionMappingEvent();
+        event.begin();
+        Session session = mapToEntityWithoutUsers(sessionDto);
+        event.commit("toEntityWithoutUsers", sessionDto != null ? sessionDto.getId() : null);
+        return session;
+    }
+
+    @Override
+    public SessionDto toDto(Session session) {
+        SessionMappingEvent event = new SessionMappingEvent();
+        event.begin();
+        SessionDto sessionDto = mapToDto(session);
+        event.commit("toDto", session != null ? session.getId() : null);
+        return sessionDto;
+    }
+
+    @Named("withoutUsers")
+    public SessionDto toDtoWithoutUsers(Session session) {
+        SessionMappingEvent event = new SessionMappingEvent();
+        event.begin();
+        SessionDto sessionDto = mapToDtoWithoutUsers(session);
+        event.commit("toDtoWithoutUsers", session != null ? session.getId() : null);
+        return sessionDto;
+    }
+
+    public SessionSummaryDto toSummaryDto(Session session, long participantCount) {
+        SessionMappingEvent event = new SessionMappingEvent();
+        event.begin();
+        SessionSummaryDto summary = mapToSummaryDto(session, participantCount);
+        event.commit("toSummaryDto", session != null ? session.getId() : null);
+        return summary;
+    }
 }
@@ -0,0 +1,34 @@
+package com.openclassrooms.starterjwt.mapper;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one conversion made by {@link SessionMapper}. List conversions show
+ * up as one event per element.
+ */
+@Name("savasana.SessionMapping")
+@Label("Session Mapping")
+@Category({"Savasana", "Mapping"})
+@Description("Conversion between a session entity and its DTO")
+@StackTrace(false)
+class SessionMappingEvent extends Event {
+    @Label("Conversion")
+    String conversion;
+
+    @Label("Session Id")
+    long sessionId;
+
+    void commit(String conversion, Long sessionId) {
+        end();
+        if (shouldCommit()) {
+            this.conversion = conversion;
+            this.sessionId = sessionId != null ? sessionId : 0L;
+            commit();
+        }
+    }
+}
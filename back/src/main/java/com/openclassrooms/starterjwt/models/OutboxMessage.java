@@ -0,0 +1,52 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * A notification waiting to be sent. Rows are written in the transaction of the change they
+ * describe and deleted once dispatched; a null availableAt marks a message that exhausted
+ * its attempts.
+ */
+@Entity
+@Table(name = "OUTBOX")
+@EntityListeners(AuditingEntityListener.class)
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(of = {"id"})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class OutboxMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Column(name = "event_type", length = 32)
+    private String eventType;
+
+    @NotNull
+    @Column(name = "aggregate_id")
+    private Long aggregateId;
+
+    @NotNull
+    private String payload;
+
+    private int attempts;
+
+    @Column(name = "available_at")
+    private Date availableAt;
+
+    @CreatedDate
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -3,11 +3,15 @@ package com.openclassrooms.starterjwt.models;
 
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -16,8 +20,11 @@ import java.util.Date;
 import java.util.List;
 
 @Entity
-@Table(name = "SESSIONS")
+@Table(name = "SESSIONS", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"series_id", "date"})
+})
 @EntityListeners(AuditingEntityListener.class)
+@DynamicUpdate
 @Data
 @Accessors(chain = true)
 @EqualsAndHashCode(of = {"id"})
@@ -26,6 +33,8 @@ import java.util.List;
 @AllArgsConstructor
 @ToString
 public class Session {
+    public static final int DEFAULT_DURATION = 60;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -37,6 +46,13 @@ public class Session {
     @NotNull
     private Date date;
 
+    // Minutes.
+    @NotNull
+    @Min(1)
+    @Max(480)
+    @Builder.Default
+    private Integer duration = DEFAULT_DURATION;
+
     @NotNull
     @Size(max = 2500)
     private String description;
@@ -45,13 +61,22 @@ public class Session {
     @JoinColumn(name = "teacher_id", referencedColumnName = "id")
     private Teacher teacher;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @Column(name = "series_id")
+    private Long seriesId;
+
+    // Loaded only by callers that need the roster, a batch of sessions at a time.
+    @ManyToMany(fetch = FetchType.LAZY)
+    @BatchSize(size = 50)
+    @ToString.Exclude
     @JoinTable(
             name = "PARTICIPATE",
             joinColumns = @JoinColumn( name = "session_id" ),
             inverseJoinColumns = @JoinColumn( name = "user_id" ) )
     private List<User> users;
 
+    @Version
+    private Long version;
+
     @CreatedDate
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -51,6 +51,9 @@ public class User {
   @NonNull
   private boolean admin;
 
+  @Column(name = "token_version")
+  private int tokenVersion;
+
   @CreatedDate
   @Column(name = "created_at", updatable = false)
   private LocalDateTime createdAt;
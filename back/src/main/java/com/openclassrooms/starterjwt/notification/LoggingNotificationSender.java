@@ -0,0 +1,21 @@
+package com.openclassrooms.starterjwt.notification;
+
+import com.openclassrooms.starterjwt.models.OutboxMessage;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Default sender: logs each notification instead of delivering it. Selected with
+ * {@code oc.app.outbox.sender=log}.
+ */
+@Component
+@ConditionalOnProperty(name = "oc.app.outbox.sender", havingValue = "log", matchIfMissing = true)
+@Log4j2
+public class LoggingNotificationSender implements NotificationSender {
+    @Override
+    public void send(OutboxMessage message) {
+        log.info("Notification {} for session {}: {}", message.getEventType(), message.getAggregateId(),
+                message.getPayload());
+    }
+}
@@ -0,0 +1,11 @@
+package com.openclassrooms.starterjwt.notification;
+
+import com.openclassrooms.starterjwt.models.OutboxMessage;
+
+/**
+ * Delivers one outbox message, e.g. by email. Throwing makes the dispatcher retry the message
+ * later, so implementations must tolerate receiving the same message more than once.
+ */
+public interface NotificationSender {
+    void send(OutboxMessage message) throws Exception;
+}
@@ -0,0 +1,170 @@
+package com.openclassrooms.starterjwt.notification;
+
+import com.openclassrooms.starterjwt.models.OutboxMessage;
+import com.openclassrooms.starterjwt.repository.OutboxRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the outbox. Each batch is claimed with SKIP LOCKED in a short transaction that only
+ * pushes the messages' availableAt forward by a lease, so no lock or connection is held while
+ * they are sent. A sent message is then deleted on its own; a failed one comes back after an
+ * exponential backoff, and a message that keeps failing is parked. If the instance dies while
+ * sending, the lease runs out and another dispatcher takes the messages over: delivery is at
+ * least once. Disabled with {@code oc.app.outbox.enabled=false}, e.g. on databases without
+ * SKIP LOCKED.
+ */
+@Component
+@ConditionalOnProperty(name = "oc.app.outbox.enabled", havingValue = "true", matchIfMissing = true)
+@Log4j2
+public class OutboxDispatcher implements MeterBinder {
+    private final OutboxRepository outboxRepository;
+
+    private final NotificationSender notificationSender;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicLong dispatched = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    @Value("${oc.app.outbox.batchSize:100}")
+    private int batchSize = 100;
+
+    @Value("${oc.app.outbox.maxAttempts:8}")
+    private int maxAttempts = 8;
+
+    @Value("${oc.app.outbox.retryDelayMs:30000}")
+    private long retryDelayMs = 30000L;
+
+    // Longer than sending a whole batch takes, or its tail may be claimed again meanwhile.
+    @Value("${oc.app.outbox.leaseMs:60000}")
+    private long leaseMs = 60000L;
+
+    public OutboxDispatcher(OutboxRepository outboxRepository,
+                            NotificationSender notificationSender,
+                            TransactionTemplate transactionTemplate) {
+        this.outboxRepository = outboxRepository;
+        this.notificationSender = notificationSender;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Dispatches due messages until a batch comes back short, then waits for the next poll.
+     */
+    @Scheduled(fixedDelayString = "${oc.app.outbox.pollMs:2000}")
+    public void dispatchDue() {
+        long start = System.nanoTime();
+        int total = 0;
+        int claimed;
+        do {
+            List<OutboxMessage> messages = this.transactionTemplate.execute(status -> claimBatch());
+            claimed = messages != null ? messages.size() : 0;
+            if (claimed > 0) {
+                send(messages);
+            }
+            total += claimed;
+        } while (claimed == this.batchSize);
+
+        if (total > 0) {
+            long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            log.info("{} outbox messages dispatched in {} ms ({} msg/s)", total, elapsedMs, total * 1000L / elapsedMs);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("outbox.messages.dispatched", this, OutboxDispatcher::getDispatched)
+                .description("Outbox messages sent and deleted").register(registry);
+        FunctionCounter.builder("outbox.messages.failed", this, OutboxDispatcher::getFailed)
+                .description("Outbox send attempts that failed").register(registry);
+    }
+
+    public long getDispatched() {
+        return dispatched.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getRetryDelayMs() {
+        return retryDelayMs;
+    }
+
+    public void setRetryDelayMs(long retryDelayMs) {
+        this.retryDelayMs = retryDelayMs;
+    }
+
+    public long getLeaseMs() {
+        return leaseMs;
+    }
+
+    public void setLeaseMs(long leaseMs) {
+        this.leaseMs = leaseMs;
+    }
+
+    private List<OutboxMessage> claimBatch() {
+        long now = System.currentTimeMillis();
+        List<OutboxMessage> messages = this.outboxRepository.claimDue(new Date(now), this.batchSize);
+        Date leaseEnd = new Date(now + this.leaseMs);
+        messages.forEach(message -> message.setAvailableAt(leaseEnd));
+        return messages;
+    }
+
+    private void send(List<OutboxMessage> messages) {
+        for (OutboxMessage message : messages) {
+            try {
+                this.notificationSender.send(message);
+            } catch (Exception e) {
+                this.failed.incrementAndGet();
+                retryLater(message, e);
+                continue;
+            }
+            this.transactionTemplate.execute(status -> this.outboxRepository.deleteMessage(message.getId()));
+            this.dispatched.incrementAndGet();
+        }
+    }
+
+    private void retryLater(OutboxMessage message, Exception cause) {
+        int attempts = message.getAttempts() + 1;
+        message.setAttempts(attempts);
+        if (attempts >= this.maxAttempts) {
+            message.setAvailableAt(null);
+            log.error("Outbox message {} parked after {} attempts", message.getId(), attempts, cause);
+        } else {
+            long delay = this.retryDelayMs << Math.min(attempts - 1, 16);
+            message.setAvailableAt(new Date(System.currentTimeMillis() + delay));
+            log.warn("Outbox message {} failed, retrying in {} ms", message.getId(), delay, cause);
+        }
+        this.transactionTemplate.execute(status ->
+                this.outboxRepository.reschedule(message.getId(), message.getAttempts(), message.getAvailableAt()));
+    }
+}
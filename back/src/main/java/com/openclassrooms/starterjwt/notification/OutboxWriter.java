@@ -0,0 +1,63 @@
+package com.openclassrooms.starterjwt.notification;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.models.OutboxMessage;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.OutboxRepository;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Turns session changes into outbox rows, in the transaction of the change: the message exists
+ * if and only if the change committed. The payload carries the participants, which a deleted
+ * session no longer has by the time the message is sent. A new session has no participants
+ * to notify yet.
+ */
+@Component
+public class OutboxWriter {
+    private final OutboxRepository outboxRepository;
+
+    private final ObjectMapper objectMapper;
+
+    public OutboxWriter(OutboxRepository outboxRepository, ObjectMapper objectMapper) {
+        this.outboxRepository = outboxRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @EventListener(condition = "#event.type != T(com.openclassrooms.starterjwt.notification.SessionChangedEvent$Type).SESSION_CREATED")
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onSessionChanged(SessionChangedEvent event) {
+        Session session = event.getSession();
+        List<Long> participantIds = Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptyList).stream()
+                .map(User::getId)
+                .collect(Collectors.toList());
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("sessionId", session.getId());
+        payload.put("name", session.getName());
+        payload.put("date", session.getDate());
+        payload.put("participantIds", participantIds);
+
+        try {
+            this.outboxRepository.save(new OutboxMessage()
+                    .setEventType(event.getType().name())
+                    .setAggregateId(session.getId())
+                    .setPayload(this.objectMapper.writeValueAsString(payload))
+                    .setAvailableAt(new Date()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize notification payload", e);
+        }
+    }
+}
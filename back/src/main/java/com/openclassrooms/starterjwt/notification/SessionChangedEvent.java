@@ -0,0 +1,36 @@
+package com.openclassrooms.starterjwt.notification;
+
+import com.openclassrooms.starterjwt.models.Session;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Date;
+
+/**
+ * A session was created, updated or is about to be deleted. Published inside the transaction
+ * making the change, if any.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class SessionChangedEvent {
+    public enum Type {
+        SESSION_CREATED,
+        SESSION_UPDATED,
+        SESSION_DELETED
+    }
+
+    private final Type type;
+
+    private final Session session;
+
+    /**
+     * Date the session had before an update moved it, null otherwise.
+     */
+    private final Date previousDate;
+
+    public SessionChangedEvent(Type type, Session session) {
+        this(type, session, null);
+    }
+}
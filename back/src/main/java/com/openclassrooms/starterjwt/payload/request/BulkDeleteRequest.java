@@ -0,0 +1,14 @@
+package com.openclassrooms.starterjwt.payload.request;
+
+import java.util.List;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+
+import lombok.Data;
+
+@Data
+public class BulkDeleteRequest {
+  @NotEmpty
+  private List<@NotNull Long> ids;
+}
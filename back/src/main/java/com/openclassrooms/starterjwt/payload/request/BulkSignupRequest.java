@@ -0,0 +1,15 @@
+package com.openclassrooms.starterjwt.payload.request;
+
+import java.util.List;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+
+import lombok.Data;
+
+@Data
+public class BulkSignupRequest {
+  @NotEmpty
+  private List<@NotNull @Valid SignupRequest> users;
+}
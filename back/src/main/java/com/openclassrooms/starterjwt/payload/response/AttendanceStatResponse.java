@@ -0,0 +1,13 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class AttendanceStatResponse {
+  private String key;
+  private long sessions;
+  private long participations;
+  private double fillRate;
+}
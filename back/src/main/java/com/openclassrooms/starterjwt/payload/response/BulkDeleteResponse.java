@@ -0,0 +1,13 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class BulkDeleteResponse {
+  private int requested;
+  private int usersDeleted;
+  private int participationsDeleted;
+  private int chunks;
+}
@@ -0,0 +1,14 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class BulkSignupResponse {
+  private int requested;
+  private int created;
+  private List<String> skippedEmails;
+}
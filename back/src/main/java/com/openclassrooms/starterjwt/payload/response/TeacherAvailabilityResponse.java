@@ -0,0 +1,25 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import java.util.Date;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class TeacherAvailabilityResponse {
+  private Long teacherId;
+  private Date from;
+  private Date to;
+  private List<Interval> busy;
+  private List<Interval> free;
+
+  @Getter
+  @AllArgsConstructor
+  public static class Interval {
+    private Long sessionId;
+    private Date start;
+    private Date end;
+  }
+}
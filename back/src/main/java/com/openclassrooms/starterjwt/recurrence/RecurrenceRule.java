@@ -0,0 +1,181 @@
+package com.openclassrooms.starterjwt.recurrence;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Subset of the iCalendar RRULE grammar (RFC 5545) used by session series:
+ * FREQ=DAILY|WEEKLY, INTERVAL, BYDAY (weekly only), COUNT and UNTIL.
+ */
+public final class RecurrenceRule {
+    public enum Frequency { DAILY, WEEKLY }
+
+    private static final DateTimeFormatter UNTIL_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter UNTIL_DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    private final Frequency frequency;
+    private final int interval;
+    private final Set<DayOfWeek> byDay;
+    private final Integer count;
+    private final LocalDateTime until;
+
+    private RecurrenceRule(Frequency frequency, int interval, Set<DayOfWeek> byDay, Integer count, LocalDateTime until) {
+        this.frequency = frequency;
+        this.interval = interval;
+        this.byDay = byDay;
+        this.count = count;
+        this.until = until;
+    }
+
+    public static RecurrenceRule parse(String rule) {
+        if (rule == null || rule.trim().isEmpty()) {
+            throw new IllegalArgumentException("Empty recurrence rule");
+        }
+
+        Frequency frequency = null;
+        int interval = 1;
+        Set<DayOfWeek> byDay = EnumSet.noneOf(DayOfWeek.class);
+        Integer count = null;
+        LocalDateTime until = null;
+
+        String value = rule.trim();
+        if (value.startsWith("RRULE:")) {
+            value = value.substring("RRULE:".length());
+        }
+
+        try {
+            for (String part : value.split(";")) {
+                int separator = part.indexOf('=');
+                if (separator <= 0) {
+                    throw new IllegalArgumentException("Invalid recurrence rule part: " + part);
+                }
+                String name = part.substring(0, separator).trim().toUpperCase();
+                String content = part.substring(separator + 1).trim().toUpperCase();
+
+                switch (name) {
+                    case "FREQ":
+                        frequency = Frequency.valueOf(content);
+                        break;
+                    case "INTERVAL":
+                        interval = Integer.parseInt(content);
+                        break;
+                    case "BYDAY":
+                        for (String day : content.split(",")) {
+                            byDay.add(dayOf(day.trim()));
+                        }
+                        break;
+                    case "COUNT":
+                        count = Integer.parseInt(content);
+                        break;
+                    case "UNTIL":
+                        until = content.length() == 8
+                                ? LocalDate.parse(content, UNTIL_DATE).atTime(23, 59, 59)
+                                : LocalDateTime.parse(content.endsWith("Z") ? content.substring(0, content.length() - 1) : content, UNTIL_DATE_TIME);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unsupported recurrence rule part: " + name);
+                }
+            }
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid UNTIL in recurrence rule: " + rule, e);
+        }
+
+        if (frequency == null) {
+            throw new IllegalArgumentException("FREQ is required in recurrence rule: " + rule);
+        }
+        if (interval < 1 || (count != null && count < 1)) {
+            throw new IllegalArgumentException("INTERVAL and COUNT must be positive: " + rule);
+        }
+        if (frequency == Frequency.DAILY && !byDay.isEmpty()) {
+            throw new IllegalArgumentException("BYDAY is only supported with FREQ=WEEKLY: " + rule);
+        }
+
+        return new RecurrenceRule(frequency, interval, byDay, count, until);
+    }
+
+    /**
+     * Occurrences of a series starting at {@code start} that fall in [{@code from}, {@code to}).
+     * COUNT is always counted from the first occurrence, whatever the window.
+     */
+    public List<LocalDateTime> occurrences(LocalDateTime start, LocalDateTime from, LocalDateTime to) {
+        List<LocalDateTime> occurrences = new ArrayList<>();
+        int emitted = 0;
+
+        if (this.frequency == Frequency.DAILY) {
+            for (LocalDateTime occurrence = start; ; occurrence = occurrence.plusDays(this.interval)) {
+                if (isPastEnd(occurrence, emitted, to)) {
+                    return occurrences;
+                }
+                emitted++;
+                if (!occurrence.isBefore(from)) {
+                    occurrences.add(occurrence);
+                }
+            }
+        }
+
+        Set<DayOfWeek> days = this.byDay.isEmpty() ? EnumSet.of(start.getDayOfWeek()) : this.byDay;
+        LocalDate weekStart = start.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        for (; ; weekStart = weekStart.plusWeeks(this.interval)) {
+            for (DayOfWeek day : days) {
+                LocalDateTime occurrence = weekStart.plusDays(day.getValue() - 1L).atTime(start.toLocalTime());
+                if (occurrence.isBefore(start)) {
+                    continue;
+                }
+                if (isPastEnd(occurrence, emitted, to)) {
+                    return occurrences;
+                }
+                emitted++;
+                if (!occurrence.isBefore(from)) {
+                    occurrences.add(occurrence);
+                }
+            }
+        }
+    }
+
+    private boolean isPastEnd(LocalDateTime occurrence, int emitted, LocalDateTime to) {
+        return !occurrence.isBefore(to)
+                || (this.count != null && emitted >= this.count)
+                || (this.until != null && occurrence.isAfter(this.until));
+    }
+
+    private static DayOfWeek dayOf(String code) {
+        switch (code) {
+            case "MO": return DayOfWeek.MONDAY;
+            case "TU": return DayOfWeek.TUESDAY;
+            case "WE": return DayOfWeek.WEDNESDAY;
+            case "TH": return DayOfWeek.THURSDAY;
+            case "FR": return DayOfWeek.FRIDAY;
+            case "SA": return DayOfWeek.SATURDAY;
+            case "SU": return DayOfWeek.SUNDAY;
+            default: throw new IllegalArgumentException("Invalid BYDAY value: " + code);
+        }
+    }
+
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public Set<DayOfWeek> getByDay() {
+        return byDay;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public LocalDateTime getUntil() {
+        return until;
+    }
+}
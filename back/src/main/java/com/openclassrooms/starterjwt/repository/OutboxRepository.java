@@ -0,0 +1,32 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.OutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface OutboxRepository extends JpaRepository<OutboxMessage, Long> {
+    /**
+     * Locks up to {@code limit} due messages. Rows already claimed by another dispatcher are
+     * skipped instead of waited for, so several instances can drain the outbox side by side.
+     * SKIP LOCKED needs MySQL 8.0 or later.
+     */
+    @Query(value = "SELECT * FROM OUTBOX WHERE available_at <= :now ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<OutboxMessage> claimDue(@Param("now") Date now, @Param("limit") int limit);
+
+    // By id, so a message another dispatcher already removed is not written back.
+    @Modifying
+    @Query("DELETE FROM OutboxMessage m WHERE m.id = :id")
+    int deleteMessage(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE OutboxMessage m SET m.attempts = :attempts, m.availableAt = :availableAt WHERE m.id = :id")
+    int reschedule(@Param("id") Long id, @Param("attempts") int attempts, @Param("availableAt") Date availableAt);
+}
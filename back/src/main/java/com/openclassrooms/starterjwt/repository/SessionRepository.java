@@ -1,9 +1,44 @@
 package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+
 @Repository
 public interface SessionRepository  extends JpaRepository<Session, Long> {
+    List<Session> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    @Query("SELECT s.id, COUNT(u.id) FROM Session s LEFT JOIN s.users u GROUP BY s.id")
+    List<Object[]> countParticipantsBySession();
+
+    @Query("SELECT COUNT(u.id) FROM Session s JOIN s.users u WHERE s.id = :id")
+    long countParticipants(@Param("id") Long id);
+
+    @Query("SELECT s.id, s.teacher.id, s.date, s.duration FROM Session s WHERE s.teacher IS NOT NULL AND s.date >= :since")
+    List<Object[]> findSchedules(@Param("since") Date since);
+
+    @Query("SELECT s.id, s.teacher.id, s.date, s.duration FROM Session s WHERE s.teacher.id = :teacherId AND s.date >= :since")
+    List<Object[]> findTeacherSchedule(@Param("teacherId") Long teacherId, @Param("since") Date since);
+
+    @Query("SELECT s.id, s.date, s.duration FROM Session s WHERE s.seriesId = :seriesId AND s.date >= :from")
+    List<Object[]> findSeriesOccurrences(@Param("seriesId") Long seriesId, @Param("from") Date from);
+
+    @Modifying
+    @Query("UPDATE VERSIONED Session s SET s.name = :name, s.description = :description, s.teacher = :teacher, s.updatedAt = :now "
+            + "WHERE s.seriesId = :seriesId AND s.date >= :from")
+    int updateSeriesOccurrences(@Param("seriesId") Long seriesId,
+                                @Param("from") Date from,
+                                @Param("name") String name,
+                                @Param("description") String description,
+                                @Param("teacher") Teacher teacher,
+                                @Param("now") LocalDateTime now);
 }
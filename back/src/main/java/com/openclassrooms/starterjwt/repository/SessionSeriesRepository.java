@@ -0,0 +1,13 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.SessionSeries;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface SessionSeriesRepository extends JpaRepository<SessionSeries, Long> {
+    List<SessionSeries> findByMaterializedUntilBefore(Date horizon);
+}
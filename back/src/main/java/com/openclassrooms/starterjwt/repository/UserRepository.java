@@ -1,8 +1,14 @@
 package com.openclassrooms.starterjwt.repository;
 
+import java.util.Collection;
 import java.util.Optional;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.openclassrooms.starterjwt.models.User;
@@ -12,4 +18,23 @@ public interface UserRepository extends JpaRepository<User, Long> {
   Optional<User> findByEmail(String email);
 
   Boolean existsByEmail(String email); 
+
+  @Query(value = "SELECT u FROM Session s JOIN s.users u WHERE s.id = :sessionId ORDER BY u.lastName, u.firstName, u.id",
+      countQuery = "SELECT COUNT(u.id) FROM Session s JOIN s.users u WHERE s.id = :sessionId")
+  Page<User> findParticipants(@Param("sessionId") Long sessionId, Pageable pageable);
+
+  @Modifying
+  @Query("UPDATE User u SET u.tokenVersion = u.tokenVersion + 1 WHERE u.id = :id")
+  int incrementTokenVersion(@Param("id") Long id);
+
+  @Query("SELECT u.tokenVersion FROM User u WHERE u.id = :id")
+  Optional<Integer> findTokenVersion(@Param("id") Long id);
+
+  @Modifying
+  @Query(value = "DELETE FROM PARTICIPATE WHERE user_id IN (:ids)", nativeQuery = true)
+  int deleteParticipationsByUserIds(@Param("ids") Collection<Long> ids);
+
+  @Modifying
+  @Query("DELETE FROM User u WHERE u.id IN (:ids)")
+  int deleteAllByIds(@Param("ids") Collection<Long> ids);
 }
@@ -3,6 +3,7 @@ package com.openclassrooms.starterjwt.security;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
@@ -16,6 +17,8 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 
 import com.openclassrooms.starterjwt.security.jwt.AuthEntryPointJwt;
 import com.openclassrooms.starterjwt.security.jwt.AuthTokenFilter;
+import com.openclassrooms.starterjwt.security.ratelimit.RateLimitFilter;
+import com.openclassrooms.starterjwt.security.ratelimit.RateLimitProperties;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
 @Configuration
@@ -31,6 +34,9 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
   @Autowired
   private AuthEntryPointJwt unauthorizedHandler;
 
+  @Autowired
+  private RateLimitProperties rateLimitProperties;
+
   @Bean
   public AuthTokenFilter authenticationJwtTokenFilter() {
     return new AuthTokenFilter();
@@ -58,9 +64,13 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
       .exceptionHandling().authenticationEntryPoint(unauthorizedHandler).and()
       .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS).and()
       .authorizeRequests().antMatchers("/api/auth/**").permitAll()
+      // Calendar apps authenticate with the feed token in the URL.
+      .antMatchers(HttpMethod.GET, "/api/calendar/*/*/sessions.ics").permitAll()
       .antMatchers("/api/**").authenticated()
       .anyRequest().authenticated();
 
     http.addFilterBefore(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
+    // Not a bean, so that Boot does not also register it as a servlet filter ahead of the security chain.
+    http.addFilterAfter(new RateLimitFilter(rateLimitProperties), AuthTokenFilter.class);
   }
 }
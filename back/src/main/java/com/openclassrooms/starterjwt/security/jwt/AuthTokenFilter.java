@@ -12,31 +12,36 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import com.openclassrooms.starterjwt.security.services.TokenVersionRegistry;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 public class AuthTokenFilter extends OncePerRequestFilter {
   @Autowired
   private JwtUtils jwtUtils;
 
   @Autowired
-  private UserDetailsServiceImpl userDetailsService;
+  private TokenVersionRegistry tokenVersionRegistry;
+
+  @Autowired
+  private TokenRevocationStore tokenRevocationStore;
 
   private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
   @Override
   protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
       throws ServletException, IOException {
+    AuthenticationEvent event = new AuthenticationEvent();
+    event.begin();
+    UserDetailsImpl userDetails = null;
+    boolean authenticated = false;
     try {
       String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+      userDetails = jwt != null ? jwtUtils.getUserDetailsFromJwtToken(jwt) : null;
+      if (userDetails != null && isActive(userDetails)) {
         UsernamePasswordAuthenticationToken authentication =
             new UsernamePasswordAuthenticationToken(
                 userDetails,
@@ -45,14 +50,24 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
+        authenticated = true;
       }
     } catch (Exception e) {
       logger.error("Cannot set user authentication: {}", e);
     }
+    event.commit(request.getRequestURI(), userDetails, authenticated);
 
     filterChain.doFilter(request, response);
   }
 
+  private boolean isActive(UserDetailsImpl userDetails) {
+    if (!tokenVersionRegistry.isCurrent(userDetails.getId(), userDetails.getTokenVersion())) {
+      return false;
+    }
+    return userDetails.getTokenExpiration() == null
+        || !tokenRevocationStore.isRevoked(userDetails.getTokenId(), userDetails.getTokenExpiration().getTime());
+  }
+
   private String parseJwt(HttpServletRequest request) {
     String headerAuth = request.getHeader("Authorization");
 
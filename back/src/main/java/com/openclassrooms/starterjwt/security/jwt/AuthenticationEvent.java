@@ -0,0 +1,40 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+/**
+ * Flight Recorder event covering the authentication part of {@link AuthTokenFilter}, from the
+ * header being read to the security context being set. The rest of the chain is not included.
+ */
+@Name("savasana.Authentication")
+@Label("Request Authentication")
+@Category({"Savasana", "Security"})
+@Description("Bearer token resolution and principal checks in AuthTokenFilter")
+@StackTrace(false)
+class AuthenticationEvent extends Event {
+  @Label("Path")
+  String path;
+
+  @Label("User Id")
+  long userId;
+
+  @Label("Authenticated")
+  boolean authenticated;
+
+  void commit(String path, UserDetailsImpl userDetails, boolean authenticated) {
+    end();
+    if (shouldCommit()) {
+      this.path = path;
+      this.userId = userDetails != null && userDetails.getId() != null ? userDetails.getId() : 0L;
+      this.authenticated = authenticated;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,362 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+
+/**
+ * Signing keys identified by their kid. New tokens are signed with the current key; replaced
+ * keys stay available for verification until every token they signed has expired.
+ */
+public class JwtKeyRing {
+  private final SignatureAlgorithm algorithm;
+
+  private final Map<String, SigningKey> keys = new ConcurrentHashMap<>();
+
+  private final SigningKey legacyKey;
+
+  private volatile SigningKey current;
+
+  private JwtKeyRing(SignatureAlgorithm algorithm, SigningKey initial, SigningKey legacyKey) {
+    this.algorithm = algorithm;
+    this.legacyKey = legacyKey;
+    this.current = initial;
+    this.keys.put(initial.getKid(), initial);
+  }
+
+  /**
+   * HMAC ring seeded with the shared secret. Tokens signed without a kid header are verified
+   * against that secret. A secret shorter than the algorithm requires is stretched with SHA-512.
+   * The secret is taken as UTF-8 text, not base64 as before key rings, so tokens issued by
+   * earlier versions no longer verify and their users sign in again.
+   */
+  public static JwtKeyRing hmac(SignatureAlgorithm algorithm, String sharedSecret) {
+    byte[] secret = sharedSecret.getBytes(StandardCharsets.UTF_8);
+    if (secret.length * Byte.SIZE < algorithm.getMinKeyLength()) {
+      secret = sha512(secret);
+    }
+    SigningKey key = new SigningKey(kid(secret), algorithm, new SecretKeySpec(secret, algorithm.getJcaName()), null,
+        System.currentTimeMillis());
+    return new JwtKeyRing(algorithm, key, key);
+  }
+
+  /**
+   * RSA or EC ring, seeded with the configured key pair or, when none is given, a generated one.
+   */
+  public static JwtKeyRing asymmetric(SignatureAlgorithm algorithm, String base64PrivateKey, String base64PublicKey) {
+    if (!algorithm.isRsa() && !algorithm.isEllipticCurve()) {
+      throw new IllegalArgumentException("Unsupported asymmetric algorithm: " + algorithm);
+    }
+
+    SigningKey initial;
+    if (base64PrivateKey != null && !base64PrivateKey.isEmpty()) {
+      initial = load(algorithm, base64PrivateKey, base64PublicKey, System.currentTimeMillis());
+    } else {
+      initial = generate(algorithm);
+    }
+    return new JwtKeyRing(algorithm, initial, null);
+  }
+
+  /**
+   * Ring over keys read back from a {@link JwtKeyStore}. The newest key not scheduled for
+   * retirement signs; {@code legacyKey} verifies tokens without a kid and may be null.
+   */
+  static JwtKeyRing restore(SignatureAlgorithm algorithm, List<SigningKey> stored, SigningKey legacyKey) {
+    JwtKeyRing ring = new JwtKeyRing(algorithm, stored.get(0), legacyKey);
+    ring.sync(stored, System.currentTimeMillis());
+    return ring;
+  }
+
+  /**
+   * Key from its encoded material: the raw secret for HMAC, PKCS#8 and X.509 otherwise.
+   */
+  static SigningKey decode(SignatureAlgorithm algorithm, byte[] privateKey, byte[] publicKey, long createdAt,
+      Long retireAt) {
+    SigningKey key;
+    if (algorithm.isHmac()) {
+      key = new SigningKey(kid(privateKey), algorithm, new SecretKeySpec(privateKey, algorithm.getJcaName()), null,
+          createdAt);
+    } else {
+      key = load(algorithm, Base64.getEncoder().encodeToString(privateKey), Base64.getEncoder().encodeToString(publicKey),
+          createdAt);
+    }
+    if (retireAt != null) {
+      key.retireAt(retireAt);
+    }
+    return key;
+  }
+
+  static SigningKey generateKey(SignatureAlgorithm algorithm) {
+    return generate(algorithm);
+  }
+
+  public SignatureAlgorithm getAlgorithm() {
+    return algorithm;
+  }
+
+  public SigningKey current() {
+    return current;
+  }
+
+  /**
+   * Key that verifies tokens carrying the given kid, or null when the kid is unknown or retired.
+   * Tokens without a kid only verify against the legacy shared secret.
+   */
+  public SigningKey forKid(String kid) {
+    return kid == null ? legacyKey : keys.get(kid);
+  }
+
+  /**
+   * Makes a freshly generated key current. The previous key keeps verifying for
+   * {@code retentionMs}, after which it is dropped.
+   */
+  public synchronized SigningKey rotate(long now, long retentionMs) {
+    SigningKey next = generate(algorithm);
+    install(next, now, retentionMs);
+    return next;
+  }
+
+  /**
+   * Makes {@code next} current, as {@link #rotate} does with a key generated elsewhere.
+   */
+  synchronized void install(SigningKey next, long now, long retentionMs) {
+    current.retireAt(now + retentionMs);
+    keys.put(next.getKid(), next);
+    current = next;
+    keys.values().removeIf(key -> key.isRetired(now));
+  }
+
+  /**
+   * Merges keys written by other instances: unknown ones are added, retirement dates are
+   * applied, and the newest key not scheduled for retirement becomes current.
+   */
+  synchronized void sync(Collection<SigningKey> stored, long now) {
+    for (SigningKey key : stored) {
+      SigningKey known = keys.get(key.getKid());
+      if (known == null) {
+        keys.put(key.getKid(), key);
+      } else if (key.retireAt != Long.MAX_VALUE) {
+        known.retireAt(key.retireAt);
+      }
+    }
+    keys.values().removeIf(key -> key.isRetired(now));
+
+    SigningKey newest = null;
+    for (SigningKey key : keys.values()) {
+      if (key.retireAt == Long.MAX_VALUE && (newest == null || key.getCreatedAt() > newest.getCreatedAt())) {
+        newest = key;
+      }
+    }
+    if (newest != null) {
+      current = newest;
+    }
+  }
+
+  public int size() {
+    return keys.size();
+  }
+
+  /**
+   * Public keys in JWK form. HMAC keys are never published.
+   */
+  public List<Map<String, Object>> jwks() {
+    List<Map<String, Object>> jwks = new ArrayList<>();
+    for (SigningKey key : keys.values()) {
+      if (key.getVerificationKey() instanceof PublicKey) {
+        jwks.add(key.toJwk());
+      }
+    }
+    return jwks;
+  }
+
+  private static SigningKey generate(SignatureAlgorithm algorithm) {
+    try {
+      if (algorithm.isHmac()) {
+        byte[] secret = new byte[algorithm.getMinKeyLength() / Byte.SIZE];
+        new SecureRandom().nextBytes(secret);
+        return new SigningKey(kid(secret), algorithm, new SecretKeySpec(secret, algorithm.getJcaName()), null,
+            System.currentTimeMillis());
+      }
+
+      KeyPairGenerator generator;
+      if (algorithm.isRsa()) {
+        generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+      } else {
+        generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec(curve(algorithm).getJcaName()));
+      }
+      KeyPair pair = generator.generateKeyPair();
+      return new SigningKey(kid(pair.getPublic().getEncoded()), algorithm, pair.getPrivate(), pair.getPublic(),
+          System.currentTimeMillis());
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Cannot generate a " + algorithm + " key", e);
+    }
+  }
+
+  private static SigningKey load(SignatureAlgorithm algorithm, String base64PrivateKey, String base64PublicKey,
+      long createdAt) {
+    if (base64PublicKey == null || base64PublicKey.isEmpty()) {
+      throw new IllegalArgumentException("A public key is required alongside the private key");
+    }
+    try {
+      KeyFactory factory = KeyFactory.getInstance(algorithm.isRsa() ? "RSA" : "EC");
+      PrivateKey privateKey = factory.generatePrivate(new PKCS8EncodedKeySpec(Base64.getMimeDecoder().decode(base64PrivateKey)));
+      PublicKey publicKey = factory.generatePublic(new X509EncodedKeySpec(Base64.getMimeDecoder().decode(base64PublicKey)));
+      return new SigningKey(kid(publicKey.getEncoded()), algorithm, privateKey, publicKey, createdAt);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalArgumentException("Invalid " + algorithm + " key pair", e);
+    }
+  }
+
+  private static Curve curve(SignatureAlgorithm algorithm) {
+    switch (algorithm) {
+      case ES256:
+        return Curve.P256;
+      case ES384:
+        return Curve.P384;
+      case ES512:
+        return Curve.P521;
+      default:
+        throw new IllegalArgumentException("Not an elliptic curve algorithm: " + algorithm);
+    }
+  }
+
+  private static byte[] sha512(byte[] material) {
+    try {
+      return MessageDigest.getInstance("SHA-512").digest(material);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("SHA-512 is not available", e);
+    }
+  }
+
+  private static String kid(byte[] material) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(material);
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 16);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  private static String base64Url(BigInteger value, int length) {
+    byte[] bytes = value.toByteArray();
+    byte[] unsigned = new byte[length > 0 ? length : bytes.length - (bytes[0] == 0 && bytes.length > 1 ? 1 : 0)];
+    int copied = Math.min(bytes.length, unsigned.length);
+    System.arraycopy(bytes, bytes.length - copied, unsigned, unsigned.length - copied, copied);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(unsigned);
+  }
+
+  private enum Curve {
+    P256("secp256r1", "P-256", 32),
+    P384("secp384r1", "P-384", 48),
+    P521("secp521r1", "P-521", 66);
+
+    private final String jcaName;
+    private final String jwkName;
+    private final int coordinateLength;
+
+    Curve(String jcaName, String jwkName, int coordinateLength) {
+      this.jcaName = jcaName;
+      this.jwkName = jwkName;
+      this.coordinateLength = coordinateLength;
+    }
+
+    String getJcaName() {
+      return jcaName;
+    }
+  }
+
+  public static final class SigningKey {
+    private final String kid;
+    private final SignatureAlgorithm algorithm;
+    private final Key signingKey;
+    private final Key verificationKey;
+    private final long createdAt;
+    private volatile long retireAt = Long.MAX_VALUE;
+
+    SigningKey(String kid, SignatureAlgorithm algorithm, Key signingKey, PublicKey publicKey, long createdAt) {
+      this.kid = kid;
+      this.algorithm = algorithm;
+      this.signingKey = signingKey;
+      this.verificationKey = publicKey != null ? publicKey : signingKey;
+      this.createdAt = createdAt;
+    }
+
+    public String getKid() {
+      return kid;
+    }
+
+    public SignatureAlgorithm getAlgorithm() {
+      return algorithm;
+    }
+
+    public Key getSigningKey() {
+      return signingKey;
+    }
+
+    public Key getVerificationKey() {
+      return verificationKey;
+    }
+
+    public long getCreatedAt() {
+      return createdAt;
+    }
+
+    void retireAt(long retireAt) {
+      this.retireAt = retireAt;
+    }
+
+    boolean isRetired(long now) {
+      return retireAt <= now;
+    }
+
+    Map<String, Object> toJwk() {
+      Map<String, Object> jwk = new LinkedHashMap<>();
+      if (verificationKey instanceof RSAPublicKey) {
+        RSAPublicKey rsa = (RSAPublicKey) verificationKey;
+        jwk.put("kty", "RSA");
+        jwk.put("kid", kid);
+        jwk.put("use", "sig");
+        jwk.put("alg", algorithm.getValue());
+        jwk.put("n", base64Url(rsa.getModulus(), 0));
+        jwk.put("e", base64Url(rsa.getPublicExponent(), 0));
+      } else {
+        ECPublicKey ec = (ECPublicKey) verificationKey;
+        Curve curve = curve(algorithm);
+        jwk.put("kty", "EC");
+        jwk.put("kid", kid);
+        jwk.put("use", "sig");
+        jwk.put("alg", algorithm.getValue());
+        jwk.put("crv", curve.jwkName);
+        jwk.put("x", base64Url(ec.getW().getAffineX(), curve.coordinateLength));
+        jwk.put("y", base64Url(ec.getW().getAffineY(), curve.coordinateLength));
+      }
+      return jwk;
+    }
+  }
+}
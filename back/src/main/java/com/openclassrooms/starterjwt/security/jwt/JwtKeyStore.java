@@ -0,0 +1,123 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+
+/**
+ * Signing keys shared by every instance through the JWT_KEYS table, so that a token signed by
+ * one instance, before or after a rotation, verifies on all of them and across restarts.
+ * Private material is encrypted with AES-GCM under a key derived from
+ * {@code oc.app.jwtKeyEncryptionSecret}.
+ */
+@Component
+public class JwtKeyStore {
+  static final String SELECT_KEYS = "SELECT private_key, public_key, created_at, retire_at FROM JWT_KEYS "
+      + "WHERE algorithm = ? AND (retire_at IS NULL OR retire_at > ?)";
+
+  static final String INSERT_KEY = "INSERT INTO JWT_KEYS (kid, algorithm, private_key, public_key, created_at) "
+      + "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE kid = kid";
+
+  static final String RETIRE_KEY = "UPDATE JWT_KEYS SET retire_at = ? WHERE kid = ? AND retire_at IS NULL";
+
+  static final String DELETE_RETIRED = "DELETE FROM JWT_KEYS WHERE retire_at <= ?";
+
+  private static final int IV_LENGTH = 12;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final SecretKeySpec wrappingKey;
+
+  private final SecureRandom random = new SecureRandom();
+
+  public JwtKeyStore(JdbcTemplate jdbcTemplate,
+                     @Value("${oc.app.jwtKeyEncryptionSecret:${oc.app.jwtSecret}}") String encryptionSecret) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.wrappingKey = new SecretKeySpec(sha256(encryptionSecret.getBytes(StandardCharsets.UTF_8)), "AES");
+  }
+
+  /**
+   * Keys of the algorithm that still verify at {@code now}.
+   */
+  public List<JwtKeyRing.SigningKey> load(SignatureAlgorithm algorithm, long now) {
+    return jdbcTemplate.query(SELECT_KEYS, (rs, rowNum) -> {
+      String publicKey = rs.getString("public_key");
+      // Null while the key is active.
+      Long retireAt = rs.getObject("retire_at", Long.class);
+      return JwtKeyRing.decode(algorithm, open(rs.getString("private_key")),
+          publicKey != null ? Base64.getDecoder().decode(publicKey) : null,
+          rs.getLong("created_at"), retireAt);
+    }, algorithm.getValue(), now);
+  }
+
+  public void insert(JwtKeyRing.SigningKey key) {
+    jdbcTemplate.update(INSERT_KEY, key.getKid(), key.getAlgorithm().getValue(), seal(key.getSigningKey().getEncoded()),
+        key.getVerificationKey() != key.getSigningKey()
+            ? Base64.getEncoder().encodeToString(key.getVerificationKey().getEncoded()) : null,
+        key.getCreatedAt());
+  }
+
+  /**
+   * Replaces {@code previous} with {@code next}, unless another instance already rotated
+   * {@code previous}, in which case nothing is written and false is returned.
+   */
+  @Transactional
+  public boolean rotate(JwtKeyRing.SigningKey previous, JwtKeyRing.SigningKey next, long retireAt) {
+    if (jdbcTemplate.update(RETIRE_KEY, retireAt, previous.getKid()) == 0) {
+      return false;
+    }
+    insert(next);
+    return true;
+  }
+
+  public int deleteRetired(long now) {
+    return jdbcTemplate.update(DELETE_RETIRED, now);
+  }
+
+  String seal(byte[] material) {
+    try {
+      byte[] iv = new byte[IV_LENGTH];
+      random.nextBytes(iv);
+      Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+      cipher.init(Cipher.ENCRYPT_MODE, wrappingKey, new GCMParameterSpec(128, iv));
+      byte[] sealed = cipher.doFinal(material);
+      return Base64.getEncoder().encodeToString(ByteBuffer.allocate(IV_LENGTH + sealed.length).put(iv).put(sealed).array());
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Cannot encrypt a signing key", e);
+    }
+  }
+
+  byte[] open(String sealed) {
+    try {
+      byte[] bytes = Base64.getDecoder().decode(sealed);
+      Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+      cipher.init(Cipher.DECRYPT_MODE, wrappingKey, new GCMParameterSpec(128, bytes, 0, IV_LENGTH));
+      return cipher.doFinal(bytes, IV_LENGTH, bytes.length - IV_LENGTH);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Cannot decrypt a signing key, check oc.app.jwtKeyEncryptionSecret", e);
+    }
+  }
+
+  private static byte[] sha256(byte[] material) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(material);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+}
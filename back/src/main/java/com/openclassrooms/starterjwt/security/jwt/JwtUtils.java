@@ -1,48 +1,174 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import java.security.Key;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.PostConstruct;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.io.Serializer;
+import io.jsonwebtoken.jackson.io.JacksonDeserializer;
+import io.jsonwebtoken.jackson.io.JacksonSerializer;
+import io.jsonwebtoken.security.SecurityException;
 
 @Component
 public class JwtUtils {
   private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
+  static final String CLAIM_ID = "id";
+  static final String CLAIM_FIRST_NAME = "firstName";
+  static final String CLAIM_LAST_NAME = "lastName";
+  static final String CLAIM_ADMIN = "admin";
+  static final String CLAIM_TOKEN_VERSION = "ver";
+
   @Value("${oc.app.jwtSecret}")
   private String jwtSecret;
 
   @Value("${oc.app.jwtExpirationMs}")
   private int jwtExpirationMs;
 
+  @Value("${oc.app.jwtAlgorithm:HS512}")
+  private String jwtAlgorithm = "HS512";
+
+  @Value("${oc.app.jwtPrivateKey:}")
+  private String jwtPrivateKey;
+
+  @Value("${oc.app.jwtPublicKey:}")
+  private String jwtPublicKey;
+
+  @Value("${oc.app.jwtKeyRotationMs:0}")
+  private long jwtKeyRotationMs;
+
+  // An unknown kid triggers at most one reload of the shared keys per interval.
+  @Value("${oc.app.jwtKeyRefreshMs:1000}")
+  private long jwtKeyRefreshMs = 1000L;
+
+  private JwtKeyStore keyStore;
+
+  private volatile JwtKeyRing keyRing;
+
+  private volatile long keysRefreshedAt;
+
+  private final SigningKeyResolver signingKeyResolver = new SigningKeyResolverAdapter() {
+    @Override
+    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+      JwtKeyRing.SigningKey key = getKeyRing().forKid(header.getKeyId());
+      if (key == null && header.getKeyId() != null && refreshKeys()) {
+        // Signed by another instance after a rotation this one has not seen yet.
+        key = getKeyRing().forKid(header.getKeyId());
+      }
+      if (key == null) {
+        throw new io.jsonwebtoken.security.SignatureException("Unknown signing key: " + header.getKeyId());
+      }
+      if (!key.getAlgorithm().getValue().equals(header.getAlgorithm())) {
+        throw new io.jsonwebtoken.security.SignatureException("Token algorithm " + header.getAlgorithm() + " does not match its key");
+      }
+      return key.getVerificationKey();
+    }
+  };
+
+  /**
+   * Immutable and thread-safe: built once and shared by every request. The JSON codecs are
+   * passed explicitly, otherwise jjwt looks them up through the ServiceLoader on every token.
+   */
+  private final JwtParser parser = Jwts.parserBuilder()
+      .deserializeJsonWith(new JacksonDeserializer<>())
+      .setSigningKeyResolver(signingKeyResolver)
+      .build();
+
+  private final Serializer<Map<String, ?>> serializer = new JacksonSerializer<>();
+
+  @PostConstruct
+  void init() {
+    getKeyRing();
+  }
+
   public String generateJwtToken(Authentication authentication) {
 
-    UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+    return generateJwtToken((UserDetailsImpl) authentication.getPrincipal());
+  }
 
+  public String generateJwtToken(UserDetailsImpl userPrincipal) {
+    JwtKeyRing.SigningKey signingKey = getKeyRing().current();
     return Jwts.builder()
+        .serializeToJsonWith(serializer)
         .setSubject((userPrincipal.getUsername()))
+        .setId(UUID.randomUUID().toString())
+        .claim(CLAIM_ID, userPrincipal.getId())
+        .claim(CLAIM_FIRST_NAME, userPrincipal.getFirstName())
+        .claim(CLAIM_LAST_NAME, userPrincipal.getLastName())
+        .claim(CLAIM_ADMIN, Boolean.TRUE.equals(userPrincipal.getAdmin()))
+        .claim(CLAIM_TOKEN_VERSION, userPrincipal.getTokenVersion() != null ? userPrincipal.getTokenVersion() : 0)
         .setIssuedAt(new Date())
         .setExpiration(new Date((new Date()).getTime() + getJwtExpirationMs()))
-        .signWith(SignatureAlgorithm.HS512, getJwtSecret())
+        .setHeaderParam(JwsHeader.KEY_ID, signingKey.getKid())
+        .signWith(signingKey.getSigningKey(), signingKey.getAlgorithm())
         .compact();
   }
 
   public String getUserNameFromJwtToken(String token) {
-    return Jwts.parser().setSigningKey(getJwtSecret()).parseClaimsJws(token).getBody().getSubject();
+    return parser.parseClaimsJws(token).getBody().getSubject();
+  }
+
+  /**
+   * Verifies the token and rebuilds the principal from its claims alone, so the request path
+   * needs no database access. Returns null when the token is not valid.
+   */
+  public UserDetailsImpl getUserDetailsFromJwtToken(String authToken) {
+    TokenVerificationEvent event = new TokenVerificationEvent();
+    event.begin();
+    UserDetailsImpl userDetails = verify(authToken);
+    event.commit(userDetails);
+    return userDetails;
+  }
+
+  private UserDetailsImpl verify(String authToken) {
+    try {
+      Claims claims = parser.parseClaimsJws(authToken).getBody();
+      Number id = claims.get(CLAIM_ID, Number.class);
+      Number tokenVersion = claims.get(CLAIM_TOKEN_VERSION, Number.class);
+
+      return UserDetailsImpl.builder()
+          .id(id != null ? id.longValue() : null)
+          .username(claims.getSubject())
+          .firstName(claims.get(CLAIM_FIRST_NAME, String.class))
+          .lastName(claims.get(CLAIM_LAST_NAME, String.class))
+          .admin(Boolean.TRUE.equals(claims.get(CLAIM_ADMIN, Boolean.class)))
+          .tokenVersion(tokenVersion != null ? tokenVersion.intValue() : 0)
+          .tokenId(claims.getId())
+          .tokenExpiration(claims.getExpiration())
+          .build();
+    } catch (SecurityException e) {
+      logger.error("Invalid JWT signature: {}", e.getMessage());
+    } catch (MalformedJwtException e) {
+      logger.error("Invalid JWT token: {}", e.getMessage());
+    } catch (ExpiredJwtException e) {
+      logger.error("JWT token is expired: {}", e.getMessage());
+    } catch (IllegalArgumentException e) {
+      logger.error("JWT claims string is empty: {}", e.getMessage());
+    }
+
+    return null;
   }
 
   public boolean validateJwtToken(String authToken) {
     try {
-      Jwts.parser().setSigningKey(getJwtSecret()).parseClaimsJws(authToken);
+      parser.parseClaimsJws(authToken);
       return true;
-    } catch (SignatureException e) {
+    } catch (SecurityException e) {
       logger.error("Invalid JWT signature: {}", e.getMessage());
     } catch (MalformedJwtException e) {
       logger.error("Invalid JWT token: {}", e.getMessage());
@@ -63,12 +189,103 @@ public class JwtUtils {
     return false;
   }
 
+  /**
+   * Replaces the signing key once it is older than {@code oc.app.jwtKeyRotationMs}. Replaced keys
+   * keep verifying until the tokens they signed have expired. With a {@link JwtKeyStore}, only
+   * the instance that retires the current key in the table installs its replacement; the others
+   * pick it up here or on the first token carrying its kid.
+   */
+  @Scheduled(fixedDelayString = "${oc.app.jwtKeyRotationCheckMs:60000}")
+  public void rotateKeysIfDue() {
+    long now = System.currentTimeMillis();
+    boolean shared = usesKeyStore();
+    if (shared) {
+      refreshKeys(now);
+    }
+    JwtKeyRing ring = getKeyRing();
+    if (jwtKeyRotationMs > 0 && now - ring.current().getCreatedAt() >= jwtKeyRotationMs) {
+      if (!shared) {
+        JwtKeyRing.SigningKey key = ring.rotate(now, getJwtExpirationMs());
+        logger.info("JWT signing key rotated, new kid {}", key.getKid());
+      } else {
+        JwtKeyRing.SigningKey next = JwtKeyRing.generateKey(ring.getAlgorithm());
+        if (keyStore.rotate(ring.current(), next, now + getJwtExpirationMs())) {
+          ring.install(next, now, getJwtExpirationMs());
+          logger.info("JWT signing key rotated, new kid {}", next.getKid());
+        } else {
+          refreshKeys(now);
+        }
+      }
+    }
+    if (shared) {
+      keyStore.deleteRetired(now);
+    }
+  }
+
+  public JwtKeyRing getKeyRing() {
+    JwtKeyRing ring = keyRing;
+    if (ring == null) {
+      synchronized (this) {
+        ring = keyRing;
+        if (ring == null) {
+          SignatureAlgorithm algorithm = SignatureAlgorithm.forName(getJwtAlgorithm());
+          ring = algorithm.isHmac()
+              ? JwtKeyRing.hmac(algorithm, getJwtSecret())
+              : JwtKeyRing.asymmetric(algorithm, jwtPrivateKey, jwtPublicKey);
+          if (usesKeyStore()) {
+            ring = shared(ring);
+          }
+          keyRing = ring;
+        }
+      }
+    }
+    return ring;
+  }
+
+  /**
+   * Keys generated or rotated here must be known to every instance, otherwise tokens signed by
+   * one fail on the others and after a restart. They then go through the key store; only a
+   * configured secret or key pair that never rotates is left to the configuration alone.
+   */
+  boolean usesKeyStore() {
+    return keyStore != null && (jwtKeyRotationMs > 0
+        || (!SignatureAlgorithm.forName(getJwtAlgorithm()).isHmac() && (jwtPrivateKey == null || jwtPrivateKey.isEmpty())));
+  }
+
+  private JwtKeyRing shared(JwtKeyRing seed) {
+    long now = System.currentTimeMillis();
+    List<JwtKeyRing.SigningKey> stored = keyStore.load(seed.getAlgorithm(), now);
+    if (stored.isEmpty()) {
+      // First instance: the seed key is kept unless another instance stored its own first.
+      keyStore.insert(seed.current());
+      stored = keyStore.load(seed.getAlgorithm(), now);
+    }
+    keysRefreshedAt = now;
+    return JwtKeyRing.restore(seed.getAlgorithm(), stored, seed.forKid(null));
+  }
+
+  private boolean refreshKeys() {
+    long now = System.currentTimeMillis();
+    if (!usesKeyStore() || now - keysRefreshedAt < jwtKeyRefreshMs) {
+      return false;
+    }
+    refreshKeys(now);
+    return true;
+  }
+
+  private void refreshKeys(long now) {
+    JwtKeyRing ring = getKeyRing();
+    keysRefreshedAt = now;
+    ring.sync(keyStore.load(ring.getAlgorithm(), now), now);
+  }
+
 public String getJwtSecret() {
 	return jwtSecret;
 }
 
 public void setJwtSecret(String jwtSecret) {
 	this.jwtSecret = jwtSecret;
+	this.keyRing = null;
 }
 
 public int getJwtExpirationMs() {
@@ -78,4 +295,35 @@ public int getJwtExpirationMs() {
 public void setJwtExpirationMs(int jwtExpirationMs) {
 	this.jwtExpirationMs = jwtExpirationMs;
 }
+
+public String getJwtAlgorithm() {
+	return jwtAlgorithm;
+}
+
+public void setJwtAlgorithm(String jwtAlgorithm) {
+	this.jwtAlgorithm = jwtAlgorithm;
+	this.keyRing = null;
+}
+
+public long getJwtKeyRotationMs() {
+	return jwtKeyRotationMs;
+}
+
+public void setJwtKeyRotationMs(long jwtKeyRotationMs) {
+	this.jwtKeyRotationMs = jwtKeyRotationMs;
+}
+
+public long getJwtKeyRefreshMs() {
+	return jwtKeyRefreshMs;
+}
+
+public void setJwtKeyRefreshMs(long jwtKeyRefreshMs) {
+	this.jwtKeyRefreshMs = jwtKeyRefreshMs;
+}
+
+@Autowired(required = false)
+public void setKeyStore(JwtKeyStore keyStore) {
+	this.keyStore = keyStore;
+	this.keyRing = null;
+}
 }
@@ -0,0 +1,166 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Revoked token ids, grouped in buckets by expiry time. A bucket is dropped as a whole once
+ * every token it holds has expired. Each bucket is fronted by a Bloom filter so that the
+ * usual "not revoked" answer costs a few bit reads and no allocation.
+ *
+ * <p>Revocations live in this JVM only: another instance, or this one after a restart, keeps
+ * accepting a logged-out token until it expires. Revoking every token of a user through
+ * {@code POST /api/user/{id}/revoke-tokens} is stored in the database and reaches all
+ * instances; this store only makes a single logout take effect at once where it was made.
+ */
+@Component
+public class TokenRevocationStore {
+  private static final int HASHES = 4;
+
+  private final AtomicReferenceArray<Bucket> buckets;
+
+  // Tokens expiring after the bucket window, issued before jwtExpirationMs was lowered.
+  private final Map<String, Long> beyondWindow = new ConcurrentHashMap<>();
+
+  private final long bucketMs;
+
+  private final int bloomMask;
+
+  private final Clock clock;
+
+  @Autowired
+  public TokenRevocationStore(@Value("${oc.app.jwtExpirationMs}") long maxLifetimeMs,
+                              @Value("${oc.app.jwtRevocation.bucketMs:3600000}") long bucketMs,
+                              @Value("${oc.app.jwtRevocation.bloomBits:65536}") int bloomBits) {
+    this(maxLifetimeMs, bucketMs, bloomBits, Clock.systemUTC());
+  }
+
+  public TokenRevocationStore(long maxLifetimeMs, long bucketMs, int bloomBits, Clock clock) {
+    if (bucketMs <= 0 || bloomBits < Long.SIZE || Integer.bitCount(bloomBits) != 1) {
+      throw new IllegalArgumentException("bucketMs must be positive and bloomBits a power of two >= 64");
+    }
+    this.buckets = new AtomicReferenceArray<>((int) (Math.max(maxLifetimeMs, 0) / bucketMs) + 2);
+    this.bucketMs = bucketMs;
+    this.bloomMask = bloomBits - 1;
+    this.clock = clock;
+  }
+
+  public void revoke(String tokenId, long expiresAtMs) {
+    long now = clock.millis();
+    if (tokenId == null || expiresAtMs <= now) {
+      return;
+    }
+
+    long index = expiresAtMs / bucketMs;
+    if (index - now / bucketMs >= buckets.length()) {
+      beyondWindow.put(tokenId, expiresAtMs);
+      return;
+    }
+
+    Bucket bucket = bucketFor(index);
+    bucket.ids.add(tokenId);
+    int hash = tokenId.hashCode();
+    int step = mix(hash);
+    for (int i = 0; i < HASHES; i++) {
+      int bit = (hash + i * step) & bloomMask;
+      long mask = 1L << bit;
+      bucket.bloom.getAndAccumulate(bit >>> 6, mask, (current, added) -> current | added);
+    }
+  }
+
+  public boolean isRevoked(String tokenId, long expiresAtMs) {
+    if (tokenId == null) {
+      return false;
+    }
+
+    long index = expiresAtMs / bucketMs;
+    Bucket bucket = buckets.get(slot(index));
+    if (bucket == null || bucket.index != index) {
+      return !beyondWindow.isEmpty() && beyondWindow.containsKey(tokenId);
+    }
+
+    int hash = tokenId.hashCode();
+    int step = mix(hash);
+    for (int i = 0; i < HASHES; i++) {
+      int bit = (hash + i * step) & bloomMask;
+      if ((bucket.bloom.get(bit >>> 6) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return bucket.ids.contains(tokenId);
+  }
+
+  /**
+   * Drops every bucket whose tokens have all expired.
+   */
+  @Scheduled(fixedDelayString = "${oc.app.jwtRevocation.bucketMs:3600000}")
+  public void purgeExpired() {
+    long currentIndex = clock.millis() / bucketMs;
+    for (int slot = 0; slot < buckets.length(); slot++) {
+      Bucket bucket = buckets.get(slot);
+      if (bucket != null && bucket.index < currentIndex) {
+        buckets.compareAndSet(slot, bucket, null);
+      }
+    }
+    long now = clock.millis();
+    beyondWindow.values().removeIf(expiresAt -> expiresAt <= now);
+  }
+
+  int bucketCount() {
+    int count = 0;
+    for (int slot = 0; slot < buckets.length(); slot++) {
+      if (buckets.get(slot) != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private Bucket bucketFor(long index) {
+    int slot = slot(index);
+    while (true) {
+      Bucket current = buckets.get(slot);
+      if (current != null && current.index == index) {
+        return current;
+      }
+      // Whatever sits in the slot belongs to an older window and has expired.
+      Bucket fresh = new Bucket(index, bloomMask + 1);
+      if (buckets.compareAndSet(slot, current, fresh)) {
+        return fresh;
+      }
+    }
+  }
+
+  private int slot(long index) {
+    return (int) Math.floorMod(index, (long) buckets.length());
+  }
+
+  private static int mix(int hash) {
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return hash | 1;
+  }
+
+  private static final class Bucket {
+    final long index;
+    final AtomicLongArray bloom;
+    final Set<String> ids = ConcurrentHashMap.newKeySet();
+
+    Bucket(long index, int bits) {
+      this.index = index;
+      this.bloom = new AtomicLongArray(bits >>> 6);
+    }
+  }
+}
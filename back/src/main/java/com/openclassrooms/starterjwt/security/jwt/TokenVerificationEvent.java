@@ -0,0 +1,35 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+/**
+ * Flight Recorder event for one signature check and claims parse in {@link JwtUtils}.
+ */
+@Name("savasana.TokenVerification")
+@Label("Token Verification")
+@Category({"Savasana", "Security"})
+@Description("JWT signature verification and principal rebuilt from the claims")
+@StackTrace(false)
+class TokenVerificationEvent extends Event {
+  @Label("User Id")
+  long userId;
+
+  @Label("Valid")
+  boolean valid;
+
+  void commit(UserDetailsImpl userDetails) {
+    end();
+    if (shouldCommit()) {
+      this.valid = userDetails != null;
+      this.userId = userDetails != null && userDetails.getId() != null ? userDetails.getId() : 0L;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+/**
+ * Applies the first matching {@link RateLimitProperties.Rule} to each request. Clients are
+ * keyed by user id once AuthTokenFilter has authenticated them, by remote address otherwise.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+  static final String LIMIT_HEADER = "RateLimit-Limit";
+  static final String REMAINING_HEADER = "RateLimit-Remaining";
+  static final String RESET_HEADER = "RateLimit-Reset";
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+  private final RateLimitProperties properties;
+
+  private final RateLimiter rateLimiter;
+
+  public RateLimitFilter(RateLimitProperties properties) {
+    this(properties, new RateLimiter(Clock.systemUTC()));
+  }
+
+  RateLimitFilter(RateLimitProperties properties, RateLimiter rateLimiter) {
+    this.properties = properties;
+    this.rateLimiter = rateLimiter;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    int ruleIndex = properties.isEnabled() ? matchingRule(request) : -1;
+    if (ruleIndex < 0) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+
+    RateLimitProperties.Rule rule = properties.getRules().get(ruleIndex);
+    RateLimiter.Decision decision = rateLimiter.acquire(ruleIndex + "|" + clientKey(request), rule.getLimit(),
+        rule.getPeriodMs());
+
+    response.setHeader(LIMIT_HEADER, String.valueOf(decision.getLimit()));
+    response.setHeader(REMAINING_HEADER, String.valueOf(decision.getRemaining()));
+    response.setHeader(RESET_HEADER, String.valueOf(seconds(decision.getResetMs())));
+    if (!decision.isAllowed()) {
+      response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(seconds(decision.getRetryAfterMs())));
+      response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+      response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+
+      final Map<String, Object> body = new HashMap<>();
+      body.put("status", HttpStatus.TOO_MANY_REQUESTS.value());
+      body.put("error", HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase());
+      body.put("message", "Rate limit exceeded");
+      body.put("path", request.getServletPath());
+      MAPPER.writeValue(response.getOutputStream(), body);
+      return;
+    }
+
+    filterChain.doFilter(request, response);
+  }
+
+  private int matchingRule(HttpServletRequest request) {
+    String path = request.getServletPath() + (request.getPathInfo() != null ? request.getPathInfo() : "");
+    List<RateLimitProperties.Rule> rules = properties.getRules();
+    for (int i = 0; i < rules.size(); i++) {
+      RateLimitProperties.Rule rule = rules.get(i);
+      if ((!StringUtils.hasText(rule.getMethod()) || rule.getMethod().equalsIgnoreCase(request.getMethod()))
+          && pathMatcher.match(rule.getPattern(), path)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static String clientKey(HttpServletRequest request) {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication != null && authentication.getPrincipal() instanceof UserDetailsImpl) {
+      return "user:" + ((UserDetailsImpl) authentication.getPrincipal()).getId();
+    }
+    return "ip:" + request.getRemoteAddr();
+  }
+
+  private static long seconds(long millis) {
+    return (millis + 999) / 1000;
+  }
+}
@@ -0,0 +1,40 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-route request quotas. Rules are tried in order and the first one whose method and Ant
+ * pattern match the request applies.
+ */
+@Component
+@ConfigurationProperties(prefix = "oc.app.rate-limit")
+@Validated
+@Data
+public class RateLimitProperties {
+    private boolean enabled = true;
+
+    @Valid
+    private List<Rule> rules = new ArrayList<>();
+
+    @Data
+    public static class Rule {
+        private String pattern;
+
+        /** HTTP method the rule is limited to, or any method when empty. */
+        private String method;
+
+        @Min(1)
+        private int limit;
+
+        @Min(1)
+        private long periodMs = 60000;
+    }
+}
@@ -0,0 +1,101 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.time.Clock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets implemented with the generic cell rate algorithm: each bucket is a single
+ * AtomicLong holding the theoretical arrival time of the next request, updated by CAS. A bucket
+ * whose arrival time has passed is full again and is dropped from the map on the next sweep.
+ */
+public class RateLimiter {
+  private static final int SWEEP_EVERY = 4096;
+
+  private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  private final Clock clock;
+
+  public RateLimiter(Clock clock) {
+    this.clock = clock;
+  }
+
+  public Decision acquire(String key, int limit, long periodMs) {
+    if (limit <= 0 || periodMs <= 0) {
+      throw new IllegalArgumentException("Rate limit and period must be positive, got " + limit + " per " + periodMs + " ms");
+    }
+    long now = clock.millis() * 1000;
+    // At least one microsecond, for limits above one request per microsecond of the period.
+    long interval = Math.max(1, periodMs * 1000 / limit);
+    long tolerance = interval * limit;
+
+    if ((calls.incrementAndGet() & (SWEEP_EVERY - 1)) == 0) {
+      sweep(now);
+    }
+
+    AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    while (true) {
+      long tat = bucket.get();
+      long next = Math.max(tat, now) + interval;
+      if (next - now > tolerance) {
+        return new Decision(false, limit, 0, toMillis(Math.max(tat, now) - now), toMillis(next - tolerance - now));
+      }
+      if (bucket.compareAndSet(tat, next)) {
+        return new Decision(true, limit, (int) ((tolerance - (next - now)) / interval), toMillis(next - now), 0);
+      }
+    }
+  }
+
+  int size() {
+    return buckets.size();
+  }
+
+  void sweep(long nowMicros) {
+    buckets.values().removeIf(bucket -> bucket.get() <= nowMicros);
+  }
+
+  private static long toMillis(long micros) {
+    return (micros + 999) / 1000;
+  }
+
+  public static final class Decision {
+    private final boolean allowed;
+    private final int limit;
+    private final int remaining;
+    private final long resetMs;
+    private final long retryAfterMs;
+
+    Decision(boolean allowed, int limit, int remaining, long resetMs, long retryAfterMs) {
+      this.allowed = allowed;
+      this.limit = limit;
+      this.remaining = remaining;
+      this.resetMs = resetMs;
+      this.retryAfterMs = retryAfterMs;
+    }
+
+    public boolean isAllowed() {
+      return allowed;
+    }
+
+    public int getLimit() {
+      return limit;
+    }
+
+    public int getRemaining() {
+      return remaining;
+    }
+
+    /** Time until the bucket is full again. */
+    public long getResetMs() {
+      return resetMs;
+    }
+
+    public long getRetryAfterMs() {
+      return retryAfterMs;
+    }
+  }
+}
@@ -0,0 +1,195 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Throttles login attempts per email and per client address before any password is checked.
+ * Counters live in lock-striped maps of bounded size, and each key uses a sliding window
+ * estimated from two fixed windows. A full stripe only drops counters whose windows have
+ * passed; while all of them are active, new keys share one overflow counter per stripe.
+ * Flooding the limiter with new keys therefore never resets the counter of an account under
+ * attack; the price is that any key first seen in a flooded stripe, legitimate or not, is
+ * throttled with the flood until tracked counters expire.
+ */
+@Component
+public class LoginAttemptLimiter {
+  private static final int STRIPES = 64;
+
+  // Least recently used counters examined when a full stripe needs room.
+  private static final int EVICTION_SCAN = 8;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  private final int maxAttemptsPerEmail;
+
+  private final int maxAttemptsPerAddress;
+
+  private final long windowMs;
+
+  private final Clock clock;
+
+  @Autowired
+  public LoginAttemptLimiter(@Value("${oc.app.login.maxAttemptsPerEmail:5}") int maxAttemptsPerEmail,
+                             @Value("${oc.app.login.maxAttemptsPerAddress:20}") int maxAttemptsPerAddress,
+                             @Value("${oc.app.login.windowMs:60000}") long windowMs,
+                             @Value("${oc.app.login.maxKeys:100000}") int maxKeys) {
+    this(maxAttemptsPerEmail, maxAttemptsPerAddress, windowMs, maxKeys, Clock.systemUTC());
+  }
+
+  public LoginAttemptLimiter(int maxAttemptsPerEmail, int maxAttemptsPerAddress, long windowMs, int maxKeys,
+                             Clock clock) {
+    this.maxAttemptsPerEmail = maxAttemptsPerEmail;
+    this.maxAttemptsPerAddress = maxAttemptsPerAddress;
+    this.windowMs = windowMs;
+    this.clock = clock;
+    int keysPerStripe = Math.max(1, maxKeys / STRIPES);
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe(keysPerStripe);
+    }
+  }
+
+  /**
+   * Records an attempt. Returns 0 when it may proceed, otherwise the number of milliseconds to
+   * wait; rejected attempts are not counted. Both counters are checked and incremented under
+   * their stripe locks, taken in index order, so concurrent attempts cannot all pass the check
+   * before any of them is recorded.
+   */
+  public long acquire(String email, String address) {
+    String emailKey = emailKey(email);
+    String addressKey = "ip:" + address;
+    int emailStripe = stripeIndex(emailKey);
+    int addressStripe = stripeIndex(addressKey);
+
+    synchronized (stripes[Math.min(emailStripe, addressStripe)]) {
+      synchronized (stripes[Math.max(emailStripe, addressStripe)]) {
+        long now = clock.millis();
+        Window emailWindow = window(stripes[emailStripe], emailKey, now);
+        Window addressWindow = window(stripes[addressStripe], addressKey, now);
+
+        long retryAfter = Math.max(retryAfter(emailWindow, maxAttemptsPerEmail, now),
+            retryAfter(addressWindow, maxAttemptsPerAddress, now));
+        if (retryAfter > 0) {
+          return retryAfter;
+        }
+
+        emailWindow.current++;
+        addressWindow.current++;
+        return 0;
+      }
+    }
+  }
+
+  /**
+   * Clears the email counter once the user has proven their password.
+   */
+  public void onSuccess(String email) {
+    String key = emailKey(email);
+    Stripe stripe = stripe(key);
+    synchronized (stripe) {
+      stripe.windows.remove(key);
+    }
+  }
+
+  int trackedKeys() {
+    int count = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        count += stripe.windows.size();
+      }
+    }
+    return count;
+  }
+
+  private Window window(Stripe stripe, String key, long now) {
+    Window window = stripe.windows.get(key);
+    if (window == null) {
+      if (stripe.windows.size() >= stripe.maxKeys && !evictExpired(stripe, now)) {
+        window = stripe.overflow;
+      } else {
+        window = new Window(now - now % windowMs);
+        stripe.windows.put(key, window);
+      }
+    }
+    window.roll(now, windowMs);
+    return window;
+  }
+
+  private boolean evictExpired(Stripe stripe, long now) {
+    Iterator<Window> eldest = stripe.windows.values().iterator();
+    for (int i = 0; i < EVICTION_SCAN && eldest.hasNext(); i++) {
+      Window window = eldest.next();
+      window.roll(now, windowMs);
+      if (window.current == 0 && window.previous == 0) {
+        eldest.remove();
+      }
+    }
+    return stripe.windows.size() < stripe.maxKeys;
+  }
+
+  private long retryAfter(Window window, int limit, long now) {
+    if (window.estimate(now, windowMs) < limit) {
+      return 0;
+    }
+    return Math.max(1, window.start + windowMs - now);
+  }
+
+  private Stripe stripe(String key) {
+    return stripes[stripeIndex(key)];
+  }
+
+  private static int stripeIndex(String key) {
+    int hash = key.hashCode();
+    return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+  }
+
+  private static String emailKey(String email) {
+    return "email:" + (email != null ? email.trim().toLowerCase(Locale.ROOT) : "");
+  }
+
+  private static final class Stripe {
+    // Access order: the eldest entries are the least recently used.
+    final Map<String, Window> windows = new LinkedHashMap<>(16, 0.75f, true);
+    final Window overflow = new Window(0);
+    final int maxKeys;
+
+    Stripe(int maxKeys) {
+      this.maxKeys = maxKeys;
+    }
+  }
+
+  private static final class Window {
+    long start;
+    int current;
+    int previous;
+
+    Window(long start) {
+      this.start = start;
+    }
+
+    void roll(long now, long windowMs) {
+      long elapsedWindows = (now - start) / windowMs;
+      if (elapsedWindows == 1) {
+        previous = current;
+      } else if (elapsedWindows > 1) {
+        previous = 0;
+      }
+      if (elapsedWindows >= 1) {
+        current = 0;
+        start += elapsedWindows * windowMs;
+      }
+    }
+
+    double estimate(long now, long windowMs) {
+      double previousWeight = 1.0 - (double) (now - start) / windowMs;
+      return previous * previousWeight + current;
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+/**
+ * Token version of each user, as stored in USERS.token_version. Tokens carry the user's version
+ * when issued, so moving the stored version forward revokes every older token. Versions are
+ * cached for {@code oc.app.tokenVersion.cacheTtlMs} and read again from the database once
+ * stale, which bounds how long another instance keeps accepting a revoked token.
+ *
+ * <p>An active user therefore costs one primary-key lookup per TTL on the request path, and
+ * none in between. That read is what makes a revocation on one instance reach the others
+ * without a broadcast channel; a longer TTL trades revocation delay for fewer reads. The cache
+ * is a lock-striped LRU capped at {@code oc.app.tokenVersion.maxEntries}, so users who stop
+ * sending requests fall out of it and memory does not grow with the member table.
+ */
+@Component
+public class TokenVersionRegistry {
+  private static final Logger logger = LoggerFactory.getLogger(TokenVersionRegistry.class);
+
+  // The user no longer exists: no token of theirs is current.
+  private static final int REVOKED = Integer.MAX_VALUE;
+
+  private static final int STRIPES = 64;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  private final UserRepository userRepository;
+
+  private final long ttlMs;
+
+  private final Clock clock;
+
+  @Autowired
+  public TokenVersionRegistry(UserRepository userRepository,
+                              @Value("${oc.app.tokenVersion.cacheTtlMs:5000}") long ttlMs,
+                              @Value("${oc.app.tokenVersion.maxEntries:100000}") int maxEntries) {
+    this(userRepository, ttlMs, maxEntries, Clock.systemUTC());
+  }
+
+  public TokenVersionRegistry(UserRepository userRepository, long ttlMs, int maxEntries, Clock clock) {
+    this.userRepository = userRepository;
+    this.ttlMs = ttlMs;
+    this.clock = clock;
+    int entriesPerStripe = Math.max(1, maxEntries / STRIPES);
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe(entriesPerStripe);
+    }
+  }
+
+  /**
+   * Records a version just read from or written to the database.
+   */
+  public void record(Long userId, int currentVersion) {
+    if (userId != null) {
+      long now = clock.millis();
+      Stripe stripe = stripe(userId);
+      synchronized (stripe) {
+        stripe.entries.merge(userId, new Entry(currentVersion, now),
+            (previous, next) -> new Entry(Math.max(previous.version, next.version), now));
+      }
+    }
+  }
+
+  public void revokeAll(Long userId) {
+    if (userId != null) {
+      put(userId, new Entry(REVOKED, clock.millis()));
+    }
+  }
+
+  /**
+   * Whether a token issued at {@code tokenVersion} is still valid. Tokens of users that no
+   * longer exist are rejected. When the database cannot be read, a stale cached version is
+   * used rather than failing every request.
+   */
+  public boolean isCurrent(Long userId, Integer tokenVersion) {
+    if (userId == null || tokenVersion == null) {
+      return false;
+    }
+
+    long now = clock.millis();
+    Entry entry = get(userId);
+    if (entry == null || now - entry.loadedAt >= ttlMs) {
+      try {
+        // Read outside the stripe lock, so a slow query does not hold up other users.
+        entry = new Entry(userRepository.findTokenVersion(userId).orElse(REVOKED), now);
+        put(userId, entry);
+      } catch (DataAccessException e) {
+        if (entry == null) {
+          throw e;
+        }
+        logger.warn("Token version of user {} could not be read, using the cached one: {}", userId, e.getMessage());
+      }
+    }
+    return entry.version != REVOKED && tokenVersion >= entry.version;
+  }
+
+  int cachedUsers() {
+    int count = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        count += stripe.entries.size();
+      }
+    }
+    return count;
+  }
+
+  private Entry get(Long userId) {
+    Stripe stripe = stripe(userId);
+    synchronized (stripe) {
+      return stripe.entries.get(userId);
+    }
+  }
+
+  private void put(Long userId, Entry entry) {
+    Stripe stripe = stripe(userId);
+    synchronized (stripe) {
+      stripe.entries.put(userId, entry);
+    }
+  }
+
+  private Stripe stripe(Long userId) {
+    int hash = userId.hashCode();
+    return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+  }
+
+  private static final class Stripe {
+    final Map<Long, Entry> entries;
+
+    Stripe(int maxEntries) {
+      this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+          return size() > maxEntries;
+        }
+      };
+    }
+  }
+
+  private static final class Entry {
+    final int version;
+    final long loadedAt;
+
+    Entry(int version, long loadedAt) {
+      this.version = version;
+      this.loadedAt = loadedAt;
+    }
+  }
+}
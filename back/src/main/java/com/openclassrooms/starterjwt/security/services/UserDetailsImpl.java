@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.security.services;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Objects;
 
@@ -31,6 +32,18 @@ public class UserDetailsImpl implements UserDetails {
 
   @JsonIgnore
   private String password;  
+
+  private Integer tokenVersion;
+
+  @JsonIgnore
+  private String tokenId;
+
+  @JsonIgnore
+  private Date tokenExpiration;
+
+  public UserDetailsImpl(Long id, String username, String firstName, String lastName, Boolean admin, String password) {
+    this(id, username, firstName, lastName, admin, password, 0, null, null);
+  }
   
   public Collection<? extends GrantedAuthority> getAuthorities() {        
       return new HashSet<GrantedAuthority>();
@@ -20,16 +20,27 @@ public class UserDetailsServiceImpl implements UserDetailsService {
   @Override
   @Transactional
   public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-    User user = userRepository.findByEmail(username)
-        .orElseThrow(() -> new UsernameNotFoundException("User Not Found with email: " + username));
+    UserLookupEvent event = new UserLookupEvent();
+    event.begin();
+    User user = userRepository.findByEmail(username).orElse(null);
+    event.commit(user);
+    if (user == null) {
+      throw new UsernameNotFoundException("User Not Found with email: " + username);
+    }
 
+    return build(user);
+  }
+
+  public static UserDetailsImpl build(User user) {
     return UserDetailsImpl
             .builder()
             .id(user.getId())
             .username(user.getEmail())
             .lastName(user.getLastName())
             .firstName(user.getFirstName())
+            .admin(user.isAdmin())
             .password(user.getPassword())
+            .tokenVersion(user.getTokenVersion())
             .build();
   }
 
@@ -0,0 +1,36 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import com.openclassrooms.starterjwt.models.User;
+
+/**
+ * Flight Recorder event for a user loaded by {@link UserDetailsServiceImpl} at login. The email
+ * is left out so that recordings can be shared.
+ */
+@Name("savasana.UserLookup")
+@Label("User Lookup")
+@Category({"Savasana", "Security"})
+@Description("User loaded by email for password authentication")
+@StackTrace(false)
+class UserLookupEvent extends Event {
+  @Label("User Id")
+  long userId;
+
+  @Label("Found")
+  boolean found;
+
+  void commit(User user) {
+    end();
+    if (shouldCommit()) {
+      this.found = user != null;
+      this.userId = user != null && user.getId() != null ? user.getId() : 0L;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.RefreshToken;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Opaque refresh tokens. Only a SHA-256 hash of each token is stored, so renewing an access
+ * token costs one indexed lookup instead of a BCrypt verification. Every refresh consumes the
+ * presented token and hands out a new one.
+ */
+@Service
+@Log4j2
+public class RefreshTokenService {
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+
+    private final UserRepository userRepository;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    @Value("${oc.app.jwtRefreshExpirationMs:1209600000}")
+    private long refreshExpirationMs = 1209600000L;
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+    }
+
+    @Transactional
+    public String issue(Long userId, int tokenVersion) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        this.secureRandom.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        this.refreshTokenRepository.save(new RefreshToken()
+                .setTokenHash(hash(token))
+                .setUser(this.userRepository.getById(userId))
+                .setTokenVersion(tokenVersion)
+                .setExpiresAt(new Date(System.currentTimeMillis() + this.refreshExpirationMs)));
+        return token;
+    }
+
+    /**
+     * Consumes the presented token and issues its successor. Returns null when the token is
+     * unknown, already used, expired or issued before the user's tokens were revoked.
+     */
+    @Transactional
+    public Rotation rotate(String token) {
+        String tokenHash = hash(token);
+        RefreshToken current = this.refreshTokenRepository.findByTokenHash(tokenHash).orElse(null);
+        if (current == null) {
+            return null;
+        }
+
+        // Only the request that actually deletes the row may rotate it.
+        if (this.refreshTokenRepository.deleteByTokenHash(tokenHash) == 0) {
+            return null;
+        }
+
+        User user = current.getUser();
+        if (current.getExpiresAt().before(new Date()) || current.getTokenVersion() != user.getTokenVersion()) {
+            return null;
+        }
+
+        return new Rotation(user, issue(user.getId(), user.getTokenVersion()));
+    }
+
+    @Transactional
+    public void revoke(String token) {
+        this.refreshTokenRepository.deleteByTokenHash(hash(token));
+    }
+
+    @Scheduled(cron = "${oc.app.refreshTokenPurgeCron:0 30 3 * * *}")
+    @Transactional
+    public void purgeExpired() {
+        int deleted = this.refreshTokenRepository.deleteExpired(new Date());
+        log.info("{} expired refresh tokens deleted", deleted);
+    }
+
+    static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public long getRefreshExpirationMs() {
+        return refreshExpirationMs;
+    }
+
+    public void setRefreshExpirationMs(long refreshExpirationMs) {
+        this.refreshExpirationMs = refreshExpirationMs;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Rotation {
+        private final User user;
+        private final String refreshToken;
+    }
+}
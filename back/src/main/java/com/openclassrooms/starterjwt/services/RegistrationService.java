@@ -0,0 +1,193 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.BulkSignupResponse;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates accounts. Passwords are hashed on a dedicated bounded pool so that BCrypt never runs
+ * on a request thread, and duplicates are detected by the unique index on USERS.email rather
+ * than by a lookup before the insert; the email is only looked up once an insert has failed.
+ */
+@Service
+@Log4j2
+public class RegistrationService {
+    /**
+     * A row whose email was registered concurrently is left as it is; any other error still
+     * fails the batch, which INSERT IGNORE would have turned into a warning.
+     */
+    static final String INSERT_USER = "INSERT INTO USERS (email, first_name, last_name, password, admin) "
+            + "VALUES (?, ?, ?, ?, false) ON DUPLICATE KEY UPDATE id = id";
+
+    static final String SELECT_EXISTING_EMAILS = "SELECT email FROM USERS WHERE email IN (:emails)";
+
+    static final String SELECT_PASSWORDS = "SELECT email, password FROM USERS WHERE email IN (:emails)";
+
+    private final UserRepository userRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final ExecutorService hashingExecutor;
+
+    @Value("${oc.app.registration.importBatchSize:500}")
+    private int importBatchSize = 500;
+
+    @Autowired
+    public RegistrationService(UserRepository userRepository,
+                               JdbcTemplate jdbcTemplate,
+                               NamedParameterJdbcTemplate namedJdbcTemplate,
+                               PasswordEncoder passwordEncoder,
+                               @Value("${oc.app.registration.hashThreads:0}") int hashThreads,
+                               @Value("${oc.app.registration.hashQueueCapacity:1000}") int hashQueueCapacity) {
+        this(userRepository, jdbcTemplate, namedJdbcTemplate, passwordEncoder,
+                hashingExecutor(hashThreads, hashQueueCapacity));
+    }
+
+    RegistrationService(UserRepository userRepository,
+                        JdbcTemplate jdbcTemplate,
+                        NamedParameterJdbcTemplate namedJdbcTemplate,
+                        PasswordEncoder passwordEncoder,
+                        ExecutorService hashingExecutor) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.hashingExecutor = hashingExecutor;
+    }
+
+    /**
+     * Hashes the password off the calling thread, then inserts the user. The future fails with
+     * a DuplicateKeyException when the email is already taken, with the original
+     * DataIntegrityViolationException for any other constraint, and with a
+     * RejectedExecutionException when the hashing pool is saturated.
+     */
+    public CompletableFuture<User> register(User user, String rawPassword) {
+        return CompletableFuture
+                .supplyAsync(() -> this.passwordEncoder.encode(rawPassword), this.hashingExecutor)
+                .thenApply(hash -> {
+                    try {
+                        return this.userRepository.saveAndFlush(user.setPassword(hash));
+                    } catch (DataIntegrityViolationException e) {
+                        if (Boolean.TRUE.equals(this.userRepository.existsByEmail(user.getEmail()))) {
+                            throw new DuplicateKeyException("Email is already taken: " + user.getEmail(), e);
+                        }
+                        throw e;
+                    }
+                });
+    }
+
+    /**
+     * Imports users in batches. Emails already registered, or repeated in the list, are skipped
+     * before any hashing; the rest are hashed in parallel and written with one JDBC batch per
+     * chunk. The users' password field holds the raw password on input.
+     */
+    public BulkSignupResponse importAll(List<User> users) {
+        Set<String> seen = new HashSet<>();
+        List<String> skipped = new ArrayList<>();
+        int created = 0;
+
+        for (int from = 0; from < users.size(); from += this.importBatchSize) {
+            List<User> chunk = users.subList(from, Math.min(from + this.importBatchSize, users.size()));
+            List<String> emails = new ArrayList<>(chunk.size());
+            chunk.forEach(user -> emails.add(user.getEmail()));
+            Set<String> existing = new HashSet<>(this.namedJdbcTemplate.queryForList(SELECT_EXISTING_EMAILS,
+                    new MapSqlParameterSource("emails", emails), String.class));
+
+            List<User> toInsert = new ArrayList<>(chunk.size());
+            for (User user : chunk) {
+                if (existing.contains(user.getEmail()) || !seen.add(user.getEmail())) {
+                    skipped.add(user.getEmail());
+                } else {
+                    toInsert.add(user);
+                }
+            }
+
+            List<CompletableFuture<Object[]>> rows = new ArrayList<>(toInsert.size());
+            for (User user : toInsert) {
+                rows.add(CompletableFuture.supplyAsync(() -> new Object[] {user.getEmail(), user.getFirstName(),
+                        user.getLastName(), this.passwordEncoder.encode(user.getPassword())}, this.hashingExecutor));
+            }
+            List<Object[]> batch = new ArrayList<>(rows.size());
+            rows.forEach(row -> batch.add(row.join()));
+
+            if (!batch.isEmpty()) {
+                this.jdbcTemplate.batchUpdate(INSERT_USER, batch);
+                created += countInserted(toInsert, batch, skipped);
+            }
+            log.info("User import progress: {}/{} processed, {} created", from + chunk.size(), users.size(), created);
+        }
+
+        return new BulkSignupResponse(users.size(), created, skipped);
+    }
+
+    /**
+     * Rows of the batch that this import wrote. Update counts cannot tell: with
+     * rewriteBatchedStatements the driver reports SUCCESS_NO_INFO for every row. Each row was
+     * given a freshly salted hash, so a stored hash equal to ours means the row is ours; any
+     * other user was registered concurrently and is reported as skipped.
+     */
+    private int countInserted(List<User> toInsert, List<Object[]> batch, List<String> skipped) {
+        List<String> emails = new ArrayList<>(toInsert.size());
+        toInsert.forEach(user -> emails.add(user.getEmail()));
+        Map<String, Object> stored = new HashMap<>();
+        for (Map<String, Object> row : this.namedJdbcTemplate.queryForList(SELECT_PASSWORDS,
+                new MapSqlParameterSource("emails", emails))) {
+            stored.put((String) row.get("email"), row.get("password"));
+        }
+
+        int inserted = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i)[3].equals(stored.get(emails.get(i)))) {
+                inserted++;
+            } else {
+                skipped.add(emails.get(i));
+            }
+        }
+        return inserted;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.hashingExecutor.shutdown();
+    }
+
+    public int getImportBatchSize() {
+        return importBatchSize;
+    }
+
+    public void setImportBatchSize(int importBatchSize) {
+        this.importBatchSize = importBatchSize;
+    }
+
+    private static ExecutorService hashingExecutor(int threads, int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -0,0 +1,31 @@
+package com.openclassrooms.starterjwt.services;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records a {@link SessionOperationEvent} around every public {@link SessionService} call.
+ * It runs outside the transaction advice, so the commit is part of the measured time.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SessionOperationAspect {
+
+    @Around("execution(public * com.openclassrooms.starterjwt.services.SessionService.*(..))")
+    public Object record(ProceedingJoinPoint call) throws Throwable {
+        SessionOperationEvent event = new SessionOperationEvent();
+        event.begin();
+        Object result = null;
+        try {
+            result = call.proceed();
+            return result;
+        } finally {
+            event.commit(call, result);
+        }
+    }
+}
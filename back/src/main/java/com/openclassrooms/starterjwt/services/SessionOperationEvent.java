@@ -0,0 +1,46 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.aspectj.lang.JoinPoint;
+
+/**
+ * Flight Recorder event for a public {@link SessionService} call, recorded by
+ * {@link SessionOperationAspect}. Calls that end with an exception are recorded too.
+ */
+@Name("savasana.SessionOperation")
+@Label("Session Operation")
+@Category({"Savasana", "Sessions"})
+@Description("SessionService call, including the transaction commit")
+@StackTrace(false)
+class SessionOperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Session Id")
+    long sessionId;
+
+    @Label("User Id")
+    long userId;
+
+    /**
+     * The first {@code Long} argument is the session id, or the returned session's id when
+     * there is none, and a second {@code Long} argument is the user id.
+     */
+    void commit(JoinPoint call, Object result) {
+        end();
+        if (shouldCommit()) {
+            Object[] args = call.getArgs();
+            this.operation = call.getSignature().getName();
+            this.sessionId = args.length > 0 && args[0] instanceof Long ? (Long) args[0]
+                    : result instanceof Session && ((Session) result).getId() != null ? ((Session) result).getId() : 0L;
+            this.userId = args.length > 1 && args[1] instanceof Long ? (Long) args[1] : 0L;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.ScheduleConflictException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.SessionSeries;
+import com.openclassrooms.starterjwt.recurrence.RecurrenceRule;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionSeriesRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+@Service
+@Log4j2
+public class SessionSeriesService {
+    /**
+     * Idempotent thanks to the unique key on (series_id, date): when two instances extend the
+     * same series, the second insert of an occurrence is a no-op instead of a duplicate session.
+     */
+    static final String INSERT_OCCURRENCE = "INSERT INTO SESSIONS (name, description, date, teacher_id, series_id, version, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, 0, ?, ?) ON DUPLICATE KEY UPDATE id = id";
+
+    private final SessionSeriesRepository sessionSeriesRepository;
+
+    private final SessionRepository sessionRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TeacherScheduleIndex scheduleIndex;
+
+    @Value("${oc.app.series.horizonDays:56}")
+    private int horizonDays = 56;
+
+    @Value("${oc.app.series.batchSize:100}")
+    private int batchSize = 100;
+
+    public SessionSeriesService(SessionSeriesRepository sessionSeriesRepository,
+                                SessionRepository sessionRepository,
+                                JdbcTemplate jdbcTemplate,
+                                TeacherScheduleIndex scheduleIndex) {
+        this.sessionSeriesRepository = sessionSeriesRepository;
+        this.sessionRepository = sessionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.scheduleIndex = scheduleIndex;
+    }
+
+    @Transactional
+    public SessionSeries create(SessionSeries series) {
+        RecurrenceRule.parse(series.getRecurrence());
+        series.setMaterializedUntil(series.getStart());
+
+        SessionSeries saved = this.sessionSeriesRepository.save(series);
+        materialize(saved, horizon());
+        return saved;
+    }
+
+    public SessionSeries getById(Long id) {
+        return this.sessionSeriesRepository.findById(id).orElse(null);
+    }
+
+    /**
+     * Changes the series and, with a single set-based UPDATE, every occurrence that has not
+     * started yet. Past occurrences keep the values they were given. Fails with a
+     * ScheduleConflictException, changing nothing, when the teacher already teaches at the time
+     * of one of those occurrences.
+     */
+    @Transactional
+    public SessionSeries update(Long id, SessionSeries changes) {
+        SessionSeries series = this.sessionSeriesRepository.findById(id).orElseThrow(NotFoundException::new);
+
+        series.setName(changes.getName());
+        series.setDescription(changes.getDescription());
+        series.setTeacher(changes.getTeacher());
+        Long teacherId = series.getTeacher() != null ? series.getTeacher().getId() : null;
+
+        Date from = new Date();
+        this.scheduleIndex.exclusively(() -> {
+            List<Object[]> occurrences = this.sessionRepository.findSeriesOccurrences(series.getId(), from);
+            if (teacherId != null) {
+                for (Object[] occurrence : occurrences) {
+                    Long conflictingSessionId = this.scheduleIndex.findConflict(teacherId, (Date) occurrence[1],
+                            durationOf(occurrence), (Long) occurrence[0]);
+                    if (conflictingSessionId != null) {
+                        throw new ScheduleConflictException(conflictingSessionId);
+                    }
+                }
+            }
+
+            int updated = this.sessionRepository.updateSeriesOccurrences(series.getId(), from,
+                    series.getName(), series.getDescription(), series.getTeacher(), LocalDateTime.now());
+            occurrences.forEach(occurrence -> this.scheduleIndex.book((Long) occurrence[0], teacherId,
+                    (Date) occurrence[1], durationOf(occurrence)));
+            log.info("Series {} updated, {} future occurrences rewritten", series.getId(), updated);
+            return updated;
+        });
+
+        return this.sessionSeriesRepository.save(series);
+    }
+
+    /**
+     * Moves the horizon forward for every series that lags behind it.
+     */
+    @Scheduled(cron = "${oc.app.series.materializeCron:0 0 3 * * *}")
+    @Transactional
+    public void extendHorizon() {
+        Date horizon = horizon();
+        for (SessionSeries series : this.sessionSeriesRepository.findByMaterializedUntilBefore(horizon)) {
+            materialize(series, horizon);
+        }
+    }
+
+    /**
+     * Inserts the occurrences up to {@code until}. Occurrences at a time the teacher already
+     * teaches are skipped and logged, checked and booked in the schedule index like a single
+     * session. Returns the number of occurrences written.
+     */
+    int materialize(SessionSeries series, Date until) {
+        RecurrenceRule rule = RecurrenceRule.parse(series.getRecurrence());
+        List<LocalDateTime> occurrences = rule.occurrences(toLocal(series.getStart()), toLocal(series.getMaterializedUntil()), toLocal(until));
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Long teacherId = series.getTeacher() != null ? series.getTeacher().getId() : null;
+        List<Date> skipped = new ArrayList<>();
+        int written = this.scheduleIndex.exclusively(() -> {
+            List<Object[]> batch = new ArrayList<>(Math.min(occurrences.size(), this.batchSize));
+            int count = 0;
+            for (LocalDateTime occurrence : occurrences) {
+                Timestamp date = Timestamp.valueOf(occurrence);
+                if (teacherId != null
+                        && this.scheduleIndex.findConflict(teacherId, date, Session.DEFAULT_DURATION, null) != null) {
+                    skipped.add(date);
+                    continue;
+                }
+                batch.add(new Object[] {series.getName(), series.getDescription(), date, teacherId, series.getId(), now, now});
+                count++;
+                if (batch.size() == this.batchSize) {
+                    this.jdbcTemplate.batchUpdate(INSERT_OCCURRENCE, batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                this.jdbcTemplate.batchUpdate(INSERT_OCCURRENCE, batch);
+            }
+
+            if (teacherId != null && count > 0) {
+                // Booked before the lock is released, so a session created meanwhile sees them.
+                for (Object[] occurrence : this.sessionRepository.findSeriesOccurrences(series.getId(),
+                        Timestamp.valueOf(occurrences.get(0)))) {
+                    this.scheduleIndex.book((Long) occurrence[0], teacherId, (Date) occurrence[1], durationOf(occurrence));
+                }
+            }
+            return count;
+        });
+
+        if (!skipped.isEmpty()) {
+            log.warn("Series {}: {} occurrences skipped, teacher {} already teaches at {}", series.getId(), skipped.size(),
+                    teacherId, skipped);
+        }
+        series.setMaterializedUntil(until);
+        this.sessionSeriesRepository.save(series);
+        log.info("Series {} materialized until {}: {} occurrences created", series.getId(), until, written);
+        return written;
+    }
+
+    private Date horizon() {
+        return Date.from(LocalDateTime.now().plusDays(this.horizonDays).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static int durationOf(Object[] occurrence) {
+        return occurrence[2] != null ? (Integer) occurrence[2] : Session.DEFAULT_DURATION;
+    }
+
+    private static LocalDateTime toLocal(Date date) {
+        return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+
+    public int getHorizonDays() {
+        return horizonDays;
+    }
+
+    public void setHorizonDays(int horizonDays) {
+        this.horizonDays = horizonDays;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
@@ -1,14 +1,34 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.audit.ParticipationEvent;
+import com.openclassrooms.starterjwt.datasource.ReadYourWritesStickiness;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.ScheduleConflictException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.notification.SessionChangedEvent;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.hibernate.Hibernate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,41 +37,164 @@ public class SessionService {
 
     private final UserRepository userRepository;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    private final ReadYourWritesStickiness stickiness;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final TeacherScheduleIndex scheduleIndex;
+
+    public SessionService(SessionRepository sessionRepository, UserRepository userRepository, ReadYourWritesStickiness stickiness,
+                          ApplicationEventPublisher eventPublisher, TeacherScheduleIndex scheduleIndex) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.stickiness = stickiness;
+        this.eventPublisher = eventPublisher;
+        this.scheduleIndex = scheduleIndex;
     }
 
+    /**
+     * Saves a new session, unless its teacher already teaches at an overlapping time.
+     */
     public Session create(Session session) {
-        return this.sessionRepository.save(session);
+        if (session.getDuration() == null) {
+            session.setDuration(Session.DEFAULT_DURATION);
+        }
+        Session created = this.scheduleIndex.exclusively(() -> {
+            checkSchedule(session, null);
+            Session saved = this.sessionRepository.save(session);
+            this.scheduleIndex.book(saved);
+            return saved;
+        });
+        this.eventPublisher.publishEvent(new SessionChangedEvent(SessionChangedEvent.Type.SESSION_CREATED, created));
+        return created;
     }
 
+    @Transactional
     public void delete(Long id) {
+        this.sessionRepository.findById(id).ifPresent(session -> this.eventPublisher.publishEvent(
+                new SessionChangedEvent(SessionChangedEvent.Type.SESSION_DELETED, session)));
         this.sessionRepository.deleteById(id);
+        this.scheduleIndex.release(id);
     }
 
+    @Transactional(readOnly = true)
     public List<Session> findAll() {
         return this.sessionRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
     public Session getById(Long id) {
         return this.sessionRepository.findById(id).orElse(null);
     }
 
+    /**
+     * Up to {@code limit} sessions with an id above {@code afterId}, in id order. When asked
+     * for, the rosters of the whole chunk are initialized with one batch query so the sessions
+     * can be mapped once the transaction is over.
+     */
+    @Transactional(readOnly = true)
+    public List<Session> findChunk(Long afterId, int limit, boolean withUsers) {
+        List<Session> sessions = this.sessionRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit));
+        if (withUsers) {
+            sessions.forEach(session -> Hibernate.initialize(session.getUsers()));
+        }
+        return sessions;
+    }
+
+    /**
+     * Participant count of every session, keyed by session id, without loading any roster.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Long> participantCounts() {
+        Map<Long, Long> counts = new HashMap<>();
+        for (Object[] row : this.sessionRepository.countParticipantsBySession()) {
+            counts.put((Long) row[0], (Long) row[1]);
+        }
+        return counts;
+    }
+
+    @Transactional(readOnly = true)
+    public long participantCount(Long id) {
+        return this.sessionRepository.countParticipants(id);
+    }
+
+    /**
+     * One page of the roster, ordered by name. Returns null when the session does not exist.
+     */
+    @Transactional(readOnly = true)
+    public Page<User> findParticipants(Long id, Pageable pageable) {
+        if (!this.sessionRepository.existsById(id)) {
+            return null;
+        }
+        return this.userRepository.findParticipants(id, pageable);
+    }
+
+    /**
+     * Applies the given state onto the managed session. A non-null version must match the
+     * stored one, and only the columns and roster that actually changed are written.
+     */
+    @Transactional
     public Session update(Long id, Session session) {
-        session.setId(id);
-        return this.sessionRepository.save(session);
+        Session current = this.sessionRepository.findById(id).orElseThrow(NotFoundException::new);
+
+        if (session.getVersion() != null && !session.getVersion().equals(current.getVersion())) {
+            throw new ConflictException(current);
+        }
+
+        return this.scheduleIndex.exclusively(() -> {
+            Date previousDate = current.getDate();
+            current.setName(session.getName());
+            current.setDate(session.getDate());
+            if (session.getDuration() != null) {
+                current.setDuration(session.getDuration());
+            }
+            current.setDescription(session.getDescription());
+            if (!Objects.equals(teacherId(current), teacherId(session))) {
+                current.setTeacher(session.getTeacher());
+            }
+            if (session.getUsers() != null && !participantIds(current).equals(participantIds(session))) {
+                current.setUsers(new ArrayList<>(session.getUsers()));
+            }
+            checkSchedule(current, id);
+
+            Session updated = this.sessionRepository.save(current);
+            this.scheduleIndex.book(updated);
+            this.eventPublisher.publishEvent(new SessionChangedEvent(SessionChangedEvent.Type.SESSION_UPDATED, updated,
+                    Objects.equals(previousDate, updated.getDate()) ? null : previousDate));
+            return updated;
+        });
+    }
+
+    private void checkSchedule(Session session, Long excludedSessionId) {
+        if (teacherId(session) == null || session.getDate() == null) {
+            return;
+        }
+        Long conflictingSessionId = this.scheduleIndex.findConflict(teacherId(session), session.getDate(),
+                TeacherScheduleIndex.durationOf(session), excludedSessionId);
+        if (conflictingSessionId != null) {
+            throw new ScheduleConflictException(conflictingSessionId);
+        }
+    }
+
+    private static Long teacherId(Session session) {
+        return session.getTeacher() != null ? session.getTeacher().getId() : null;
     }
 
+    private static Set<Long> participantIds(Session session) {
+        return Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptyList).stream()
+                .filter(Objects::nonNull)
+                .map(User::getId)
+                .collect(Collectors.toSet());
+    }
+
+    @Transactional
     public void participate(Long id, Long userId) {
         Session session = this.sessionRepository.findById(id).orElse(null);
         User user = this.userRepository.findById(userId).orElse(null);
-        
-        /*
+
         if (session == null || user == null) {
             throw new NotFoundException();
         }
-        */
 
         boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
         if(alreadyParticipate) {
@@ -61,16 +204,17 @@ public class SessionService {
         session.getUsers().add(user);
 
         this.sessionRepository.save(session);
+        this.stickiness.markWrite();
+        this.eventPublisher.publishEvent(new ParticipationEvent(ParticipationEvent.Type.JOINED, id, userId, Instant.now()));
     }
 
+    @Transactional
     public void noLongerParticipate(Long id, Long userId) {
         Session session = this.sessionRepository.findById(id).orElse(null);
-        
-        /*
+
         if (session == null) {
             throw new NotFoundException();
         }
-        */
 
         boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
         if(!alreadyParticipate) {
@@ -98,5 +242,7 @@ public class SessionService {
         
         
         this.sessionRepository.save(session);
+        this.stickiness.markWrite();
+        this.eventPublisher.publishEvent(new ParticipationEvent(ParticipationEvent.Type.LEFT, id, userId, Instant.now()));
     }
 }
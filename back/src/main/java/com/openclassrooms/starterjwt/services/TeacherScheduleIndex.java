@@ -0,0 +1,265 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * In-memory schedule of every teacher: the sessions they teach, sorted by start time. Because
+ * no session lasts more than {@value #MAX_DURATION_MINUTES} minutes, a session overlapping a
+ * slot must start less than that before it, so overlap checks and availability lookups only
+ * visit a small range of the sorted set. Changes made inside a transaction are undone if it
+ * rolls back.
+ */
+@Component
+@Log4j2
+public class TeacherScheduleIndex {
+    public static final int MAX_DURATION_MINUTES = 480;
+
+    private static final long MINUTE_MS = 60_000L;
+
+    private static final long MAX_DURATION_MS = MAX_DURATION_MINUTES * MINUTE_MS;
+
+    private static final Comparator<Slot> ORDER = Comparator.comparingLong(Slot::getStart).thenComparingLong(Slot::getSessionId);
+
+    private final SessionRepository sessionRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, NavigableSet<Slot>> schedules = new HashMap<>();
+
+    private final Map<Long, Slot> slotsBySession = new HashMap<>();
+
+    private volatile boolean loaded;
+
+    public TeacherScheduleIndex(SessionRepository sessionRepository) {
+        this.sessionRepository = sessionRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            ensureLoaded();
+        } catch (RuntimeException e) {
+            log.error("Teacher schedules could not be loaded, retrying on first use", e);
+        }
+    }
+
+    /**
+     * Runs a check-then-book sequence without any other booking interleaving.
+     */
+    public <T> T exclusively(Supplier<T> action) {
+        ensureLoaded();
+        this.lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Id of a session of the teacher overlapping [start, start + duration), other than the
+     * excluded one, or null when the slot is free.
+     */
+    public Long findConflict(Long teacherId, Date start, int durationMinutes, Long excludedSessionId) {
+        long from = start.getTime();
+        for (Slot slot : busy(teacherId, from, from + durationMinutes * MINUTE_MS)) {
+            if (!slot.getSessionId().equals(excludedSessionId)) {
+                return slot.getSessionId();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sessions of the teacher overlapping [from, to), by start time.
+     */
+    public List<Slot> busy(Long teacherId, long from, long to) {
+        ensureLoaded();
+        this.lock.readLock().lock();
+        try {
+            NavigableSet<Slot> schedule = this.schedules.get(teacherId);
+            if (schedule == null) {
+                return Collections.emptyList();
+            }
+            List<Slot> busy = new ArrayList<>();
+            for (Slot slot : schedule.subSet(Slot.probe(from - MAX_DURATION_MS), true, Slot.probe(to), false)) {
+                if (slot.getEnd() > from) {
+                    busy.add(slot);
+                }
+            }
+            return busy;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records where the session now sits, replacing any previous slot.
+     */
+    public void book(Session session) {
+        if (session.getId() == null) {
+            return;
+        }
+        book(session.getId(), session.getTeacher() != null ? session.getTeacher().getId() : null, session.getDate(),
+                durationOf(session));
+    }
+
+    /**
+     * Same as {@link #book(Session)}, for sessions written without going through the entity.
+     */
+    public void book(Long sessionId, Long teacherId, Date start, int durationMinutes) {
+        Slot slot = teacherId != null && start != null
+                ? new Slot(sessionId, teacherId, start.getTime(), start.getTime() + durationMinutes * MINUTE_MS)
+                : null;
+        Slot previous = replace(sessionId, slot);
+        onRollback(() -> replace(sessionId, previous));
+    }
+
+    public void release(Long sessionId) {
+        Slot previous = replace(sessionId, null);
+        onRollback(() -> replace(sessionId, previous));
+    }
+
+    /**
+     * Reloads the teachers' schedules from the database once the current transaction commits,
+     * for sessions written in bulk without going through {@link #book}.
+     */
+    public void reloadAfterCommit(Collection<Long> teacherIds) {
+        Runnable reload = () -> teacherIds.stream().filter(Objects::nonNull).distinct().forEach(this::reload);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reload.run();
+                }
+            });
+        } else {
+            reload.run();
+        }
+    }
+
+    static int durationOf(Session session) {
+        return session.getDuration() != null ? session.getDuration() : Session.DEFAULT_DURATION;
+    }
+
+    private void reload(Long teacherId) {
+        // Read under the lock, or a booking made between the read and the swap would be lost.
+        this.lock.writeLock().lock();
+        try {
+            List<Object[]> rows = this.sessionRepository.findTeacherSchedule(teacherId, since());
+            NavigableSet<Slot> previous = this.schedules.remove(teacherId);
+            if (previous != null) {
+                previous.forEach(slot -> this.slotsBySession.remove(slot.getSessionId()));
+            }
+            rows.forEach(this::add);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (this.loaded) {
+            return;
+        }
+        this.lock.writeLock().lock();
+        try {
+            if (!this.loaded) {
+                List<Object[]> rows = this.sessionRepository.findSchedules(since());
+                rows.forEach(this::add);
+                this.loaded = true;
+                log.info("Teacher schedules loaded: {} sessions", rows.size());
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Object[] row) {
+        Long sessionId = (Long) row[0];
+        long start = ((Date) row[2]).getTime();
+        int duration = row[3] != null ? (Integer) row[3] : Session.DEFAULT_DURATION;
+        Slot slot = new Slot(sessionId, (Long) row[1], start, start + duration * MINUTE_MS);
+        this.slotsBySession.put(sessionId, slot);
+        this.schedules.computeIfAbsent(slot.getTeacherId(), teacherId -> new TreeSet<>(ORDER)).add(slot);
+    }
+
+    private Slot replace(Long sessionId, Slot slot) {
+        this.lock.writeLock().lock();
+        try {
+            Slot previous = this.slotsBySession.remove(sessionId);
+            if (previous != null) {
+                this.schedules.get(previous.getTeacherId()).remove(previous);
+            }
+            if (slot != null) {
+                this.slotsBySession.put(sessionId, slot);
+                this.schedules.computeIfAbsent(slot.getTeacherId(), teacherId -> new TreeSet<>(ORDER)).add(slot);
+            }
+            return previous;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private static Date since() {
+        // Sessions that ended before now can no longer conflict with a new booking.
+        return new Date(System.currentTimeMillis() - MAX_DURATION_MS);
+    }
+
+    private static void onRollback(Runnable undo) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        undo.run();
+                    }
+                }
+            });
+        }
+    }
+
+    public static final class Slot {
+        private final Long sessionId;
+        private final Long teacherId;
+        private final long start;
+        private final long end;
+
+        public Slot(Long sessionId, Long teacherId, long start, long end) {
+            this.sessionId = sessionId;
+            this.teacherId = teacherId;
+            this.start = start;
+            this.end = end;
+        }
+
+        static Slot probe(long start) {
+            return new Slot(Long.MIN_VALUE, null, start, start);
+        }
+
+        public Long getSessionId() {
+            return sessionId;
+        }
+
+        public Long getTeacherId() {
+            return teacherId;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+    }
+}
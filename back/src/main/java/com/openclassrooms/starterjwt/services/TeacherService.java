@@ -3,6 +3,7 @@ package com.openclassrooms.starterjwt.services;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -14,10 +15,12 @@ public class TeacherService {
         this.teacherRepository = teacherRepository;
     }
 
+    @Transactional(readOnly = true)
     public List<Teacher> findAll() {
         return this.teacherRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
     public Teacher findById(Long id) {
         return this.teacherRepository.findById(id).orElse(null);
     }
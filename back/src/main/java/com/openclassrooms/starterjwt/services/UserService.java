@@ -1,22 +1,107 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.BulkDeleteResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.TokenVersionRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 
 @Service
+@Log4j2
 public class UserService {
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    private final TransactionTemplate transactionTemplate;
+
+    private final TokenVersionRegistry tokenVersionRegistry;
+
+    private int deleteChunkSize = 500;
+
+    public UserService(UserRepository userRepository, TransactionTemplate transactionTemplate,
+                       TokenVersionRegistry tokenVersionRegistry) {
         this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.tokenVersionRegistry = tokenVersionRegistry;
     }
 
+    @Transactional
     public void delete(Long id) {
-        this.userRepository.deleteById(id);
+        List<Long> ids = Collections.singletonList(id);
+        this.userRepository.deleteParticipationsByUserIds(ids);
+        this.userRepository.deleteAllByIds(ids);
+        this.tokenVersionRegistry.revokeAll(id);
     }
 
+    /**
+     * Deletes users and their PARTICIPATE rows with set-based statements, one short
+     * transaction per chunk so that a large purge never holds locks for long.
+     */
+    public BulkDeleteResponse deleteAll(List<Long> ids) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        int usersDeleted = 0;
+        int participationsDeleted = 0;
+        int chunks = 0;
+
+        for (int from = 0; from < distinctIds.size(); from += this.deleteChunkSize) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + this.deleteChunkSize, distinctIds.size()));
+            int[] deleted = this.transactionTemplate.execute(status -> new int[] {
+                    this.userRepository.deleteParticipationsByUserIds(chunk),
+                    this.userRepository.deleteAllByIds(chunk)
+            });
+
+            chunk.forEach(this.tokenVersionRegistry::revokeAll);
+            participationsDeleted += deleted[0];
+            usersDeleted += deleted[1];
+            chunks++;
+            log.info("User deletion progress: {}/{} ids processed, {} users and {} participations deleted",
+                    from + chunk.size(), distinctIds.size(), usersDeleted, participationsDeleted);
+        }
+
+        return new BulkDeleteResponse(distinctIds.size(), usersDeleted, participationsDeleted, chunks);
+    }
+
+    /**
+     * Invalidates every token already issued to the user by moving their stored token version
+     * forward. Every instance checks tokens against that column, so the revocation survives
+     * restarts; the local registry is told at once, the others within their cache TTL.
+     */
+    @Transactional
+    public void revokeTokens(Long id) {
+        if (this.userRepository.incrementTokenVersion(id) == 0) {
+            throw new NotFoundException();
+        }
+        int tokenVersion = this.userRepository.findTokenVersion(id).orElseThrow(NotFoundException::new);
+        this.tokenVersionRegistry.record(id, tokenVersion);
+    }
+
+    @Transactional(readOnly = true)
     public User findById(Long id) {
         return this.userRepository.findById(id).orElse(null);
     }
+
+    public int getDeleteChunkSize() {
+        return deleteChunkSize;
+    }
+
+    /**
+     * Bound through this setter so that a non-positive size, which would never advance through
+     * the ids, is rejected at startup.
+     */
+    @Value("${oc.app.userDeleteChunkSize:500}")
+    public void setDeleteChunkSize(int deleteChunkSize) {
+        if (deleteChunkSize <= 0) {
+            throw new IllegalArgumentException("oc.app.userDeleteChunkSize must be positive: " + deleteChunkSize);
+        }
+        this.deleteChunkSize = deleteChunkSize;
+    }
 }
@@ -0,0 +1,80 @@
+package com.openclassrooms.starterjwt;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+/**
+ * Time from SpringApplication.run to the first successful GET /api/teacher with the
+ * fast-startup profile, against an in-memory database. The JVM is already warm from the
+ * other tests, so the figure is a lower bound of a cold start.
+ */
+class SpringBootSecurityJwtApplicationStartupTest {
+    private static final Logger logger = LoggerFactory.getLogger(SpringBootSecurityJwtApplicationStartupTest.class);
+
+    private static final long MAX_STARTUP_MS = 60_000;
+
+    private static final long POLL_INTERVAL_MS = 100;
+
+    @Test
+    void testFastStartup_ServesTeachersQuickly() throws Exception {
+        long start = System.nanoTime();
+        // Arguments de ligne de commande : ils priment sur le profil fast-startup
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringBootSecurityJwtApplication.class)
+                .profiles("fast-startup")
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:startup;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        // H2 ne connaît pas FOR UPDATE SKIP LOCKED
+                        "--oc.app.outbox.enabled=false",
+                        // Aucune tâche planifiée ne doit tourner pendant la mesure
+                        "--oc.app.scheduling.enabled=false")) {
+            long ready = System.nanoTime();
+
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            // Le filtre vérifie la version du jeton en base : l'utilisateur doit exister
+            User user = context.getBean(UserRepository.class)
+                    .save(new User("yoga@studio.com", "Admin", "Admin", "password", true));
+            String token = context.getBean(JwtUtils.class).generateJwtToken(
+                    UserDetailsImpl.builder().id(user.getId()).username(user.getEmail()).tokenVersion(0).build());
+
+            int status = 0;
+            while (status != 200 && System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(MAX_STARTUP_MS)) {
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/api/teacher").openConnection();
+                connection.setRequestProperty("Authorization", "Bearer " + token);
+                status = connection.getResponseCode();
+                connection.disconnect();
+                if (status != 200) {
+                    Thread.sleep(POLL_INTERVAL_MS);
+                }
+            }
+            long firstResponse = System.nanoTime();
+
+            logger.info("fast-startup: context ready in {} ms, first GET /api/teacher answered in {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(ready - start), TimeUnit.NANOSECONDS.toMillis(firstResponse - start));
+            assertTrue(status == 200, "GET /api/teacher answered " + status);
+            // Les beans portant des tâches planifiées restent créés au démarrage, les autres attendent leur premier usage
+            assertTrue(context.getBeanFactory().containsSingleton("refreshTokenService"));
+            assertFalse(context.containsBean("outboxDispatcher"));
+            assertFalse(context.getBeanFactory().containsSingleton("calendarFeedService"));
+        }
+    }
+}
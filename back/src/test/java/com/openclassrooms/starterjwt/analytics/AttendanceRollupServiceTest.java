@@ -0,0 +1,173 @@
+package com.openclassrooms.starterjwt.analytics;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.openclassrooms.starterjwt.audit.ParticipationEvent;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.notification.SessionChangedEvent;
+import com.openclassrooms.starterjwt.payload.response.AttendanceStatResponse;
+
+class AttendanceRollupServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 4);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private AttendanceRollupService rollupService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void testParticipationRecomputesOnlyTheSessionDay() {
+        when(namedJdbcTemplate.queryForList(eq(AttendanceRollupService.SELECT_SESSION_DAYS), any(SqlParameterSource.class),
+                eq(java.sql.Date.class))).thenReturn(Collections.singletonList(java.sql.Date.valueOf(DAY)));
+
+        // Deux inscriptions sur la même séance : un seul recalcul du jour
+        rollupService.onParticipationEvent(new ParticipationEvent(ParticipationEvent.Type.JOINED, 7L, 1L, Instant.now()));
+        rollupService.onParticipationEvent(new ParticipationEvent(ParticipationEvent.Type.LEFT, 7L, 2L, Instant.now()));
+        rollupService.refreshDirtyDays();
+
+        verify(jdbcTemplate).update(AttendanceRollupService.DELETE_DAY, java.sql.Date.valueOf(DAY));
+        verify(jdbcTemplate).update(AttendanceRollupService.INSERT_DAY, "2024-03-04", "2024-03-05");
+
+        // Rien à faire au passage suivant
+        rollupService.refreshDirtyDays();
+        verify(jdbcTemplate, times(1)).update(eq(AttendanceRollupService.DELETE_DAY), (Object) any());
+    }
+
+    @Test
+    void testMovedSessionRecomputesOldAndNewDay() {
+        Session session = new Session().setId(7L).setDate(Timestamp.valueOf(DAY.plusDays(2).atTime(18, 0)));
+        dayInDatabase(Timestamp.valueOf(DAY.plusDays(2).atTime(18, 0)), DAY.plusDays(2));
+        dayInDatabase(Timestamp.valueOf(DAY.atTime(9, 0)), DAY);
+
+        rollupService.onSessionChanged(new SessionChangedEvent(SessionChangedEvent.Type.SESSION_UPDATED, session,
+                Timestamp.valueOf(DAY.atTime(9, 0))));
+        rollupService.refreshDirtyDays();
+
+        verify(jdbcTemplate).update(AttendanceRollupService.DELETE_DAY, java.sql.Date.valueOf(DAY));
+        verify(jdbcTemplate).update(AttendanceRollupService.DELETE_DAY, java.sql.Date.valueOf(DAY.plusDays(2)));
+        verify(namedJdbcTemplate, never()).queryForList(anyString(), any(SqlParameterSource.class),
+                ArgumentMatchers.<Class<java.sql.Date>>any());
+    }
+
+    @Test
+    void testDayIsTheDatabaseDay() {
+        // La base n'est pas dans le fuseau de la JVM : 00:30 ici est encore la veille pour elle
+        Timestamp date = Timestamp.valueOf(DAY.atTime(0, 30));
+        dayInDatabase(date, DAY.minusDays(1));
+
+        rollupService.onSessionChanged(new SessionChangedEvent(SessionChangedEvent.Type.SESSION_CREATED,
+                new Session().setId(7L).setDate(date)));
+        rollupService.refreshDirtyDays();
+
+        verify(jdbcTemplate).update(AttendanceRollupService.DELETE_DAY, java.sql.Date.valueOf(DAY.minusDays(1)));
+        verify(jdbcTemplate, never()).update(AttendanceRollupService.DELETE_DAY, java.sql.Date.valueOf(DAY));
+    }
+
+    @Test
+    void testCreatedSessionMarksItsDay() {
+        Session session = new Session().setId(7L).setDate(Timestamp.valueOf(DAY.atTime(9, 0)));
+        dayInDatabase(Timestamp.valueOf(DAY.atTime(9, 0)), DAY);
+
+        // Une séance créée sans participant compte dans le nombre de séances du jour
+        rollupService.onSessionChanged(new SessionChangedEvent(SessionChangedEvent.Type.SESSION_CREATED, session));
+        rollupService.refreshDirtyDays();
+
+        verify(jdbcTemplate).update(AttendanceRollupService.DELETE_DAY, java.sql.Date.valueOf(DAY));
+    }
+
+    @Test
+    void testFailedDayStaysDirty() {
+        Session session = new Session().setId(7L).setDate(Timestamp.valueOf(DAY.atTime(9, 0)));
+        dayInDatabase(Timestamp.valueOf(DAY.atTime(9, 0)), DAY);
+        when(jdbcTemplate.update(eq(AttendanceRollupService.DELETE_DAY), (Object) any()))
+                .thenThrow(new CannotAcquireLockException("lock wait timeout"));
+
+        rollupService.onSessionChanged(new SessionChangedEvent(SessionChangedEvent.Type.SESSION_DELETED, session));
+        rollupService.refreshDirtyDays();
+
+        assertEquals(1, rollupService.pendingDays());
+    }
+
+    @Test
+    void testStatsComputesFillRateFromRollup() {
+        rollupService.setSessionCapacity(10);
+        when(jdbcTemplate.query(anyString(), ArgumentMatchers.<RowMapper<AttendanceStatResponse>>any(), eq(java.sql.Date.valueOf(DAY)),
+                eq(java.sql.Date.valueOf(DAY.plusYears(1))))).thenAnswer(invocation -> {
+            RowMapper<AttendanceStatResponse> rowMapper = invocation.getArgument(1);
+            java.sql.ResultSet rs = mock(java.sql.ResultSet.class);
+            when(rs.getInt("k")).thenReturn(0);
+            when(rs.getLong("sessions")).thenReturn(4L);
+            when(rs.getLong("participations")).thenReturn(30L);
+            return Collections.singletonList(rowMapper.mapRow(rs, 0));
+        });
+
+        List<AttendanceStatResponse> stats = rollupService.stats(DAY, DAY.plusYears(1), AttendanceDimension.WEEKDAY);
+
+        assertEquals("MONDAY", stats.get(0).getKey());
+        assertEquals(0.75, stats.get(0).getFillRate(), 1e-9);
+    }
+
+    @Test
+    void testRebuildReplacesEverythingInOneTransaction() {
+        when(jdbcTemplate.queryForObject(AttendanceRollupService.ACQUIRE_REBUILD_LOCK, Integer.class)).thenReturn(1);
+        when(jdbcTemplate.update(AttendanceRollupService.INSERT_ALL)).thenReturn(42);
+
+        assertEquals(42, rollupService.rebuild());
+        verify(jdbcTemplate).update(AttendanceRollupService.DELETE_ALL);
+        verify(transactionTemplate).execute(any());
+        verify(jdbcTemplate).queryForObject(AttendanceRollupService.RELEASE_REBUILD_LOCK, Integer.class);
+    }
+
+    @Test
+    void testRebuildIsSkippedWhileAnotherInstanceHoldsTheLock() {
+        when(jdbcTemplate.queryForObject(AttendanceRollupService.ACQUIRE_REBUILD_LOCK, Integer.class)).thenReturn(0);
+
+        assertEquals(0, rollupService.rebuild());
+        verify(jdbcTemplate, never()).update(AttendanceRollupService.DELETE_ALL);
+        verify(jdbcTemplate, never()).update(AttendanceRollupService.INSERT_ALL);
+    }
+
+    private void dayInDatabase(Timestamp date, LocalDate day) {
+        when(jdbcTemplate.queryForObject(AttendanceRollupService.SELECT_DAY, java.sql.Date.class, date))
+                .thenReturn(java.sql.Date.valueOf(day));
+    }
+}
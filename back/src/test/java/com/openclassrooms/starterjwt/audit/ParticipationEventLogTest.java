@@ -0,0 +1,136 @@
+package com.openclassrooms.starterjwt.audit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class ParticipationEventLogTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(jdbcTemplate.batchUpdate(eq(ParticipationEventLog.INSERT_EVENT), anyList())).thenAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(1);
+            batchSizes.add(rows.size());
+            return new int[rows.size()];
+        });
+    }
+
+    @Test
+    void testFlushWritesInBatches() {
+        ParticipationEventLog eventLog = new ParticipationEventLog(jdbcTemplate, 100, 4, 1000);
+        for (long i = 0; i < 10; i++) {
+            assertTrue(eventLog.append(event(i)));
+        }
+
+        eventLog.flush();
+
+        assertEquals(List.of(4, 4, 2), batchSizes);
+        assertEquals(10, eventLog.getWritten());
+        assertEquals(0, eventLog.getPending());
+    }
+
+    @Test
+    void testFullBufferDropsAndCounts() {
+        ParticipationEventLog eventLog = new ParticipationEventLog(jdbcTemplate, 3, 10, 1000);
+        for (long i = 0; i < 5; i++) {
+            eventLog.append(event(i));
+        }
+
+        // L'appelant n'est jamais bloqué : les événements en trop sont perdus mais comptés
+        assertEquals(3, eventLog.getAccepted());
+        assertEquals(2, eventLog.getDropped());
+        assertEquals(3, eventLog.getPending());
+    }
+
+    @Test
+    void testFailedBatchIsCounted() {
+        doThrow(new DataAccessResourceFailureException("down"))
+                .when(jdbcTemplate).batchUpdate(eq(ParticipationEventLog.INSERT_EVENT), anyList());
+        ParticipationEventLog eventLog = new ParticipationEventLog(jdbcTemplate, 10, 10, 1000);
+        eventLog.setRetryDelayMs(0);
+        eventLog.append(event(1));
+        eventLog.append(event(2));
+
+        eventLog.flush();
+
+        // Le lot est retenté une fois avant d'être compté comme perdu
+        verify(jdbcTemplate, times(2)).batchUpdate(eq(ParticipationEventLog.INSERT_EVENT), anyList());
+        assertEquals(0, eventLog.getWritten());
+        assertEquals(2, eventLog.getFailed());
+    }
+
+    @Test
+    void testFailedBatchIsRetriedOnce() {
+        List<Integer> attempts = new CopyOnWriteArrayList<>();
+        when(jdbcTemplate.batchUpdate(eq(ParticipationEventLog.INSERT_EVENT), anyList())).thenAnswer(invocation -> {
+            attempts.add(1);
+            if (attempts.size() == 1) {
+                throw new DataAccessResourceFailureException("down");
+            }
+            return new int[2];
+        });
+        ParticipationEventLog eventLog = new ParticipationEventLog(jdbcTemplate, 10, 10, 1000);
+        eventLog.setRetryDelayMs(0);
+        eventLog.append(event(1));
+        eventLog.append(event(2));
+
+        eventLog.flush();
+
+        assertEquals(2, eventLog.getWritten());
+        assertEquals(0, eventLog.getFailed());
+    }
+
+    @Test
+    void testLossesArePublishedAsMetrics() {
+        ParticipationEventLog eventLog = new ParticipationEventLog(jdbcTemplate, 1, 10, 1000);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        eventLog.bindTo(registry);
+        eventLog.append(event(1));
+        eventLog.append(event(2));
+
+        assertEquals(1.0, registry.get("participation.events.dropped").functionCounter().count());
+        assertEquals(1.0, registry.get("participation.events.pending").gauge().value());
+        assertEquals(0.0, registry.get("participation.events.failed").functionCounter().count());
+    }
+
+    @Test
+    void testBackgroundWriterAndShutdownDrainEverything() throws InterruptedException {
+        ParticipationEventLog eventLog = new ParticipationEventLog(jdbcTemplate, 1000, 50, 50);
+        eventLog.start();
+        for (long i = 0; i < 500; i++) {
+            eventLog.append(event(i));
+        }
+
+        eventLog.stop();
+
+        // Rien ne reste en mémoire après un arrêt propre
+        assertEquals(500, eventLog.getWritten());
+        assertEquals(0, eventLog.getPending());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 50));
+    }
+
+    private static ParticipationEvent event(long userId) {
+        return new ParticipationEvent(ParticipationEvent.Type.JOINED, 1L, userId, Instant.now());
+    }
+}
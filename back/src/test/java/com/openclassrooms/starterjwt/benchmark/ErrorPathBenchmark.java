@@ -0,0 +1,76 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.controllers.RequestErrorAdvice;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Throughput of the expected-error path: throwing from {@code depth} frames down, as from a
+ * service under the servlet and Spring MVC stack, then producing the problem body.
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark.include=ErrorPathBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorPathBenchmark {
+
+    @Param({"20", "100"})
+    private int depth;
+
+    private final RequestErrorAdvice advice = new RequestErrorAdvice();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Benchmark
+    public Object throwWithStackTrace() {
+        try {
+            return throwAt(depth, IllegalStateException::new);
+        } catch (IllegalStateException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object throwStackless() {
+        try {
+            return throwAt(depth, NotFoundException::new);
+        } catch (NotFoundException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> problemSerializedPerRequest() throws Exception {
+        Map<String, Object> problem = new LinkedHashMap<>();
+        problem.put("type", "about:blank");
+        problem.put("title", HttpStatus.NOT_FOUND.getReasonPhrase());
+        problem.put("status", HttpStatus.NOT_FOUND.value());
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+                .body(objectMapper.writeValueAsBytes(problem));
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> problemCached() {
+        return advice.handleNotFound(null);
+    }
+
+    private static Object throwAt(int depth, Supplier<RuntimeException> exception) {
+        if (depth == 0) {
+            throw exception.get();
+        }
+        return throwAt(depth - 1, exception);
+    }
+}
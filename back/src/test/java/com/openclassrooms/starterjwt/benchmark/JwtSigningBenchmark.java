@@ -0,0 +1,52 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of issuing and verifying an access token for each supported signing algorithm.
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark.include=JwtSigningBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtSigningBenchmark {
+
+    @Param({"HS512", "RS256", "ES256"})
+    private String algorithm;
+
+    private JwtUtils jwtUtils;
+
+    private UserDetailsImpl principal;
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = new JwtUtils();
+        jwtUtils.setJwtSecret("openclassrooms");
+        jwtUtils.setJwtExpirationMs(900000);
+        jwtUtils.setJwtAlgorithm(algorithm);
+
+        principal = UserDetailsImpl.builder()
+                .id(1L).username("yoga@studio.com").firstName("Admin").lastName("Admin")
+                .admin(true).tokenVersion(0).build();
+        token = jwtUtils.generateJwtToken(principal);
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtUtils.generateJwtToken(principal);
+    }
+
+    @Benchmark
+    public UserDetailsImpl verify() {
+        return jwtUtils.getUserDetailsFromJwtToken(token);
+    }
+}
@@ -0,0 +1,85 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionFields;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Size and cost of the GET /api/session body for 5000 sessions, in full or restricted to the
+ * list view fields, with and without gzip. Payload sizes are printed during setup.
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark.include=SessionPayloadBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionPayloadBenchmark {
+    private static final int SESSIONS = 5000;
+
+    @Param({"", "id,name,date,teacher_id"})
+    private String fields;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private List<SessionDto> sessionDtos;
+
+    private SessionFields sessionFields;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        String[] words = {"breathe", "stretch", "flow", "balance", "posture", "relax", "core", "focus", "hold", "release"};
+        sessionDtos = new ArrayList<>(SESSIONS);
+        for (long id = 1; id <= SESSIONS; id++) {
+            StringBuilder description = new StringBuilder();
+            while (description.length() < 2400) {
+                description.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            List<Long> users = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                users.add((long) random.nextInt(10000));
+            }
+            LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 9, 0).plusMinutes(random.nextInt(500000));
+            sessionDtos.add(new SessionDto(id, "Session " + id, new Date(1700000000000L + id * 3600000L), 60,
+                    (long) random.nextInt(50), description.toString(), users, 0L, createdAt, createdAt));
+        }
+        sessionFields = SessionFields.parse(fields);
+
+        byte[] json = serialize();
+        System.out.printf("%n[fields=%s] json=%d bytes, gzip=%d bytes%n",
+                fields.isEmpty() ? "*" : fields, json.length, gzip(json).length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        Object body = sessionFields == null ? sessionDtos : sessionFields.select(sessionDtos);
+        return objectMapper.writeValueAsBytes(body);
+    }
+
+    @Benchmark
+    public byte[] serializeAndGzip() throws IOException {
+        return gzip(serialize());
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,99 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET /api/session as one JSON array against the NDJSON stream, for 5000 sessions: time until
+ * the first bytes can be sent, and time for the whole body. Setup prints how much of the body
+ * each variant keeps in memory at once. Neither variant frees the thread that writes the body:
+ * the stream runs on the MVC async executor for as long as the client takes to read it.
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark.include=SessionStreamBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionStreamBenchmark {
+    private static final int SESSIONS = 5000;
+
+    // Same as SessionController.STREAM_CHUNK_SIZE.
+    private static final int CHUNK_SIZE = 50;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private final OutputStream discard = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private List<SessionDto> sessionDtos;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        sessionDtos = new ArrayList<>(SESSIONS);
+        for (long id = 1; id <= SESSIONS; id++) {
+            List<Long> users = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                users.add((long) random.nextInt(10000));
+            }
+            LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 9, 0).plusMinutes(random.nextInt(500000));
+            sessionDtos.add(new SessionDto(id, "Session " + id, new Date(1700000000000L + id * 3600000L), 60,
+                    (long) random.nextInt(50), "Morning flow, 60 minutes", users, 0L, createdAt, createdAt));
+        }
+
+        int largestChunk = 0;
+        for (int from = 0; from < SESSIONS; from += CHUNK_SIZE) {
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+            writeChunk(from, chunk);
+            largestChunk = Math.max(largestChunk, chunk.size());
+        }
+        System.out.printf("%n[sessions=%d] buffered body=%d bytes, largest streamed chunk=%d bytes%n",
+                SESSIONS, bufferedBody().length, largestChunk);
+    }
+
+    @Benchmark
+    public byte[] bufferedBody() throws IOException {
+        return objectMapper.writeValueAsBytes(sessionDtos);
+    }
+
+    @Benchmark
+    public void streamedFirstChunk() throws IOException {
+        writeChunk(0, discard);
+    }
+
+    @Benchmark
+    public void streamedBody() throws IOException {
+        for (int from = 0; from < SESSIONS; from += CHUNK_SIZE) {
+            writeChunk(from, discard);
+        }
+    }
+
+    private void writeChunk(int from, OutputStream out) throws IOException {
+        for (SessionDto sessionDto : sessionDtos.subList(from, Math.min(from + CHUNK_SIZE, SESSIONS))) {
+            out.write(objectMapper.writeValueAsBytes(sessionDto));
+            out.write('\n');
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,52 @@
+package com.openclassrooms.starterjwt.calendar;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ICalendarWriterTest {
+
+    @Test
+    void testEvent_WritesUtcTimesAndEndFromDuration() throws Exception {
+        StringWriter out = new StringWriter();
+        ICalendarWriter calendar = new ICalendarWriter(out);
+
+        calendar.begin("My sessions");
+        // 2024-01-01 09:00 UTC, 90 minutes
+        calendar.event(7L, "Yoga", null, new Date(1704099600000L), 90, 3L, new Date(1704000000000L));
+        calendar.end();
+
+        String ics = out.toString();
+        assertTrue(ics.startsWith("BEGIN:VCALENDAR\r\n"));
+        assertTrue(ics.contains("UID:session-7@savasana\r\n"));
+        assertTrue(ics.contains("DTSTART:20240101T090000Z\r\n"));
+        assertTrue(ics.contains("DTEND:20240101T103000Z\r\n"));
+        assertTrue(ics.contains("SEQUENCE:3\r\n"));
+        // Pas de description vide
+        assertFalse(ics.contains("DESCRIPTION"));
+        assertTrue(ics.endsWith("END:VEVENT\r\nEND:VCALENDAR\r\n"));
+    }
+
+    @Test
+    void testEscape_EscapesTextSpecialCharacters() {
+        assertEquals("a\\, b\\; c\\\\d\\ne", ICalendarWriter.escape("a, b; c\\d\r\ne"));
+    }
+
+    @Test
+    void testLongLines_AreFoldedAt75Octets() throws Exception {
+        StringWriter out = new StringWriter();
+        ICalendarWriter calendar = new ICalendarWriter(out);
+
+        // Caractères accentués : deux octets chacun en UTF-8
+        calendar.event(1L, "Séance", "é".repeat(100), new Date(0L), 60, 0L, null);
+
+        for (String line : out.toString().split("\r\n")) {
+            assertTrue(line.getBytes(StandardCharsets.UTF_8).length <= 75, line);
+        }
+        assertTrue(out.toString().contains("\r\n é"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.analytics.AttendanceDimension;
+import com.openclassrooms.starterjwt.analytics.AttendanceRollupService;
+import com.openclassrooms.starterjwt.payload.response.AttendanceStatResponse;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AnalyticsControllerTest {
+
+    @Mock
+    private AttendanceRollupService attendanceRollupService;
+
+    @InjectMocks
+    private AnalyticsController analyticsController;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        UserDetailsImpl admin = new UserDetailsImpl(1L, "yoga@studio.com", "Admin", "Admin", true, "password");
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(admin, null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testAttendance_ReturnsStats() {
+        List<AttendanceStatResponse> stats = Collections.singletonList(new AttendanceStatResponse("09:00", 4, 30, 0.75));
+        when(attendanceRollupService.stats(LocalDate.of(2024, 1, 1), LocalDate.of(2025, 1, 1), AttendanceDimension.SLOT))
+                .thenReturn(stats);
+
+        ResponseEntity<?> response = analyticsController.attendance("slot", "2024-01-01", "2025-01-01");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(stats, response.getBody());
+    }
+
+    @Test
+    void testAttendance_InvalidParameters_ReturnsBadRequest() {
+        assertEquals(HttpStatus.BAD_REQUEST, analyticsController.attendance("room", null, null).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, analyticsController.attendance("teacher", "2024-13-01", null).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, analyticsController.attendance("teacher", "2025-01-01", "2024-01-01").getStatusCode());
+        verify(attendanceRollupService, never()).stats(any(), any(), any());
+    }
+
+    @Test
+    void testAttendance_NotAdmin_ReturnsForbidden() {
+        UserDetailsImpl user = new UserDetailsImpl(2L, "user@studio.com", "User", "User", false, "password");
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null));
+
+        assertEquals(HttpStatus.FORBIDDEN, analyticsController.attendance("teacher", null, null).getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, analyticsController.rebuild().getStatusCode());
+        verifyNoInteractions(attendanceRollupService);
+    }
+
+    @Test
+    void testRebuild_ReturnsRowCount() {
+        when(attendanceRollupService.rebuild()).thenReturn(42);
+
+        ResponseEntity<?> response = analyticsController.rebuild();
+
+        assertEquals(Collections.singletonMap("rows", 42), response.getBody());
+    }
+}
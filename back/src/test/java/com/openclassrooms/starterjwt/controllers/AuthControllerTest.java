@@ -12,14 +12,23 @@ import static org.mockito.Mockito.*;
 
 
 
-import java.util.Optional;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
+import com.openclassrooms.starterjwt.payload.request.RefreshTokenRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
 
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationStore;
+import com.openclassrooms.starterjwt.security.services.LoginAttemptLimiter;
+import com.openclassrooms.starterjwt.security.services.TokenVersionRegistry;
+import com.openclassrooms.starterjwt.services.RefreshTokenService;
+import com.openclassrooms.starterjwt.services.RegistrationService;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 import org.mockito.InjectMocks;
@@ -28,6 +37,7 @@ import org.mockito.Mock;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 
@@ -41,8 +51,12 @@ import org.junit.jupiter.api.BeforeEach;
 
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 
 
 public class AuthControllerTest {
@@ -60,6 +74,21 @@ public class AuthControllerTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Mock
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private LoginAttemptLimiter loginAttemptLimiter;
+
+    @Mock
+    private RegistrationService registrationService;
+
     // Injection des mocks dans le contrôleur à tester
     @InjectMocks
     private AuthController authController;
@@ -88,13 +117,10 @@ public class AuthControllerTest {
 
         // Génération d'un JWT pour l'utilisateur authentifié
         when(jwtUtils.generateJwtToken(authentication)).thenReturn("test-jwt-token");
-
-        // Création d'un utilisateur avec le statut d'administrateur et récupération par email
-        User user = new User("yoga@studio.com", "User", "Test", "password", true);
-        when(userRepository.findByEmail("yoga@studio.com")).thenReturn(Optional.of(user));
+        when(refreshTokenService.issue(1L, 0)).thenReturn("test-refresh-token");
 
         // Appel à la méthode authenticateUser et vérification de la réponse
-        ResponseEntity<?> response = authController.authenticateUser(loginRequest);
+        ResponseEntity<?> response = authController.authenticateUser(loginRequest, new MockHttpServletRequest());
 
         // Vérification du statut de la réponse
         assertEquals(200, response.getStatusCodeValue());
@@ -108,6 +134,86 @@ public class AuthControllerTest {
         assertEquals(userDetails.getFirstName(), jwtResponse.getFirstName());
         assertEquals(userDetails.getLastName(), jwtResponse.getLastName());
         assertTrue(jwtResponse.getAdmin()); // Vérifie que l'utilisateur est bien administrateur
+
+        // Le statut administrateur vient du principal : plus de relecture en base
+        verify(userRepository, never()).findByEmail(any());
+        verify(tokenVersionRegistry).record(1L, 0);
+        assertEquals("test-refresh-token", jwtResponse.getRefreshToken());
+        verify(loginAttemptLimiter).onSuccess("yoga@studio.com");
+    }
+
+    @Test
+    public void testLogout_RevokesCurrentToken() {
+        Date expiration = new Date(System.currentTimeMillis() + 60000);
+        UserDetailsImpl userDetails = UserDetailsImpl.builder().id(1L).username("yoga@studio.com")
+                .tokenId("jti-1").tokenExpiration(expiration).build();
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(userDetails, null));
+
+        ResponseEntity<?> response = authController.logout(null);
+
+        assertEquals(200, response.getStatusCodeValue());
+        verify(tokenRevocationStore).revoke("jti-1", expiration.getTime());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    public void testAuthenticateUser_TooManyAttempts() {
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("yoga@studio.com");
+        loginRequest.setPassword("wrong");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.1");
+        when(loginAttemptLimiter.acquire("yoga@studio.com", "10.0.0.1")).thenReturn(1500L);
+
+        ResponseEntity<?> response = authController.authenticateUser(loginRequest, request);
+
+        // Rejet avant toute vérification BCrypt ou accès à la base
+        assertEquals(429, response.getStatusCodeValue());
+        assertEquals("2", response.getHeaders().getFirst("Retry-After"));
+        verifyNoInteractions(authenticationManager, userRepository);
+    }
+
+    @Test
+    public void testRefresh_Success() {
+        RefreshTokenRequest refreshTokenRequest = new RefreshTokenRequest();
+        refreshTokenRequest.setRefreshToken("old-refresh-token");
+
+        User user = new User("yoga@studio.com", "Admin", "Admin", "password", true);
+        user.setId(1L);
+        when(refreshTokenService.rotate("old-refresh-token"))
+                .thenReturn(new RefreshTokenService.Rotation(user, "new-refresh-token"));
+        when(jwtUtils.generateJwtToken(any(UserDetailsImpl.class))).thenReturn("new-jwt-token");
+
+        ResponseEntity<?> response = authController.refresh(refreshTokenRequest);
+
+        // Aucun appel à l'AuthenticationManager : pas de vérification BCrypt
+        assertEquals(200, response.getStatusCodeValue());
+        JwtResponse jwtResponse = (JwtResponse) response.getBody();
+        assertEquals("new-jwt-token", jwtResponse.getToken());
+        assertEquals("new-refresh-token", jwtResponse.getRefreshToken());
+        assertTrue(jwtResponse.getAdmin());
+        verifyNoInteractions(authenticationManager, passwordEncoder);
+    }
+
+    @Test
+    public void testRefresh_InvalidToken() {
+        RefreshTokenRequest refreshTokenRequest = new RefreshTokenRequest();
+        refreshTokenRequest.setRefreshToken("unknown");
+        when(refreshTokenService.rotate("unknown")).thenReturn(null);
+
+        ResponseEntity<?> response = authController.refresh(refreshTokenRequest);
+
+        assertEquals(401, response.getStatusCodeValue());
+    }
+
+    @Test
+    public void testLogout_Unauthenticated() {
+        SecurityContextHolder.clearContext();
+
+        ResponseEntity<?> response = authController.logout(null);
+
+        assertEquals(401, response.getStatusCodeValue());
+        verifyNoInteractions(tokenRevocationStore);
     }
 
     @Test
@@ -119,14 +225,12 @@ public class AuthControllerTest {
         signUpRequest.setFirstName("Admin");
         signUpRequest.setLastName("Admin");
 
-        // Vérification que l'email n'est pas déjà utilisé
-        when(userRepository.existsByEmail(signUpRequest.getEmail())).thenReturn(false);
-        
-        // Mock de l'encodage du mot de passe
-        when(passwordEncoder.encode(signUpRequest.getPassword())).thenReturn("encoded-password");
+        // Une seule insertion, le hachage est délégué au service
+        when(registrationService.register(any(User.class), eq("test!1234")))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation.getArgument(0)));
 
         // Appel à la méthode registerUser et vérification de la réponse
-        ResponseEntity<?> response = authController.registerUser(signUpRequest);
+        ResponseEntity<?> response = authController.registerUser(signUpRequest).join();
 
         // Vérification du statut de la réponse
         assertEquals(200, response.getStatusCodeValue());
@@ -136,8 +240,8 @@ public class AuthControllerTest {
         assertNotNull(messageResponse);
         assertEquals("User registered successfully!", messageResponse.getMessage());
 
-        // Vérifie que l'utilisateur a bien été enregistré dans le dépôt
-        verify(userRepository, times(1)).save(any(User.class));
+        // Plus de vérification préalable de l'email
+        verify(userRepository, never()).existsByEmail(any());
     }
 
     @Test
@@ -149,12 +253,13 @@ public class AuthControllerTest {
         signUpRequest.setFirstName("Admin");
         signUpRequest.setLastName("Admin");
 
-
-        // Mock indiquant que l'email est déjà présent dans le dépôt
-        when(userRepository.existsByEmail(signUpRequest.getEmail())).thenReturn(true);
+        // L'index unique sur l'email rejette l'insertion
+        CompletableFuture<User> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new DuplicateKeyException("Email is already taken: yoga@studio.com"));
+        when(registrationService.register(any(User.class), any())).thenReturn(failed);
 
         // Appel à la méthode registerUser pour tester la réponse en cas de duplication d'email
-        ResponseEntity<?> response = authController.registerUser(signUpRequest);
+        ResponseEntity<?> response = authController.registerUser(signUpRequest).join();
 
         // Vérification du statut de la réponse pour un email déjà pris
         assertEquals(400, response.getStatusCodeValue());
@@ -163,10 +268,37 @@ public class AuthControllerTest {
         MessageResponse messageResponse = (MessageResponse) response.getBody();
         assertNotNull(messageResponse);
         assertEquals("Error: Email is already taken!", messageResponse.getMessage());
+    }
 
-        // Vérifie que le dépôt n'a pas essayé d'enregistrer un nouvel utilisateur
-        verify(userRepository, times(0)).save(any(User.class));
+    @Test
+    public void testRegisterUser_OtherIntegrityError_IsNotReportedAsTakenEmail() {
+        SignupRequest signUpRequest = new SignupRequest();
+        signUpRequest.setEmail("yoga@studio.com");
+        signUpRequest.setPassword("test!1234");
+        signUpRequest.setFirstName("Admin");
+        signUpRequest.setLastName("Admin");
+
+        // Une contrainte autre que l'unicité de l'email : l'erreur remonte telle quelle
+        CompletableFuture<User> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new DataIntegrityViolationException("Column 'last_name' cannot be null"));
+        when(registrationService.register(any(User.class), any())).thenReturn(failed);
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> authController.registerUser(signUpRequest).join());
+        assertTrue(error.getCause() instanceof DataIntegrityViolationException);
     }
-}
 
+    @Test
+    public void testRegisterUser_HashingPoolSaturated() {
+        SignupRequest signUpRequest = new SignupRequest();
+        signUpRequest.setEmail("yoga@studio.com");
+        signUpRequest.setPassword("test!1234");
+        signUpRequest.setFirstName("Admin");
+        signUpRequest.setLastName("Admin");
+        when(registrationService.register(any(User.class), any())).thenThrow(new RejectedExecutionException());
 
+        ResponseEntity<?> response = authController.registerUser(signUpRequest).join();
+
+        assertEquals(503, response.getStatusCodeValue());
+    }
+}
@@ -0,0 +1,158 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.calendar.CalendarFeedService;
+import com.openclassrooms.starterjwt.calendar.CalendarFeedTokens;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.security.services.TokenVersionRegistry;
+import com.openclassrooms.starterjwt.services.TeacherService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CalendarControllerTest {
+
+    @Mock
+    private CalendarFeedService calendarFeedService;
+
+    @Mock
+    private TeacherService teacherService;
+
+    @Mock
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    // Jetons réels : la signature est vérifiée de bout en bout
+    private CalendarFeedTokens calendarFeedTokens;
+
+    private CalendarController calendarController;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        calendarFeedTokens = new CalendarFeedTokens("secret", tokenVersionRegistry);
+        when(tokenVersionRegistry.isCurrent(anyLong(), eq(0))).thenReturn(true);
+        calendarController = new CalendarController(calendarFeedService, calendarFeedTokens, teacherService);
+        request = new MockHttpServletRequest("GET", "/api/calendar/user/1/sessions.ics");
+        response = new MockHttpServletResponse();
+        when(calendarFeedService.since()).thenReturn(new Date(0L));
+        when(calendarFeedService.version(any(), anyLong(), any()))
+                .thenReturn(new CalendarFeedService.FeedVersion("3-6-2-18c", 1704099600000L));
+    }
+
+    @Test
+    void testUserFeed_StreamsCalendarWithValidators() throws Exception {
+        when(calendarFeedService.events(eq(CalendarFeedService.Owner.USER), eq(1L), any())).thenReturn(Collections.emptyList());
+        doAnswer(invocation -> {
+            invocation.getArgument(2, Writer.class).write("BEGIN:VCALENDAR\r\n");
+            return null;
+        }).when(calendarFeedService).write(any(), any(), any());
+
+        ResponseEntity<StreamingResponseBody> result = calendarController.userFeed(1L, calendarFeedTokens.issue(1L, 0),
+                new ServletWebRequest(request, response));
+
+        // Les événements sont lus avant que la réponse ne soit écrite
+        verify(calendarFeedService).events(eq(CalendarFeedService.Owner.USER), eq(1L), any());
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals(CalendarController.TEXT_CALENDAR, result.getHeaders().getContentType());
+        assertEquals("\"3-6-2-18c\"", response.getHeader("ETag"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        result.getBody().writeTo(out);
+        assertEquals("BEGIN:VCALENDAR\r\n", out.toString("UTF-8"));
+    }
+
+    @Test
+    void testUserFeed_MatchingETag_ReturnsNotModifiedWithoutReadingEvents() throws Exception {
+        request.addHeader("If-None-Match", "\"3-6-2-18c\"");
+
+        ResponseEntity<StreamingResponseBody> result = calendarController.userFeed(1L, calendarFeedTokens.issue(1L, 0),
+                new ServletWebRequest(request, response));
+
+        assertEquals(HttpStatus.NOT_MODIFIED, result.getStatusCode());
+        verify(calendarFeedService, never()).events(any(), any(), any());
+    }
+
+    @Test
+    void testUserFeed_OtherUsersToken_ReturnsForbidden() {
+        ResponseEntity<StreamingResponseBody> result = calendarController.userFeed(1L, calendarFeedTokens.issue(2L, 0),
+                new ServletWebRequest(request, response));
+
+        assertEquals(HttpStatus.FORBIDDEN, result.getStatusCode());
+        verifyNoInteractions(calendarFeedService);
+    }
+
+    @Test
+    void testUserFeed_ForgedToken_ReturnsForbidden() {
+        String forged = new CalendarFeedTokens("other-secret", tokenVersionRegistry).issue(1L, 0);
+
+        ResponseEntity<StreamingResponseBody> result = calendarController.userFeed(1L, forged,
+                new ServletWebRequest(request, response));
+
+        assertEquals(HttpStatus.FORBIDDEN, result.getStatusCode());
+    }
+
+    @Test
+    void testUserFeed_RevokedToken_ReturnsForbidden() {
+        // Après une déconnexion partout, la version du jeton n'est plus la version courante
+        String revoked = calendarFeedTokens.issue(1L, 0);
+        when(tokenVersionRegistry.isCurrent(1L, 0)).thenReturn(false);
+
+        ResponseEntity<StreamingResponseBody> result = calendarController.userFeed(1L, revoked,
+                new ServletWebRequest(request, response));
+
+        assertEquals(HttpStatus.FORBIDDEN, result.getStatusCode());
+        verifyNoInteractions(calendarFeedService);
+    }
+
+    @Test
+    void testUserFeed_TamperedVersion_ReturnsForbidden() {
+        when(tokenVersionRegistry.isCurrent(1L, 1)).thenReturn(true);
+        String token = calendarFeedTokens.issue(1L, 0);
+        String tampered = token.replaceFirst("^1\\.0\\.", "1.1.");
+
+        ResponseEntity<StreamingResponseBody> result = calendarController.userFeed(1L, tampered,
+                new ServletWebRequest(request, response));
+
+        assertEquals(HttpStatus.FORBIDDEN, result.getStatusCode());
+    }
+
+    @Test
+    void testTeacherFeed_AnyMemberToken_ReturnsOk() {
+        when(teacherService.findById(4L)).thenReturn(new Teacher().setId(4L).setFirstName("Margot").setLastName("Delahaye"));
+
+        ResponseEntity<StreamingResponseBody> result = calendarController.teacherFeed(4L, calendarFeedTokens.issue(2L, 0),
+                new ServletWebRequest(request, response));
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        verify(calendarFeedService).version(CalendarFeedService.Owner.TEACHER, 4L, new Date(0L));
+    }
+
+    @Test
+    void testTeacherFeed_UnknownTeacher_ReturnsNotFound() {
+        when(teacherService.findById(4L)).thenReturn(null);
+
+        ResponseEntity<StreamingResponseBody> result = calendarController.teacherFeed(4L, calendarFeedTokens.issue(2L, 0),
+                new ServletWebRequest(request, response));
+
+        assertEquals(HttpStatus.NOT_FOUND, result.getStatusCode());
+    }
+}
@@ -0,0 +1,33 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwksControllerTest {
+
+    @Test
+    void testJwksPublishesCurrentPublicKey() {
+        JwtUtils jwtUtils = new JwtUtils();
+        jwtUtils.setJwtSecret("testSecret");
+        jwtUtils.setJwtAlgorithm("RS256");
+        JwksController controller = new JwksController(jwtUtils);
+
+        ResponseEntity<?> response = controller.jwks();
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertNotNull(response.getHeaders().getCacheControl());
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> keys = ((Map<String, List<Map<String, Object>>>) response.getBody()).get("keys");
+        assertEquals(1, keys.size());
+        assertEquals("RSA", keys.get(0).get("kty"));
+        assertEquals("RS256", keys.get(0).get("alg"));
+        assertEquals(jwtUtils.getKeyRing().current().getKid(), keys.get(0).get("kid"));
+        assertEquals("AQAB", keys.get(0).get("e"));
+    }
+}
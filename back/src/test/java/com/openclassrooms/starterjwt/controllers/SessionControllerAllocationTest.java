@@ -0,0 +1,112 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.openclassrooms.starterjwt.mapper.SessionMapperImpl;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.services.SessionService;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.support.DefaultFormattingConversionService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.test.web.servlet.setup.StandaloneMockMvcBuilder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Bytes allocated per GET /api/session/{id}, read from the thread's allocation counter (the
+ * one JFR's jdk.ThreadAllocationStatistics event reports). The dispatch runs on the calling
+ * thread; what MockMvc itself allocates is measured on an empty handler and subtracted, so
+ * the budget covers binding, the controller and JSON serialization.
+ */
+class SessionControllerAllocationTest {
+    private static final int WARMUP_REQUESTS = 500;
+
+    private static final int MEASURED_REQUESTS = 300;
+
+    private static final long MAX_BYTES_PER_REQUEST = 16 * 1024;
+
+    @Test
+    void testFindById_StaysWithinAllocationBudget() throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        // Pas de mocks Mockito : chaque appel simulé alloue une trace de pile
+        Session session = new Session().setId(1L).setName("Yoga").setDate(new Date(1704099600000L)).setDuration(60)
+                .setDescription("Description").setUsers(Arrays.asList(new User().setId(4L), new User().setId(5L)))
+                .setVersion(3L);
+        SessionService sessionService = new SessionService(null, null, null, null, null) {
+            @Override
+            public Session getById(Long id) {
+                return id == 1L ? session : null;
+            }
+        };
+
+        StandaloneMockMvcBuilder builder = MockMvcBuilders
+                .standaloneSetup(new SessionController(sessionService, new SessionMapperImpl(), null, new ObjectMapper(), null),
+                        new MalformedIdController(), new EmptyController())
+                .setControllerAdvice(new RequestErrorAdvice())
+                // Comme l'application : ConversionService et PathPatternParser plutôt que PropertyEditor et AntPathMatcher
+                .setConversionService(new DefaultFormattingConversionService());
+        builder.setPatternParser(new PathPatternParser());
+        MockMvc mockMvc = builder.build();
+        mockMvc.perform(get("/api/session/abc")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/session/1")).andExpect(status().isOk());
+
+        // Niveau de log de production : les traces DEBUG de Spring fausseraient la mesure
+        Logger springLogger = (Logger) LoggerFactory.getLogger("org.springframework");
+        Level previousLevel = springLogger.getLevel();
+        springLogger.setLevel(Level.INFO);
+        long harness;
+        long perRequest;
+        long perRejectedRequest;
+        try {
+            harness = allocatedPerRequest(threads, mockMvc, get("/empty"));
+            perRequest = allocatedPerRequest(threads, mockMvc, get("/api/session/1")) - harness;
+            perRejectedRequest = allocatedPerRequest(threads, mockMvc, get("/api/session/abc")) - harness;
+        } finally {
+            springLogger.setLevel(previousLevel);
+        }
+        assertTrue(perRequest <= MAX_BYTES_PER_REQUEST,
+                perRequest + " bytes allocated per request, budget is " + MAX_BYTES_PER_REQUEST);
+        // Un ID non numérique reçoit la réponse 400 partagée, sans exception levée au binding
+        assertTrue(perRejectedRequest <= MAX_BYTES_PER_REQUEST,
+                perRejectedRequest + " bytes allocated per rejected id, budget is " + MAX_BYTES_PER_REQUEST);
+    }
+
+    @RestController
+    static class EmptyController {
+        @GetMapping("/empty")
+        public ResponseEntity<?> empty() {
+            return ResponseEntity.ok().build();
+        }
+    }
+
+    private static long allocatedPerRequest(com.sun.management.ThreadMXBean threads, MockMvc mockMvc,
+                                            RequestBuilder request) throws Exception {
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            mockMvc.perform(request);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_REQUESTS; i++) {
+            mockMvc.perform(request);
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / MEASURED_REQUESTS;
+    }
+}
@@ -1,21 +1,47 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import com.openclassrooms.starterjwt.dto.UserDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.services.SessionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.validation.Validation;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.*;
 
 class SessionControllerTest {
@@ -26,6 +52,9 @@ class SessionControllerTest {
     @Mock
     private SessionMapper sessionMapper;
 
+    @Mock
+    private UserMapper userMapper;
+
     @InjectMocks
     private SessionController sessionController;
 
@@ -42,24 +71,28 @@ class SessionControllerTest {
         when(sessionService.getById(1L)).thenReturn(session);
         when(sessionMapper.toDto(session)).thenReturn(sessionDto);
 
-        ResponseEntity<?> response = sessionController.findById("1");
+        ResponseEntity<?> response = sessionController.findById(1L, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(sessionDto, response.getBody());
     }
 
     @Test
-    void testFindById_InvalidId_ReturnsBadRequest() {
-        ResponseEntity<?> response = sessionController.findById("abc");
+    void testFindById_InvalidId_ReturnsBadRequest() throws Exception {
+        mockMvc().perform(get("/api/session/abc")).andExpect(status().isBadRequest());
+    }
 
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    @Test
+    void testFindById_IdTooLarge_ReturnsBadRequest() throws Exception {
+        // Que des chiffres, mais au-delà d'un Long : rejeté au binding
+        mockMvc().perform(get("/api/session/99999999999999999999")).andExpect(status().isBadRequest());
     }
 
     @Test
     void testFindById_NotFound_ReturnsNotFound() {
         when(sessionService.getById(1L)).thenReturn(null);
 
-        ResponseEntity<?> response = sessionController.findById("1");
+        ResponseEntity<?> response = sessionController.findById(1L, null);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     }
@@ -72,12 +105,159 @@ class SessionControllerTest {
         when(sessionService.findAll()).thenReturn(sessions);
         when(sessionMapper.toDto(sessions)).thenReturn(sessionDtos);
 
-        ResponseEntity<?> response = sessionController.findAll();
+        ResponseEntity<?> response = sessionController.findAll(null, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(sessionDtos, response.getBody());
     }
 
+    @Test
+    void testFindAll_WithFields_ReturnsOnlyRequestedProperties() {
+        List<Session> sessions = Collections.singletonList(new Session());
+        SessionDto sessionDto = new SessionDto(1L, "Yoga", new Date(), 60, 2L, "Long description",
+                Collections.singletonList(3L), 0L, null, null);
+
+        when(sessionService.findAll()).thenReturn(sessions);
+        when(sessionMapper.toDto(sessions)).thenReturn(Collections.singletonList(sessionDto));
+
+        // L'ordre demandé n'a pas d'importance, celui de la représentation complète est conservé
+        ResponseEntity<?> response = sessionController.findAll("teacher_id, name,id,date", null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        Map<?, ?> item = (Map<?, ?>) ((List<?>) response.getBody()).get(0);
+        assertEquals(Arrays.asList("id", "name", "date", "teacher_id"), new ArrayList<>(item.keySet()));
+        assertEquals(1L, item.get("id"));
+        assertEquals(2L, item.get("teacher_id"));
+    }
+
+    @Test
+    void testFindAll_UnknownField_ReturnsBadRequest() {
+        ResponseEntity<?> response = sessionController.findAll("id,password", null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(sessionService, never()).findAll();
+    }
+
+    @Test
+    void testFindAll_SummaryView_ReturnsParticipantCounts() {
+        Session session = new Session().setId(1L);
+        SessionSummaryDto summary = new SessionSummaryDto();
+
+        when(sessionService.findAll()).thenReturn(Collections.singletonList(session));
+        when(sessionService.participantCounts()).thenReturn(Collections.singletonMap(1L, 12L));
+        when(sessionMapper.toSummaryDto(session, 12L)).thenReturn(summary);
+
+        ResponseEntity<?> response = sessionController.findAll(null, "summary");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(Collections.singletonList(summary), response.getBody());
+        // Aucune liste de participants n'est convertie
+        verify(sessionMapper, never()).toDto(anyList());
+    }
+
+    @Test
+    void testFindAll_UnknownViewOrViewWithFields_ReturnsBadRequest() {
+        assertEquals(HttpStatus.BAD_REQUEST, sessionController.findAll(null, "full").getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, sessionController.findAll("id", "summary").getStatusCode());
+    }
+
+    @Test
+    void testFindById_SummaryView_ReturnsParticipantCount() {
+        Session session = new Session().setId(1L);
+        SessionSummaryDto summary = new SessionSummaryDto();
+
+        when(sessionService.getById(1L)).thenReturn(session);
+        when(sessionService.participantCount(1L)).thenReturn(3L);
+        when(sessionMapper.toSummaryDto(session, 3L)).thenReturn(summary);
+
+        ResponseEntity<?> response = sessionController.findById(1L, "summary");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(summary, response.getBody());
+        verify(sessionMapper, never()).toDto(session);
+    }
+
+    @Test
+    void testParticipants_ReturnsPageOfUsers() {
+        User user = new User();
+        UserDto userDto = new UserDto();
+
+        when(sessionService.findParticipants(1L, PageRequest.of(2, 10)))
+                .thenReturn(new PageImpl<>(Collections.singletonList(user), PageRequest.of(2, 10), 21));
+        when(userMapper.toDto(user)).thenReturn(userDto);
+
+        ResponseEntity<?> response = sessionController.participants(1L, 2, 10);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        Page<?> page = (Page<?>) response.getBody();
+        assertEquals(Collections.singletonList(userDto), page.getContent());
+        assertEquals(21, page.getTotalElements());
+    }
+
+    @Test
+    void testParticipants_UnknownSession_ReturnsNotFound() {
+        when(sessionService.findParticipants(eq(1L), any())).thenReturn(null);
+
+        ResponseEntity<?> response = sessionController.participants(1L, 0, 20);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void testParticipants_InvalidPaging_ReturnsBadRequest() throws Exception {
+        assertEquals(HttpStatus.BAD_REQUEST, sessionController.participants(1L, -1, 20).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, sessionController.participants(1L, 0, 0).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, sessionController.participants(1L, 0, 101).getStatusCode());
+        mockMvc().perform(get("/api/session/abc/participants")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testStream_WritesOneSessionPerLineChunkByChunk() throws Exception {
+        List<Session> firstChunk = new ArrayList<>();
+        for (long id = 1; id <= 50; id++) {
+            firstChunk.add(new Session().setId(id));
+        }
+        Session last = new Session().setId(51L);
+
+        when(sessionService.findChunk(0L, 50, true)).thenReturn(firstChunk);
+        when(sessionService.findChunk(50L, 50, true)).thenReturn(Collections.singletonList(last));
+        when(sessionMapper.toDto(any(Session.class))).thenAnswer(invocation ->
+                new SessionDto(((Session) invocation.getArgument(0)).getId(), "Yoga", null, 60, 1L, "Description",
+                        Collections.emptyList(), 0L, null, null));
+
+        ResponseEntity<StreamingResponseBody> response = patchController().stream(null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String[] lines = out.toString("UTF-8").split("\n");
+        assertEquals(51, lines.length);
+        assertEquals(51, new ObjectMapper().readTree(lines[50]).get("id").asLong());
+        // Le dernier lot est incomplet : la lecture s'arrête sans requête supplémentaire
+        verify(sessionService, times(2)).findChunk(anyLong(), eq(50), eq(true));
+    }
+
+    @Test
+    void testStream_WithoutUsersField_DoesNotLoadRosters() throws Exception {
+        Session session = new Session().setId(1L);
+
+        when(sessionService.findChunk(0L, 50, false)).thenReturn(Collections.singletonList(session));
+        when(sessionMapper.toDtoWithoutUsers(session)).thenReturn(
+                new SessionDto(1L, "Yoga", null, 60, 1L, "Description", null, 0L, null, null));
+
+        ResponseEntity<StreamingResponseBody> response = patchController().stream("id,name");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        assertEquals("{\"id\":1,\"name\":\"Yoga\"}\n", out.toString("UTF-8"));
+        verify(sessionMapper, never()).toDto(any(Session.class));
+    }
+
+    @Test
+    void testStream_UnknownField_ReturnsBadRequest() {
+        assertEquals(HttpStatus.BAD_REQUEST, sessionController.stream("secret").getStatusCode());
+    }
+
     @Test
     void testCreate_ReturnsOk() {
         SessionDto sessionDto = new SessionDto();
@@ -102,19 +282,65 @@ class SessionControllerTest {
         when(sessionService.update(1L, session)).thenReturn(session);
         when(sessionMapper.toDto(session)).thenReturn(sessionDto);
 
-        ResponseEntity<?> response = sessionController.update("1", sessionDto);
+        ResponseEntity<?> response = sessionController.update(1L, sessionDto);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(sessionDto, response.getBody());
     }
 
     @Test
-    void testUpdate_InvalidId_ReturnsBadRequest() {
+    void testFindById_ReturnsETag() {
+        Session session = new Session();
+        session.setVersion(7L);
+
+        when(sessionService.getById(1L)).thenReturn(session);
+        when(sessionMapper.toDto(session)).thenReturn(new SessionDto());
+
+        ResponseEntity<?> response = sessionController.findById(1L, null);
+
+        assertEquals("\"7\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void testUpdate_StaleVersion_ReturnsConflict() {
         SessionDto sessionDto = new SessionDto();
+        SessionDto currentDto = new SessionDto();
+        Session session = new Session();
+        Session current = new Session();
+        current.setVersion(5L);
+
+        when(sessionMapper.toEntity(sessionDto)).thenReturn(session);
+        when(sessionService.update(1L, session)).thenThrow(new ConflictException(current));
+        when(sessionMapper.toDto(current)).thenReturn(currentDto);
 
-        ResponseEntity<?> response = sessionController.update("abc", sessionDto);
+        ResponseEntity<?> response = sessionController.update(1L, sessionDto);
 
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals("\"5\"", response.getHeaders().getETag());
+        assertEquals(currentDto, response.getBody());
+    }
+
+    @Test
+    void testUpdate_ConcurrentCommit_ReturnsConflict() {
+        SessionDto sessionDto = new SessionDto();
+        Session session = new Session();
+        Session current = new Session();
+        current.setVersion(6L);
+
+        when(sessionMapper.toEntity(sessionDto)).thenReturn(session);
+        when(sessionService.update(1L, session)).thenThrow(new ObjectOptimisticLockingFailureException(Session.class, 1L));
+        when(sessionService.getById(1L)).thenReturn(current);
+
+        ResponseEntity<?> response = sessionController.update(1L, sessionDto);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals("\"6\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void testUpdate_InvalidId_ReturnsBadRequest() throws Exception {
+        mockMvc().perform(put("/api/session/abc").contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
@@ -124,52 +350,138 @@ class SessionControllerTest {
         when(sessionService.getById(1L)).thenReturn(session);
         doNothing().when(sessionService).delete(1L);
 
-        ResponseEntity<?> response = sessionController.save("1");
+        ResponseEntity<?> response = sessionController.save(1L);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
     }
 
     @Test
-    void testSave_InvalidId_ReturnsBadRequest() {
-        ResponseEntity<?> response = sessionController.save("abc");
-
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    void testSave_InvalidId_ReturnsBadRequest() throws Exception {
+        mockMvc().perform(delete("/api/session/abc")).andExpect(status().isBadRequest());
     }
 
     @Test
     void testParticipate_ValidIds_ReturnsOk() {
         doNothing().when(sessionService).participate(1L, 2L);
 
-        ResponseEntity<?> response = sessionController.participate("1", "2");
+        ResponseEntity<?> response = sessionController.participate(1L, 2L);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
     }
 
     @Test
-    void testParticipate_InvalidIds_ReturnsBadRequest() {
-        ResponseEntity<?> response = sessionController.participate("abc", "def");
-
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    void testParticipate_InvalidIds_ReturnsBadRequest() throws Exception {
+        mockMvc().perform(post("/api/session/abc/participate/def")).andExpect(status().isBadRequest());
     }
 
     @Test
     void testNoLongerParticipate_ValidIds_ReturnsOk() {
         doNothing().when(sessionService).noLongerParticipate(1L, 2L);
 
-        ResponseEntity<?> response = sessionController.noLongerParticipate("1", "2");
+        ResponseEntity<?> response = sessionController.noLongerParticipate(1L, 2L);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+    }
+
+    @Test
+    void testNoLongerParticipate_InvalidIds_ReturnsBadRequest() throws Exception {
+        mockMvc().perform(delete("/api/session/abc/participate/def")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testParticipate_UnknownSession_ReturnsProblemNotFound() throws Exception {
+        doThrow(new NotFoundException()).when(sessionService).participate(1L, 2L);
+
+        mockMvc().perform(post("/api/session/1/participate/2"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.status").value(404));
+    }
+
+    @Test
+    void testParticipate_AlreadyParticipating_ReturnsProblemBadRequest() throws Exception {
+        doThrow(new BadRequestException()).when(sessionService).participate(1L, 2L);
+
+        mockMvc().perform(post("/api/session/1/participate/2"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.title").value("Bad Request"));
+    }
+
+    private SessionController patchController() {
+        // Le patch a besoin d'un vrai ObjectMapper et d'un vrai Validator
+        return new SessionController(sessionService, sessionMapper, userMapper, new ObjectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator());
+    }
+
+    private SessionDto currentDto() {
+        return new SessionDto(1L, "Yoga", new Date(), 60, 1L, "Description", List.of(2L, 3L), 4L, null, null);
+    }
+
+    @Test
+    void testPatch_Description_LeavesRosterUntouched() throws Exception {
+        Session session = new Session();
+        session.setId(1L);
+        Session changes = new Session();
+
+        when(sessionService.getById(1L)).thenReturn(session);
+        when(sessionMapper.toDto(session)).thenReturn(currentDto());
+        when(sessionMapper.toEntityWithoutUsers(any())).thenReturn(changes);
+        when(sessionService.update(1L, changes)).thenReturn(session);
+
+        ResponseEntity<?> response = patchController().patch(1L,
+                new ObjectMapper().readTree("{\"description\": \"New description\"}"));
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(sessionMapper).toEntityWithoutUsers(argThat(dto ->
+                dto.getDescription().equals("New description") && dto.getName().equals("Yoga")));
+        verify(sessionMapper, never()).toEntity(any(SessionDto.class));
     }
 
     @Test
-    void testNoLongerParticipate_InvalidIds_ReturnsBadRequest() {
-        ResponseEntity<?> response = sessionController.noLongerParticipate("abc", "def");
+    void testPatch_Users_ResolvesRoster() throws Exception {
+        Session session = new Session();
+        session.setId(1L);
+        Session changes = new Session();
+
+        when(sessionService.getById(1L)).thenReturn(session);
+        when(sessionMapper.toDto(session)).thenReturn(currentDto());
+        when(sessionMapper.toEntity(any(SessionDto.class))).thenReturn(changes);
+        when(sessionService.update(1L, changes)).thenReturn(session);
+
+        ResponseEntity<?> response = patchController().patch(1L, new ObjectMapper().readTree("{\"users\": [5]}"));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(sessionMapper).toEntity(argThat((SessionDto dto) -> dto.getUsers().equals(List.of(5L))));
+    }
+
+    @Test
+    void testPatch_InvalidValue_ReturnsBadRequest() throws Exception {
+        Session session = new Session();
+        session.setId(1L);
+
+        when(sessionService.getById(1L)).thenReturn(session);
+        when(sessionMapper.toDto(session)).thenReturn(currentDto());
+
+        // En JSON Merge Patch, null supprime la valeur : la description obligatoire devient invalide
+        ResponseEntity<?> response = patchController().patch(1L, new ObjectMapper().readTree("{\"description\": null}"));
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(sessionService, never()).update(any(), any());
     }
-    
-  
 
-    
-    
+    @Test
+    void testPatch_NotFound_ReturnsNotFound() throws Exception {
+        when(sessionService.getById(1L)).thenReturn(null);
+
+        ResponseEntity<?> response = patchController().patch(1L, new ObjectMapper().readTree("{}"));
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        assertNull(response.getBody());
+    }
+
+    private MockMvc mockMvc() {
+        // Les identifiants non numériques sont routés vers MalformedIdController, les autres convertis au binding
+        return MockMvcBuilders.standaloneSetup(sessionController, new MalformedIdController()).setControllerAdvice(new RequestErrorAdvice()).build();
+    }
 }
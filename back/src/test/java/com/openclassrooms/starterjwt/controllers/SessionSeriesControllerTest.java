@@ -0,0 +1,120 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.dto.SessionSeriesDto;
+import com.openclassrooms.starterjwt.mapper.SessionSeriesMapper;
+import com.openclassrooms.starterjwt.models.SessionSeries;
+import com.openclassrooms.starterjwt.services.SessionSeriesService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class SessionSeriesControllerTest {
+
+    @Mock
+    private SessionSeriesService sessionSeriesService;
+
+    @Mock
+    private SessionSeriesMapper sessionSeriesMapper;
+
+    @InjectMocks
+    private SessionSeriesController sessionSeriesController;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testFindById_ValidId_ReturnsOk() {
+        SessionSeries series = new SessionSeries();
+        SessionSeriesDto seriesDto = new SessionSeriesDto();
+
+        when(sessionSeriesService.getById(1L)).thenReturn(series);
+        when(sessionSeriesMapper.toDto(series)).thenReturn(seriesDto);
+
+        ResponseEntity<?> response = sessionSeriesController.findById(1L);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(seriesDto, response.getBody());
+    }
+
+    @Test
+    void testFindById_NotFound_ReturnsNotFound() {
+        when(sessionSeriesService.getById(1L)).thenReturn(null);
+
+        ResponseEntity<?> response = sessionSeriesController.findById(1L);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void testFindById_InvalidId_ReturnsBadRequest() throws Exception {
+        mockMvc().perform(get("/api/series/abc")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testCreate_ReturnsOk() {
+        SessionSeriesDto seriesDto = new SessionSeriesDto();
+        SessionSeries series = new SessionSeries();
+
+        when(sessionSeriesMapper.toEntity(seriesDto)).thenReturn(series);
+        when(sessionSeriesService.create(series)).thenReturn(series);
+        when(sessionSeriesMapper.toDto(series)).thenReturn(seriesDto);
+
+        ResponseEntity<?> response = sessionSeriesController.create(seriesDto);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(seriesDto, response.getBody());
+    }
+
+    @Test
+    void testCreate_InvalidRule_ReturnsBadRequest() {
+        SessionSeriesDto seriesDto = new SessionSeriesDto();
+        SessionSeries series = new SessionSeries();
+
+        when(sessionSeriesMapper.toEntity(seriesDto)).thenReturn(series);
+        when(sessionSeriesService.create(series)).thenThrow(new IllegalArgumentException("FREQ is required"));
+
+        ResponseEntity<?> response = sessionSeriesController.create(seriesDto);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void testUpdate_ValidId_ReturnsOk() {
+        SessionSeriesDto seriesDto = new SessionSeriesDto();
+        SessionSeries series = new SessionSeries();
+
+        when(sessionSeriesMapper.toEntity(seriesDto)).thenReturn(series);
+        when(sessionSeriesService.update(1L, series)).thenReturn(series);
+        when(sessionSeriesMapper.toDto(series)).thenReturn(seriesDto);
+
+        ResponseEntity<?> response = sessionSeriesController.update(1L, seriesDto);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(seriesDto, response.getBody());
+    }
+
+    @Test
+    void testUpdate_InvalidId_ReturnsBadRequest() throws Exception {
+        mockMvc().perform(put("/api/series/abc").contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private MockMvc mockMvc() {
+        // Les identifiants non numériques sont routés vers MalformedIdController, les autres convertis au binding
+        return MockMvcBuilders.standaloneSetup(sessionSeriesController, new MalformedIdController()).setControllerAdvice(new RequestErrorAdvice()).build();
+    }
+}
@@ -3,6 +3,8 @@ package com.openclassrooms.starterjwt.controllers;
 import com.openclassrooms.starterjwt.dto.TeacherDto;
 import com.openclassrooms.starterjwt.mapper.TeacherMapper;
 import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.payload.response.TeacherAvailabilityResponse;
+import com.openclassrooms.starterjwt.services.TeacherScheduleIndex;
 import com.openclassrooms.starterjwt.services.TeacherService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,10 +13,15 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
@@ -26,6 +33,9 @@ class TeacherControllerTest {
     @Mock
     private TeacherMapper teacherMapper;
 
+    @Mock
+    private TeacherScheduleIndex scheduleIndex;
+
     @InjectMocks
     private TeacherController teacherController;
 
@@ -42,24 +52,22 @@ class TeacherControllerTest {
         when(teacherService.findById(1L)).thenReturn(teacher);
         when(teacherMapper.toDto(teacher)).thenReturn(teacherDto);
 
-        ResponseEntity<?> response = teacherController.findById("1");
+        ResponseEntity<?> response = teacherController.findById(1L);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(teacherDto, response.getBody());
     }
 
     @Test
-    void testFindById_InvalidId_ReturnsBadRequest() {
-        ResponseEntity<?> response = teacherController.findById("abc");
-
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    void testFindById_InvalidId_ReturnsBadRequest() throws Exception {
+        mockMvc().perform(get("/api/teacher/abc")).andExpect(status().isBadRequest());
     }
 
     @Test
     void testFindById_NotFound_ReturnsNotFound() {
         when(teacherService.findById(1L)).thenReturn(null);
 
-        ResponseEntity<?> response = teacherController.findById("1");
+        ResponseEntity<?> response = teacherController.findById(1L);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     }
@@ -77,4 +85,48 @@ class TeacherControllerTest {
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(teacherDtos, response.getBody());
     }
+
+    @Test
+    void testAvailability_SplitsRangeIntoBusyAndFree() {
+        when(teacherService.findById(1L)).thenReturn(new Teacher().setId(1L));
+        // Une séance de 10h à 11h dans la plage 9h-12h
+        when(scheduleIndex.busy(1L, 9 * 3_600_000L, 12 * 3_600_000L))
+                .thenReturn(Collections.singletonList(new TeacherScheduleIndex.Slot(5L, 1L, 10 * 3_600_000L, 11 * 3_600_000L)));
+
+        ResponseEntity<?> response = teacherController.availability(1L, new Date(9 * 3_600_000L), new Date(12 * 3_600_000L));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        TeacherAvailabilityResponse availability = (TeacherAvailabilityResponse) response.getBody();
+        assertEquals(1, availability.getBusy().size());
+        assertEquals(5L, availability.getBusy().get(0).getSessionId());
+        assertEquals(2, availability.getFree().size());
+        assertEquals(new Date(9 * 3_600_000L), availability.getFree().get(0).getStart());
+        assertEquals(new Date(10 * 3_600_000L), availability.getFree().get(0).getEnd());
+        assertEquals(new Date(11 * 3_600_000L), availability.getFree().get(1).getStart());
+        assertEquals(new Date(12 * 3_600_000L), availability.getFree().get(1).getEnd());
+    }
+
+    @Test
+    void testAvailability_RangeTooLong_ReturnsBadRequest() {
+        when(teacherService.findById(1L)).thenReturn(new Teacher().setId(1L));
+
+        ResponseEntity<?> response = teacherController.availability(1L, new Date(0L), new Date(60L * 24 * 3_600_000L));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(scheduleIndex);
+    }
+
+    @Test
+    void testAvailability_UnknownTeacher_ReturnsNotFound() {
+        when(teacherService.findById(1L)).thenReturn(null);
+
+        ResponseEntity<?> response = teacherController.availability(1L, null, null);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    private MockMvc mockMvc() {
+        // Les identifiants non numériques sont routés vers MalformedIdController, les autres convertis au binding
+        return MockMvcBuilders.standaloneSetup(teacherController, new MalformedIdController()).setControllerAdvice(new RequestErrorAdvice()).build();
+    }
 }
@@ -3,6 +3,13 @@ package com.openclassrooms.starterjwt.controllers;
 import com.openclassrooms.starterjwt.dto.UserDto;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.request.BulkDeleteRequest;
+import com.openclassrooms.starterjwt.payload.request.BulkSignupRequest;
+import com.openclassrooms.starterjwt.payload.request.SignupRequest;
+import com.openclassrooms.starterjwt.payload.response.BulkSignupResponse;
+import com.openclassrooms.starterjwt.services.RegistrationService;
+import com.openclassrooms.starterjwt.payload.response.BulkDeleteResponse;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,13 +18,20 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.RejectedExecutionException;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
@@ -32,6 +46,9 @@ class UserControllerTest {
     @Mock
     private UserDetails userDetails;
 
+    @Mock
+    private RegistrationService registrationService;
+
     @InjectMocks
     private UserController userController;
 
@@ -48,24 +65,22 @@ class UserControllerTest {
         when(userService.findById(1L)).thenReturn(user);
         when(userMapper.toDto(user)).thenReturn(userDto);
 
-        ResponseEntity<?> response = userController.findById("1");
+        ResponseEntity<?> response = userController.findById(1L);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(userDto, response.getBody());
     }
 
     @Test
-    void testFindById_InvalidId_ReturnsBadRequest() {
-        ResponseEntity<?> response = userController.findById("abc");
-
-        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    void testFindById_InvalidId_ReturnsBadRequest() throws Exception {
+        mockMvc().perform(get("/api/user/abc")).andExpect(status().isBadRequest());
     }
 
     @Test
     void testFindById_NotFound_ReturnsNotFound() {
         when(userService.findById(4L)).thenReturn(null);
 
-        ResponseEntity<?> response = userController.findById("4");
+        ResponseEntity<?> response = userController.findById(4L);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     }
@@ -92,7 +107,7 @@ class UserControllerTest {
         SecurityContextHolder.getContext().setAuthentication(authentication);  // Simuler l'authentification avec cet utilisateur
 
         // Appeler la méthode du contrôleur
-        ResponseEntity<?> response = userController.delete("3");
+        ResponseEntity<?> response = userController.delete(3L);
 
         // Vérifier que la réponse est bien OK (200)
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -106,7 +121,7 @@ class UserControllerTest {
     void testDelete_NotFound_ReturnsNotFound() {
         when(userService.findById(5L)).thenReturn(null);
 
-        ResponseEntity<?> response = userController.delete("5");
+        ResponseEntity<?> response = userController.delete(5L);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     }
@@ -125,7 +140,7 @@ class UserControllerTest {
         when(userService.findById(1L)).thenReturn(user);
 
         // Effectuer la suppression
-        ResponseEntity<?> response = userController.delete("1");
+        ResponseEntity<?> response = userController.delete(1L);
 
         // Vérifier que la réponse est 401 Unauthorized
         assertEquals(401, response.getStatusCodeValue());
@@ -133,24 +148,123 @@ class UserControllerTest {
     */
     
     @Test
-    void testDelete_InvalidIdFormat() {
+    void testDelete_InvalidIdFormat() throws Exception {
         // Simuler un utilisateur authentifié
         UserDetails userDetails = mock(UserDetails.class);
         when(userDetails.getUsername()).thenReturn("user@example.com");
 
         SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(userDetails, null));
 
-        // Simuler une entrée invalide pour l'ID (non numérique)
-        String invalidId = "abc"; // ID non numérique
+        // ID non numérique : rejeté au binding, le contrôleur n'est pas appelé
+        mockMvc().perform(delete("/api/user/abc")).andExpect(status().isBadRequest());
+        verifyNoInteractions(userService);
+    }
+
+    
+
+
+    @Test
+    void testDeleteAll_Admin_ReturnsOk() {
+        UserDetailsImpl admin = new UserDetailsImpl(1L, "yoga@studio.com", "Admin", "Admin", true, "password");
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(admin, null));
+
+        BulkDeleteRequest request = new BulkDeleteRequest();
+        request.setIds(Arrays.asList(2L, 3L));
+        BulkDeleteResponse result = new BulkDeleteResponse(2, 2, 1, 1);
+        when(userService.deleteAll(request.getIds())).thenReturn(result);
+
+        ResponseEntity<?> response = userController.deleteAll(request);
 
-        // Appeler la méthode delete avec un ID non valide
-        ResponseEntity<?> response = userController.delete(invalidId);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(result, response.getBody());
+    }
+
+    @Test
+    void testImportAll_Admin_ReturnsOk() {
+        UserDetailsImpl admin = new UserDetailsImpl(1L, "yoga@studio.com", "Admin", "Admin", true, "password");
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(admin, null));
+
+        SignupRequest signup = new SignupRequest();
+        signup.setEmail("member@studio.com");
+        signup.setFirstName("Member");
+        signup.setLastName("Member");
+        signup.setPassword("secret!1");
+        BulkSignupRequest request = new BulkSignupRequest();
+        request.setUsers(Collections.singletonList(signup));
+        BulkSignupResponse result = new BulkSignupResponse(1, 1, Collections.emptyList());
+        when(registrationService.importAll(anyList())).thenReturn(result);
+
+        ResponseEntity<?> response = userController.importAll(request);
 
-        // Vérifier que la réponse renvoyée est 400 Bad Request
-        assertEquals(400, response.getStatusCodeValue());
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(result, response.getBody());
+        verify(registrationService).importAll(argThat(users -> users.size() == 1
+                && "member@studio.com".equals(users.get(0).getEmail()) && !users.get(0).isAdmin()));
     }
 
-    
+    @Test
+    void testImportAll_HashingPoolSaturated_ReturnsServiceUnavailable() {
+        UserDetailsImpl admin = new UserDetailsImpl(1L, "yoga@studio.com", "Admin", "Admin", true, "password");
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(admin, null));
+        BulkSignupRequest request = new BulkSignupRequest();
+        request.setUsers(Collections.emptyList());
+        when(registrationService.importAll(anyList())).thenThrow(new RejectedExecutionException("saturated"));
+
+        ResponseEntity<?> response = userController.importAll(request);
 
+        // Une saturation du pool de hachage est passagère : 503 plutôt que 500
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+    }
+
+    @Test
+    void testImportAll_NotAdmin_ReturnsForbidden() {
+        UserDetailsImpl user = new UserDetailsImpl(2L, "user@studio.com", "User", "User", false, "password");
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null));
 
+        ResponseEntity<?> response = userController.importAll(new BulkSignupRequest());
+
+        assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+        verifyNoInteractions(registrationService);
+    }
+
+    @Test
+    void testRevokeTokens_Admin_ReturnsOk() {
+        UserDetailsImpl admin = new UserDetailsImpl(1L, "yoga@studio.com", "Admin", "Admin", true, "password");
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(admin, null));
+
+        ResponseEntity<?> response = userController.revokeTokens(2L);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(userService).revokeTokens(2L);
+    }
+
+    @Test
+    void testRevokeTokens_NotAdmin_ReturnsForbidden() {
+        UserDetailsImpl user = new UserDetailsImpl(2L, "user@studio.com", "User", "User", false, "password");
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null));
+
+        ResponseEntity<?> response = userController.revokeTokens(2L);
+
+        assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+        verify(userService, never()).revokeTokens(any());
+    }
+
+    @Test
+    void testDeleteAll_NotAdmin_ReturnsForbidden() {
+        UserDetailsImpl user = new UserDetailsImpl(2L, "user@example.com", "User", "User", false, "password");
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null));
+
+        BulkDeleteRequest request = new BulkDeleteRequest();
+        request.setIds(Arrays.asList(2L, 3L));
+
+        ResponseEntity<?> response = userController.deleteAll(request);
+
+        assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+        verify(userService, never()).deleteAll(any());
+    }
+
+    private MockMvc mockMvc() {
+        // Les identifiants non numériques sont routés vers MalformedIdController, les autres convertis au binding
+        return MockMvcBuilders.standaloneSetup(userController, new MalformedIdController()).setControllerAdvice(new RequestErrorAdvice()).build();
+    }
 }
@@ -0,0 +1,134 @@
+package com.openclassrooms.starterjwt.datasource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class ReplicaRoutingDataSourceTest {
+
+  private EmbeddedDatabase primary;
+  private EmbeddedDatabase replica;
+  private MutableClock clock;
+  private ReadYourWritesStickiness stickiness;
+  private JdbcTemplate jdbcTemplate;
+  private DataSourceTransactionManager transactionManager;
+
+  @BeforeEach
+  void setUp() {
+    // Deux bases H2 embarquées jouent le rôle de la primaire et du réplica
+    primary = database("primary");
+    replica = database("replica");
+    clock = new MutableClock();
+    stickiness = new ReadYourWritesStickiness(5000, clock);
+
+    DataSource routing = ReplicaDataSourceConfig.routingDataSource(primary, replica, stickiness);
+    jdbcTemplate = new JdbcTemplate(routing);
+    transactionManager = new DataSourceTransactionManager(routing);
+
+    SecurityContextHolder.getContext().setAuthentication(
+        new UsernamePasswordAuthenticationToken("yoga@studio.com", null));
+  }
+
+  @AfterEach
+  void tearDown() {
+    SecurityContextHolder.clearContext();
+    primary.shutdown();
+    replica.shutdown();
+  }
+
+  private static EmbeddedDatabase database(String name) {
+    EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+        .setType(EmbeddedDatabaseType.H2)
+        .setName(name + System.nanoTime())
+        .build();
+    new JdbcTemplate(database).execute("CREATE TABLE NODE (name VARCHAR(10))");
+    new JdbcTemplate(database).update("INSERT INTO NODE VALUES (?)", name);
+    return database;
+  }
+
+  private String node(boolean readOnly) {
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    transactionTemplate.setReadOnly(readOnly);
+    return transactionTemplate.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM NODE", String.class));
+  }
+
+  @Test
+  void testReadOnlyTransactionGoesToReplica() {
+    assertEquals("replica", node(true));
+  }
+
+  @Test
+  void testReadWriteTransactionGoesToPrimary() {
+    assertEquals("primary", node(false));
+  }
+
+  @Test
+  void testNoTransactionGoesToPrimary() {
+    assertEquals("primary", jdbcTemplate.queryForObject("SELECT name FROM NODE", String.class));
+  }
+
+  @Test
+  void testReadsStickToPrimaryAfterWrite() {
+    stickiness.markWrite();
+
+    assertEquals("primary", node(true));
+
+    // Passé la fenêtre, les lectures repartent sur le réplica
+    clock.advance(5001);
+    assertEquals("replica", node(true));
+  }
+
+  @Test
+  void testStickinessIsPerUser() {
+    stickiness.markWrite();
+
+    SecurityContextHolder.getContext().setAuthentication(
+        new UsernamePasswordAuthenticationToken("other@studio.com", null));
+
+    assertEquals("replica", node(true));
+  }
+
+  private static class MutableClock extends Clock {
+    private long millis = 1_000_000L;
+
+    void advance(long delta) {
+      millis += delta;
+    }
+
+    @Override
+    public long millis() {
+      return millis;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneOffset getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(java.time.ZoneId zone) {
+      return this;
+    }
+  }
+}
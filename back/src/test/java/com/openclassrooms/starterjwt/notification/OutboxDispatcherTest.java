@@ -0,0 +1,157 @@
+package com.openclassrooms.starterjwt.notification;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.openclassrooms.starterjwt.models.OutboxMessage;
+import com.openclassrooms.starterjwt.repository.OutboxRepository;
+
+class OutboxDispatcherTest {
+
+    @Mock
+    private OutboxRepository outboxRepository;
+
+    @Mock
+    private NotificationSender notificationSender;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private OutboxDispatcher outboxDispatcher;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionTemplate.execute(ArgumentMatchers.<TransactionCallback<Object>>any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        outboxDispatcher.setBatchSize(2);
+    }
+
+    @Test
+    void testDispatchDrainsFullBatchesThenStops() throws Exception {
+        OutboxMessage first = message(1L);
+        OutboxMessage second = message(2L);
+        OutboxMessage third = message(3L);
+        when(outboxRepository.claimDue(any(), eq(2)))
+                .thenReturn(Arrays.asList(first, second))
+                .thenReturn(Collections.singletonList(third));
+
+        outboxDispatcher.dispatchDue();
+
+        // Un lot complet déclenche immédiatement le lot suivant, un lot incomplet termine la passe
+        verify(outboxRepository, times(2)).claimDue(any(), eq(2));
+        verify(notificationSender).send(first);
+        verify(notificationSender).send(third);
+        // Chaque message envoyé est supprimé seul, dans sa propre transaction
+        verify(outboxRepository).deleteMessage(3L);
+        verify(transactionTemplate, times(2 + 3)).execute(ArgumentMatchers.<TransactionCallback<Object>>any());
+        assertEquals(3, outboxDispatcher.getDispatched());
+    }
+
+    @Test
+    void testFailedMessageIsRetriedLaterWithBackoff() throws Exception {
+        OutboxMessage message = message(1L).setAttempts(2);
+        when(outboxRepository.claimDue(any(), eq(2))).thenReturn(Collections.singletonList(message));
+        doThrow(new IllegalStateException("smtp down")).when(notificationSender).send(message);
+        outboxDispatcher.setRetryDelayMs(1000);
+
+        long before = System.currentTimeMillis();
+        outboxDispatcher.dispatchDue();
+
+        verify(outboxRepository, never()).deleteMessage(1L);
+        verify(outboxRepository).reschedule(eq(1L), eq(3), any());
+        assertEquals(3, message.getAttempts());
+        // 3e échec : 1000 ms << 2
+        assertTrue(message.getAvailableAt().getTime() >= before + 4000);
+        assertEquals(1, outboxDispatcher.getFailed());
+    }
+
+    @Test
+    void testMessageIsParkedAfterMaxAttempts() throws Exception {
+        OutboxMessage message = message(1L).setAttempts(7);
+        when(outboxRepository.claimDue(any(), eq(2))).thenReturn(Collections.singletonList(message));
+        doThrow(new IllegalStateException("smtp down")).when(notificationSender).send(message);
+
+        outboxDispatcher.dispatchDue();
+
+        assertEquals(8, message.getAttempts());
+        assertNull(message.getAvailableAt());
+        verify(outboxRepository).reschedule(1L, 8, null);
+    }
+
+    @Test
+    void testMessagesAreLeasedAndSentOutsideTheClaimingTransaction() throws Exception {
+        OutboxMessage message = message(1L);
+        when(outboxRepository.claimDue(any(), eq(2))).thenReturn(Collections.singletonList(message));
+        AtomicBoolean inTransaction = new AtomicBoolean();
+        doAnswer(invocation -> {
+            inTransaction.set(true);
+            try {
+                return invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null);
+            } finally {
+                inTransaction.set(false);
+            }
+        }).when(transactionTemplate).execute(ArgumentMatchers.<TransactionCallback<Object>>any());
+        doAnswer(invocation -> {
+            assertFalse(inTransaction.get());
+            return null;
+        }).when(notificationSender).send(message);
+        outboxDispatcher.setLeaseMs(60000);
+
+        long before = System.currentTimeMillis();
+        outboxDispatcher.dispatchDue();
+
+        // Le bail repousse le message : une autre instance le reprend si celle-ci tombe pendant l'envoi
+        assertTrue(message.getAvailableAt().getTime() >= before + 60000);
+        verify(notificationSender).send(message);
+        verify(outboxRepository).deleteMessage(1L);
+    }
+
+    @Test
+    void testCountersArePublishedAsMetrics() {
+        when(outboxRepository.claimDue(any(), eq(2))).thenReturn(Collections.singletonList(message(1L)));
+        MeterRegistry registry = new SimpleMeterRegistry();
+        outboxDispatcher.bindTo(registry);
+
+        outboxDispatcher.dispatchDue();
+
+        assertEquals(1.0, registry.get("outbox.messages.dispatched").functionCounter().count());
+        assertEquals(0.0, registry.get("outbox.messages.failed").functionCounter().count());
+    }
+
+    @Test
+    void testStubSenderReceivesEveryMessage() {
+        List<OutboxMessage> sent = new ArrayList<>();
+        OutboxDispatcher dispatcher = new OutboxDispatcher(outboxRepository, sent::add, transactionTemplate);
+        when(outboxRepository.claimDue(any(), eq(100))).thenReturn(Arrays.asList(message(1L), message(2L)));
+
+        dispatcher.dispatchDue();
+
+        assertEquals(2, sent.size());
+        assertEquals(2, dispatcher.getDispatched());
+    }
+
+    private static OutboxMessage message(Long id) {
+        return new OutboxMessage().setId(id).setEventType("SESSION_UPDATED").setAggregateId(10L).setPayload("{}");
+    }
+}
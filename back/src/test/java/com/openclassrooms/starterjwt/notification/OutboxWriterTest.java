@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.notification;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.models.OutboxMessage;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.OutboxRepository;
+
+class OutboxWriterTest {
+
+    @Mock
+    private OutboxRepository outboxRepository;
+
+    private OutboxWriter outboxWriter;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        outboxWriter = new OutboxWriter(outboxRepository, new ObjectMapper());
+    }
+
+    @Test
+    void testDeletedSessionKeepsItsParticipantsInThePayload() throws Exception {
+        Session session = new Session().setId(5L).setName("Yoga")
+                .setUsers(Arrays.asList(new User().setId(1L), new User().setId(2L)));
+
+        outboxWriter.onSessionChanged(new SessionChangedEvent(SessionChangedEvent.Type.SESSION_DELETED, session));
+
+        ArgumentCaptor<OutboxMessage> saved = ArgumentCaptor.forClass(OutboxMessage.class);
+        verify(outboxRepository).save(saved.capture());
+        assertEquals("SESSION_DELETED", saved.getValue().getEventType());
+        assertEquals(5L, saved.getValue().getAggregateId());
+        assertNotNull(saved.getValue().getAvailableAt());
+
+        JsonNode payload = new ObjectMapper().readTree(saved.getValue().getPayload());
+        assertEquals("Yoga", payload.get("name").asText());
+        assertEquals(2, payload.get("participantIds").size());
+    }
+
+    @Test
+    void testCreatedSessionWritesNoMessage() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(OutboxWriter.class, () -> outboxWriter);
+            context.refresh();
+
+            // Pas encore de participant à prévenir : l'événement n'atteint pas l'outbox
+            context.publishEvent(new SessionChangedEvent(SessionChangedEvent.Type.SESSION_CREATED, new Session().setId(5L)));
+            context.publishEvent(new SessionChangedEvent(SessionChangedEvent.Type.SESSION_UPDATED, new Session().setId(5L)));
+        }
+
+        verify(outboxRepository, times(1)).save(any(OutboxMessage.class));
+    }
+}
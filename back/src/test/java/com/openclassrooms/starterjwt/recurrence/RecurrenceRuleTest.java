@@ -0,0 +1,72 @@
+package com.openclassrooms.starterjwt.recurrence;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecurrenceRuleTest {
+
+    // Lundi 5 octobre 2026, 18h
+    private final LocalDateTime start = LocalDateTime.of(2026, 10, 5, 18, 0);
+
+    @Test
+    void testParse() {
+        RecurrenceRule rule = RecurrenceRule.parse("RRULE:FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,TH;COUNT=6");
+
+        assertEquals(RecurrenceRule.Frequency.WEEKLY, rule.getFrequency());
+        assertEquals(2, rule.getInterval());
+        assertTrue(rule.getByDay().contains(DayOfWeek.THURSDAY));
+        assertEquals(6, rule.getCount());
+    }
+
+    @Test
+    void testParseInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("INTERVAL=2"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=YEARLY"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=WEEKLY;BYDAY=XX"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=DAILY;BYDAY=MO"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=WEEKLY;UNTIL=tomorrow"));
+    }
+
+    @Test
+    void testWeeklyOnStartDay() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY");
+
+        List<LocalDateTime> occurrences = rule.occurrences(start, start, start.plusWeeks(3));
+
+        assertEquals(List.of(start, start.plusWeeks(1), start.plusWeeks(2)), occurrences);
+    }
+
+    @Test
+    void testWeeklyByDayWithInterval() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE");
+
+        List<LocalDateTime> occurrences = rule.occurrences(start, start, start.plusWeeks(4));
+
+        assertEquals(List.of(start, start.plusDays(2), start.plusWeeks(2), start.plusWeeks(2).plusDays(2)), occurrences);
+    }
+
+    @Test
+    void testCountIsCountedFromStart() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY;COUNT=5");
+
+        // Les occurrences déjà générées comptent dans COUNT
+        List<LocalDateTime> occurrences = rule.occurrences(start, start.plusDays(3), start.plusDays(30));
+
+        assertEquals(List.of(start.plusDays(3), start.plusDays(4)), occurrences);
+    }
+
+    @Test
+    void testUntil() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;UNTIL=20261019");
+
+        List<LocalDateTime> occurrences = rule.occurrences(start, start, start.plusWeeks(10));
+
+        assertEquals(List.of(start, start.plusWeeks(1), start.plusWeeks(2)), occurrences);
+    }
+}
@@ -3,7 +3,8 @@ package com.openclassrooms.starterjwt.security.jwt;
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 
-import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import com.openclassrooms.starterjwt.security.services.TokenVersionRegistry;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -13,12 +14,11 @@ import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.util.StringUtils;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import java.io.IOException;
+import java.util.Date;
 
 class AuthTokenFilterTest {
 
@@ -26,7 +26,10 @@ class AuthTokenFilterTest {
     private JwtUtils jwtUtils;
 
     @Mock
-    private UserDetailsServiceImpl userDetailsService;
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Mock
+    private TokenRevocationStore tokenRevocationStore;
 
     @Mock
     private FilterChain filterChain;
@@ -49,24 +52,18 @@ class AuthTokenFilterTest {
     void testDoFilterInternal_ValidJwt() throws ServletException, IOException {
         // Arrange
         String jwt = "valid.jwt.token";
-        String username = "testUser";
 
         request.addHeader("Authorization", "Bearer " + jwt);
 
-        when(jwtUtils.validateJwtToken(jwt)).thenReturn(true);
-        when(jwtUtils.getUserNameFromJwtToken(jwt)).thenReturn(username);
-
-        UserDetails userDetails = mock(UserDetails.class);
-        when(userDetails.getAuthorities()).thenReturn(null);
-        when(userDetailsService.loadUserByUsername(username)).thenReturn(userDetails);
+        UserDetailsImpl userDetails = UserDetailsImpl.builder().id(1L).username("testUser").admin(false).tokenVersion(0).build();
+        when(jwtUtils.getUserDetailsFromJwtToken(jwt)).thenReturn(userDetails);
+        when(tokenVersionRegistry.isCurrent(1L, 0)).thenReturn(true);
 
         // Act
         authTokenFilter.doFilterInternal(request, response, filterChain);
 
-        // Assert
-        verify(jwtUtils).validateJwtToken(jwt);
-        verify(jwtUtils).getUserNameFromJwtToken(jwt);
-        verify(userDetailsService).loadUserByUsername(username);
+        // Assert : le principal est construit à partir des claims, sans accès à la base
+        verify(jwtUtils).getUserDetailsFromJwtToken(jwt);
 
         assertNotNull(SecurityContextHolder.getContext().getAuthentication());
         assertTrue(SecurityContextHolder.getContext().getAuthentication() instanceof UsernamePasswordAuthenticationToken);
@@ -83,14 +80,14 @@ class AuthTokenFilterTest {
 
         request.addHeader("Authorization", "Bearer " + jwt);
 
-        when(jwtUtils.validateJwtToken(jwt)).thenReturn(false);
+        when(jwtUtils.getUserDetailsFromJwtToken(jwt)).thenReturn(null);
 
         // Act
         authTokenFilter.doFilterInternal(request, response, filterChain);
 
         // Assert
-        verify(jwtUtils).validateJwtToken(jwt);
-        verifyNoInteractions(userDetailsService);
+        verify(jwtUtils).getUserDetailsFromJwtToken(jwt);
+        verifyNoInteractions(tokenVersionRegistry);
 
         assertNull(SecurityContextHolder.getContext().getAuthentication());
 
@@ -98,13 +95,54 @@ class AuthTokenFilterTest {
         verify(filterChain).doFilter(request, response);
     }
 
+    @Test
+    void testDoFilterInternal_RevokedTokenVersion() throws ServletException, IOException {
+        // Arrange
+        String jwt = "revoked.jwt.token";
+
+        request.addHeader("Authorization", "Bearer " + jwt);
+
+        UserDetailsImpl userDetails = UserDetailsImpl.builder().id(1L).username("testUser").tokenVersion(0).build();
+        when(jwtUtils.getUserDetailsFromJwtToken(jwt)).thenReturn(userDetails);
+        when(tokenVersionRegistry.isCurrent(1L, 0)).thenReturn(false);
+
+        // Act
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Assert
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(filterChain).doFilter(request, response);
+    }
+
+    @Test
+    void testDoFilterInternal_RevokedTokenId() throws ServletException, IOException {
+        // Arrange : jeton révoqué par une déconnexion
+        String jwt = "logged.out.token";
+        Date expiration = new Date(System.currentTimeMillis() + 60000);
+
+        request.addHeader("Authorization", "Bearer " + jwt);
+
+        UserDetailsImpl userDetails = UserDetailsImpl.builder().id(1L).username("testUser").tokenVersion(0)
+                .tokenId("jti-1").tokenExpiration(expiration).build();
+        when(jwtUtils.getUserDetailsFromJwtToken(jwt)).thenReturn(userDetails);
+        when(tokenVersionRegistry.isCurrent(1L, 0)).thenReturn(true);
+        when(tokenRevocationStore.isRevoked("jti-1", expiration.getTime())).thenReturn(true);
+
+        // Act
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Assert
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(filterChain).doFilter(request, response);
+    }
+
     @Test
     void testDoFilterInternal_NoJwt() throws ServletException, IOException {
         // Act
         authTokenFilter.doFilterInternal(request, response, filterChain);
 
         // Assert
-        verifyNoInteractions(jwtUtils, userDetailsService);
+        verifyNoInteractions(jwtUtils, tokenVersionRegistry);
         assertNull(SecurityContextHolder.getContext().getAuthentication());
 
         // Ensure the filter chain proceeds
@@ -115,17 +153,16 @@ class AuthTokenFilterTest {
     void testDoFilterInternal_ExceptionHandling() throws ServletException, IOException {
         // Arrange
         String jwt = "valid.jwt.token";
-        String username = "testUser";
 
         request.addHeader("Authorization", "Bearer " + jwt);
 
-        when(jwtUtils.validateJwtToken(jwt)).thenThrow(new RuntimeException("Test exception"));
+        when(jwtUtils.getUserDetailsFromJwtToken(jwt)).thenThrow(new RuntimeException("Test exception"));
 
         // Act
         authTokenFilter.doFilterInternal(request, response, filterChain);
 
         // Assert
-        verify(jwtUtils).validateJwtToken(jwt);
+        verify(jwtUtils).getUserDetailsFromJwtToken(jwt);
 
         // Ensure no authentication is set
         assertNull(SecurityContextHolder.getContext().getAuthentication());
@@ -0,0 +1,95 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+
+class JwtKeyStoreTest {
+
+  private SingleConnectionDataSource dataSource;
+
+  private JdbcTemplate jdbcTemplate;
+
+  private JwtKeyStore store;
+
+  @BeforeEach
+  void setUp() {
+    // Base H2 en mode MySQL : ON DUPLICATE KEY UPDATE et le vrai mapping des colonnes
+    dataSource = new SingleConnectionDataSource("jdbc:h2:mem:keys" + System.nanoTime() + ";MODE=MySQL", "sa", "", true);
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    jdbcTemplate.execute("CREATE TABLE JWT_KEYS (kid VARCHAR(32) PRIMARY KEY, algorithm VARCHAR(8) NOT NULL, "
+        + "private_key VARCHAR(4096) NOT NULL, public_key VARCHAR(1024), created_at BIGINT NOT NULL, retire_at BIGINT)");
+    store = new JwtKeyStore(jdbcTemplate, "encryption-secret");
+  }
+
+  @AfterEach
+  void tearDown() {
+    // La base en mémoire disparaît avec sa dernière connexion
+    dataSource.destroy();
+  }
+
+  @Test
+  void testInsertLoadRotateAndDeleteRetired() {
+    long now = System.currentTimeMillis();
+    JwtKeyRing.SigningKey first = JwtKeyRing.generateKey(SignatureAlgorithm.HS512);
+    store.insert(first);
+    // Une seconde insertion de la même clé (autre instance) ne fait rien
+    store.insert(first);
+
+    List<JwtKeyRing.SigningKey> loaded = store.load(SignatureAlgorithm.HS512, now);
+    assertEquals(1, loaded.size());
+    // Une clé active (retire_at NULL) ne doit pas être lue comme retirée à l'epoch
+    assertFalse(loaded.get(0).isRetired(now));
+    JwtKeyRing ring = JwtKeyRing.restore(SignatureAlgorithm.HS512, loaded, null);
+    assertEquals(first.getKid(), ring.current().getKid());
+    assertNotNull(ring.forKid(first.getKid()));
+    assertArrayEquals(first.getSigningKey().getEncoded(), ring.forKid(first.getKid()).getSigningKey().getEncoded());
+
+    JwtKeyRing.SigningKey second = JwtKeyRing.generateKey(SignatureAlgorithm.HS512);
+    long retireAt = now + 60_000;
+    assertTrue(store.rotate(first, second, retireAt));
+    // La première clé est déjà remplacée : une rotation concurrente n'écrit rien
+    assertFalse(store.rotate(first, JwtKeyRing.generateKey(SignatureAlgorithm.HS512), retireAt));
+
+    loaded = store.load(SignatureAlgorithm.HS512, now);
+    assertEquals(2, loaded.size());
+    for (JwtKeyRing.SigningKey key : loaded) {
+      assertFalse(key.isRetired(now));
+      assertEquals(key.getKid().equals(first.getKid()), key.isRetired(retireAt));
+    }
+    assertTrue(store.load(SignatureAlgorithm.HS256, now).isEmpty());
+
+    assertEquals(Collections.singletonList(second.getKid()),
+        store.load(SignatureAlgorithm.HS512, retireAt).stream().map(JwtKeyRing.SigningKey::getKid)
+            .collect(Collectors.toList()));
+    assertEquals(0, store.deleteRetired(now));
+    assertEquals(1, store.deleteRetired(retireAt));
+    assertEquals(1, store.load(SignatureAlgorithm.HS512, now).size());
+  }
+
+  @Test
+  void testAsymmetricKeyRoundTrip() {
+    JwtKeyRing.SigningKey key = JwtKeyRing.generateKey(SignatureAlgorithm.ES256);
+    store.insert(key);
+
+    JwtKeyRing.SigningKey loaded = store.load(SignatureAlgorithm.ES256, System.currentTimeMillis()).get(0);
+
+    assertEquals(key.getKid(), loaded.getKid());
+    assertArrayEquals(key.getSigningKey().getEncoded(), loaded.getSigningKey().getEncoded());
+    assertArrayEquals(key.getVerificationKey().getEncoded(), loaded.getVerificationKey().getEncoded());
+    // La clé privée est chiffrée en base
+    String stored = jdbcTemplate.queryForObject("SELECT private_key FROM JWT_KEYS", String.class);
+    assertFalse(stored.contains(Base64.getEncoder().encodeToString(key.getSigningKey().getEncoded())));
+  }
+}
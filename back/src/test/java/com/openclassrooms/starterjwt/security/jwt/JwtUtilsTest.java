@@ -5,6 +5,7 @@ import static org.mockito.Mockito.*;
 
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.security.Keys;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -12,7 +13,19 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.security.core.Authentication;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 class JwtUtilsTest {
 
@@ -61,6 +74,211 @@ class JwtUtilsTest {
         assertEquals("marcel.ayme@gmail.com", username);
     }
 
+    @Test
+    void testGetUserDetailsFromJwtToken() {
+        // Arrange : les claims portent tout le principal
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(7L).username("marcel.ayme@gmail.com").firstName("Marcel").lastName("Aymé")
+                .admin(true).password("lajumentverte").tokenVersion(3).build();
+        String token = jwtUtils.generateJwtToken(userDetails);
+
+        // Act
+        UserDetailsImpl principal = jwtUtils.getUserDetailsFromJwtToken(token);
+
+        // Assert
+        assertNotNull(principal);
+        assertEquals(7L, principal.getId());
+        assertEquals("marcel.ayme@gmail.com", principal.getUsername());
+        assertEquals("Marcel", principal.getFirstName());
+        assertEquals("Aymé", principal.getLastName());
+        assertTrue(principal.getAdmin());
+        assertEquals(3, principal.getTokenVersion());
+        assertNull(principal.getPassword());
+        assertNotNull(principal.getTokenId());
+        assertNotNull(principal.getTokenExpiration());
+    }
+
+    @Test
+    void testGetUserDetailsFromJwtToken_InvalidToken() {
+        assertNull(jwtUtils.getUserDetailsFromJwtToken("this.is.not.a.valid.token"));
+        assertNull(jwtUtils.getUserDetailsFromJwtToken(""));
+    }
+
+    @Test
+    void testGetUserDetailsFromJwtToken_RecordsVerificationEvents() throws Exception {
+        String token = jwtUtils.generateJwtToken(UserDetailsImpl.builder().id(7L).username("marcel.ayme@gmail.com").tokenVersion(0).build());
+        Path dump = Files.createTempFile("jwt", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("savasana.TokenVerification");
+            recording.start();
+            jwtUtils.getUserDetailsFromJwtToken(token);
+            jwtUtils.getUserDetailsFromJwtToken("this.is.not.a.valid.token");
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        // Un événement par vérification, avec l'id de l'utilisateur quand le token est valide
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        Files.delete(dump);
+        assertEquals(2, events.size());
+        assertTrue(events.get(0).getBoolean("valid"));
+        assertEquals(7L, events.get(0).getLong("userId"));
+        assertFalse(events.get(1).getBoolean("valid"));
+        assertEquals(0L, events.get(1).getLong("userId"));
+    }
+
+    @Test
+    void testAsymmetricAlgorithmsRoundTrip() {
+        UserDetailsImpl userDetails = UserDetailsImpl.builder().id(7L).username("marcel.ayme@gmail.com").tokenVersion(0).build();
+
+        for (String algorithm : new String[] {"RS256", "ES256"}) {
+            jwtUtils.setJwtAlgorithm(algorithm);
+            String token = jwtUtils.generateJwtToken(userDetails);
+
+            // Le kid de l'en-tête désigne la clé courante
+            String kid = Jwts.parserBuilder().setSigningKey(jwtUtils.getKeyRing().current().getVerificationKey())
+                    .build().parseClaimsJws(token).getHeader().getKeyId();
+            assertEquals(jwtUtils.getKeyRing().current().getKid(), kid);
+            assertEquals(7L, jwtUtils.getUserDetailsFromJwtToken(token).getId());
+            assertEquals(1, jwtUtils.getKeyRing().jwks().size());
+        }
+    }
+
+    @Test
+    void testRotatedKeyStillVerifiesUntilRetired() {
+        jwtUtils.setJwtAlgorithm("ES256");
+        UserDetailsImpl userDetails = UserDetailsImpl.builder().id(7L).username("marcel.ayme@gmail.com").build();
+        String oldToken = jwtUtils.generateJwtToken(userDetails);
+        long now = System.currentTimeMillis();
+
+        jwtUtils.getKeyRing().rotate(now, jwtExpirationMs);
+        String newToken = jwtUtils.generateJwtToken(userDetails);
+
+        assertTrue(jwtUtils.validateJwtToken(oldToken));
+        assertTrue(jwtUtils.validateJwtToken(newToken));
+        assertEquals(2, jwtUtils.getKeyRing().jwks().size());
+
+        // Une fois la rétention écoulée, l'ancienne clé est retirée
+        jwtUtils.getKeyRing().rotate(now + jwtExpirationMs, jwtExpirationMs);
+        assertFalse(jwtUtils.validateJwtToken(oldToken));
+        assertTrue(jwtUtils.validateJwtToken(newToken));
+    }
+
+    @Test
+    void testShortSecretIsStretchedToAlgorithmLength() {
+        // "testSecret" est trop court pour HS512 : la clé dérivée fait 512 bits
+        assertEquals(64, jwtUtils.getKeyRing().current().getSigningKey().getEncoded().length);
+    }
+
+    @Test
+    void testHmacKeyIsNeverPublished() {
+        assertTrue(jwtUtils.getKeyRing().jwks().isEmpty());
+    }
+
+    @Test
+    void testGeneratedKeysAreSharedThroughTheKeyStore() throws InterruptedException {
+        InMemoryKeyStore store = new InMemoryKeyStore();
+        JwtUtils first = sharedInstance(store);
+        JwtUtils second = sharedInstance(store);
+        UserDetailsImpl userDetails = UserDetailsImpl.builder().id(7L).username("marcel.ayme@gmail.com").build();
+
+        // Les deux instances signent avec la même clé générée
+        assertEquals(first.getKeyRing().current().getKid(), second.getKeyRing().current().getKid());
+        assertTrue(second.validateJwtToken(first.generateJwtToken(userDetails)));
+
+        // Après rotation par la première, la seconde recharge la nouvelle clé au premier jeton qui la porte
+        first.setJwtKeyRotationMs(1);
+        Thread.sleep(2);
+        first.rotateKeysIfDue();
+        String rotated = first.generateJwtToken(userDetails);
+        assertNotEquals(second.getKeyRing().current().getKid(), first.getKeyRing().current().getKid());
+        assertTrue(second.validateJwtToken(rotated));
+
+        // Une nouvelle instance (redémarrage) reprend la clé courante de la table
+        assertEquals(first.getKeyRing().current().getKid(), sharedInstance(store).getKeyRing().current().getKid());
+    }
+
+    @Test
+    void testKeyRotatedElsewhereBecomesCurrentWithoutNewRotation() throws InterruptedException {
+        InMemoryKeyStore store = new InMemoryKeyStore();
+        JwtUtils first = sharedInstance(store);
+        JwtUtils second = sharedInstance(store);
+        first.setJwtKeyRotationMs(1);
+        second.setJwtKeyRotationMs(jwtExpirationMs);
+
+        // La clé initiale doit avoir au moins une milliseconde
+        Thread.sleep(2);
+        first.rotateKeysIfDue();
+        second.rotateKeysIfDue();
+
+        // La seconde adopte la clé de la première au lieu d'en générer une autre
+        assertEquals(first.getKeyRing().current().getKid(), second.getKeyRing().current().getKid());
+        assertEquals(2, store.rows.size());
+        assertEquals(2, second.getKeyRing().size());
+    }
+
+    private JwtUtils sharedInstance(InMemoryKeyStore store) {
+        JwtUtils instance = new JwtUtils();
+        instance.setJwtSecret(jwtSecret);
+        instance.setJwtExpirationMs(jwtExpirationMs);
+        instance.setJwtAlgorithm("ES256");
+        instance.setJwtKeyRefreshMs(0);
+        instance.setKeyStore(store);
+        instance.init();
+        return instance;
+    }
+
+    /**
+     * Table JWT_KEYS en mémoire : les clés y sont chiffrées puis relues comme depuis la base.
+     */
+    private static class InMemoryKeyStore extends JwtKeyStore {
+        private final Map<String, String[]> rows = new LinkedHashMap<>();
+        private final Map<String, Long> retireAt = new HashMap<>();
+        private final Map<String, Long> createdAt = new HashMap<>();
+
+        InMemoryKeyStore() {
+            super(null, "keyEncryptionSecret");
+        }
+
+        @Override
+        public List<JwtKeyRing.SigningKey> load(SignatureAlgorithm algorithm, long now) {
+            List<JwtKeyRing.SigningKey> keys = new ArrayList<>();
+            rows.forEach((kid, row) -> {
+                Long retire = retireAt.get(kid);
+                if (retire == null || retire > now) {
+                    keys.add(JwtKeyRing.decode(algorithm, open(row[0]), Base64.getDecoder().decode(row[1]),
+                            createdAt.get(kid), retire));
+                }
+            });
+            return keys;
+        }
+
+        @Override
+        public void insert(JwtKeyRing.SigningKey key) {
+            if (!rows.containsKey(key.getKid())) {
+                rows.put(key.getKid(), new String[] {seal(key.getSigningKey().getEncoded()),
+                        Base64.getEncoder().encodeToString(key.getVerificationKey().getEncoded())});
+                createdAt.put(key.getKid(), key.getCreatedAt());
+            }
+        }
+
+        @Override
+        public boolean rotate(JwtKeyRing.SigningKey previous, JwtKeyRing.SigningKey next, long retire) {
+            if (retireAt.containsKey(previous.getKid())) {
+                return false;
+            }
+            retireAt.put(previous.getKid(), retire);
+            insert(next);
+            return true;
+        }
+
+        @Override
+        public int deleteRetired(long now) {
+            return 0;
+        }
+    }
+
     @Test
     void testValidateJwtToken_ValidToken() {
         // Arrange
@@ -97,7 +315,7 @@ class JwtUtilsTest {
                 .setSubject("marcel.ayme@gmail.com")
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(SignatureAlgorithm.HS512, "wrongSecret")
+                .signWith(Keys.secretKeyFor(SignatureAlgorithm.HS512)) // clé assez longue mais différente
                 .compact();
 
         // Act
@@ -0,0 +1,112 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TokenRevocationStoreTest {
+
+  private static final long HOUR = 3_600_000L;
+
+  private MutableClock clock;
+
+  private TokenRevocationStore store;
+
+  @BeforeEach
+  void setUp() {
+    clock = new MutableClock();
+    store = new TokenRevocationStore(24 * HOUR, HOUR, 1024, clock);
+  }
+
+  @Test
+  void testRevokedTokenIsDetected() {
+    long expiresAt = clock.millis() + 2 * HOUR;
+
+    store.revoke("jti-1", expiresAt);
+
+    assertTrue(store.isRevoked("jti-1", expiresAt));
+    assertFalse(store.isRevoked("jti-2", expiresAt));
+    assertFalse(store.isRevoked(null, expiresAt));
+  }
+
+  @Test
+  void testManyRevocationsWithoutFalsePositives() {
+    long expiresAt = clock.millis() + HOUR;
+    for (int i = 0; i < 100; i++) {
+      store.revoke("revoked-" + i, expiresAt);
+    }
+
+    for (int i = 0; i < 100; i++) {
+      assertTrue(store.isRevoked("revoked-" + i, expiresAt));
+      // Un faux positif du filtre de Bloom est toujours levé par le set du bucket
+      assertFalse(store.isRevoked("active-" + i, expiresAt));
+    }
+  }
+
+  @Test
+  void testExpiredBucketsAreDropped() {
+    store.revoke("short", clock.millis() + HOUR / 2);
+    store.revoke("long", clock.millis() + 10 * HOUR);
+    assertEquals(2, store.bucketCount());
+
+    clock.advance(2 * HOUR);
+    store.purgeExpired();
+
+    assertEquals(1, store.bucketCount());
+    assertTrue(store.isRevoked("long", 1_000_000L + 10 * HOUR));
+  }
+
+  @Test
+  void testAlreadyExpiredTokenIsIgnored() {
+    store.revoke("old", clock.millis() - 1);
+
+    assertEquals(0, store.bucketCount());
+  }
+
+  @Test
+  void testExpiryBeyondWindowIsStillRevoked() {
+    // Jeton émis avant la réduction de jwtExpirationMs : il dépasse la fenêtre des buckets
+    long expiresAt = clock.millis() + 48 * HOUR;
+    store.revoke("jti", expiresAt);
+
+    assertTrue(store.isRevoked("jti", expiresAt));
+    assertFalse(store.isRevoked("other", expiresAt));
+
+    clock.advance(49 * HOUR);
+    store.purgeExpired();
+    assertFalse(store.isRevoked("jti", expiresAt));
+  }
+
+  private static class MutableClock extends Clock {
+    private long millis = 1_000_000L;
+
+    void advance(long delta) {
+      millis += delta;
+    }
+
+    @Override
+    public long millis() {
+      return millis;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneOffset getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(java.time.ZoneId zone) {
+      return this;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.Arrays;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+class RateLimitFilterTest {
+
+  private RateLimitFilter filter;
+
+  @BeforeEach
+  void setUp() {
+    RateLimitProperties.Rule participate = new RateLimitProperties.Rule();
+    participate.setPattern("/api/session/*/participate/*");
+    participate.setLimit(1);
+    participate.setPeriodMs(60000);
+
+    RateLimitProperties.Rule api = new RateLimitProperties.Rule();
+    api.setPattern("/api/**");
+    api.setMethod("GET");
+    api.setLimit(2);
+    api.setPeriodMs(60000);
+
+    RateLimitProperties properties = new RateLimitProperties();
+    properties.setRules(Arrays.asList(participate, api));
+    filter = new RateLimitFilter(properties, new RateLimiter(Clock.systemUTC()));
+  }
+
+  @AfterEach
+  void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void testHeadersAndRejection() throws ServletException, IOException {
+    MockHttpServletResponse first = send("GET", "/api/session", "10.0.0.1");
+    assertEquals(200, first.getStatus());
+    assertEquals("2", first.getHeader("RateLimit-Limit"));
+    assertEquals("1", first.getHeader("RateLimit-Remaining"));
+    assertNotNull(first.getHeader("RateLimit-Reset"));
+
+    send("GET", "/api/session", "10.0.0.1");
+    MockHttpServletResponse rejected = send("GET", "/api/session", "10.0.0.1");
+    assertEquals(429, rejected.getStatus());
+    assertEquals("0", rejected.getHeader("RateLimit-Remaining"));
+    assertEquals("30", rejected.getHeader("Retry-After"));
+
+    // Une autre adresse n'est pas concernée
+    assertEquals(200, send("GET", "/api/session", "10.0.0.2").getStatus());
+  }
+
+  @Test
+  void testStricterRuleForParticipate() throws ServletException, IOException {
+    assertEquals(200, send("POST", "/api/session/1/participate/2", "10.0.0.1").getStatus());
+    assertEquals(429, send("POST", "/api/session/1/participate/2", "10.0.0.1").getStatus());
+
+    // Les routes sans règle ne sont pas limitées
+    MockHttpServletResponse unmatched = send("POST", "/api/session", "10.0.0.1");
+    assertEquals(200, unmatched.getStatus());
+    assertNull(unmatched.getHeader("RateLimit-Limit"));
+  }
+
+  @Test
+  void testAuthenticatedUserKeyedById() throws ServletException, IOException {
+    UserDetailsImpl user = UserDetailsImpl.builder().id(7L).username("yoga@studio.com").build();
+    SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null));
+
+    send("GET", "/api/session", "10.0.0.1");
+    send("GET", "/api/session", "10.0.0.2");
+
+    // Changer d'adresse ne remet pas le quota à zéro pour un utilisateur authentifié
+    assertEquals(429, send("GET", "/api/session", "10.0.0.3").getStatus());
+  }
+
+  private MockHttpServletResponse send(String method, String path, String address) throws ServletException, IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+    request.setServletPath(path);
+    request.setRemoteAddr(address);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    FilterChain chain = mock(FilterChain.class);
+
+    filter.doFilter(request, response, chain);
+
+    if (response.getStatus() == 200) {
+      verify(chain).doFilter(request, response);
+    } else {
+      verifyNoInteractions(chain);
+    }
+    return response;
+  }
+}
@@ -0,0 +1,48 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+class RateLimitPropertiesTest {
+
+  private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+      .withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+      .withUserConfiguration(Config.class);
+
+  @Test
+  void testValidRulesAreBound() {
+    contextRunner
+        .withPropertyValues("oc.app.rate-limit.rules[0].pattern=/api/**", "oc.app.rate-limit.rules[0].limit=10")
+        .run(context -> {
+          assertNull(context.getStartupFailure());
+          assertEquals(10, context.getBean(RateLimitProperties.class).getRules().get(0).getLimit());
+        });
+  }
+
+  @Test
+  void testZeroLimitFailsAtStartup() {
+    // Une limite nulle est refusée au démarrage plutôt qu'à la première requête
+    contextRunner
+        .withPropertyValues("oc.app.rate-limit.rules[0].pattern=/api/**", "oc.app.rate-limit.rules[0].limit=0")
+        .run(context -> assertNotNull(context.getStartupFailure()));
+  }
+
+  @Test
+  void testZeroPeriodFailsAtStartup() {
+    contextRunner
+        .withPropertyValues("oc.app.rate-limit.rules[0].pattern=/api/**", "oc.app.rate-limit.rules[0].limit=10",
+            "oc.app.rate-limit.rules[0].period-ms=0")
+        .run(context -> assertNotNull(context.getStartupFailure()));
+  }
+
+  @Configuration
+  @EnableConfigurationProperties(RateLimitProperties.class)
+  static class Config {
+  }
+}
@@ -0,0 +1,104 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RateLimiterTest {
+
+  private MutableClock clock;
+
+  private RateLimiter rateLimiter;
+
+  @BeforeEach
+  void setUp() {
+    clock = new MutableClock();
+    rateLimiter = new RateLimiter(clock);
+  }
+
+  @Test
+  void testBurstThenReject() {
+    for (int i = 0; i < 3; i++) {
+      RateLimiter.Decision decision = rateLimiter.acquire("client", 3, 3000);
+      assertTrue(decision.isAllowed());
+      assertEquals(2 - i, decision.getRemaining());
+    }
+
+    RateLimiter.Decision rejected = rateLimiter.acquire("client", 3, 3000);
+    assertFalse(rejected.isAllowed());
+    assertEquals(0, rejected.getRemaining());
+    assertEquals(1000, rejected.getRetryAfterMs());
+    assertEquals(3000, rejected.getResetMs());
+
+    // Un autre client dispose de son propre seau
+    assertTrue(rateLimiter.acquire("other", 3, 3000).isAllowed());
+  }
+
+  @Test
+  void testNonPositiveLimitOrPeriodIsRejected() {
+    assertThrows(IllegalArgumentException.class, () -> rateLimiter.acquire("client", 0, 3000));
+    assertThrows(IllegalArgumentException.class, () -> rateLimiter.acquire("client", 3, 0));
+  }
+
+  @Test
+  void testLimitAboveOneRequestPerMicrosecond() {
+    // L'intervalle arrondi à zéro provoquait une division par zéro
+    assertTrue(rateLimiter.acquire("client", 5000, 1).isAllowed());
+  }
+
+  @Test
+  void testRefill() {
+    for (int i = 0; i < 3; i++) {
+      rateLimiter.acquire("client", 3, 3000);
+    }
+
+    clock.advance(1000);
+    assertTrue(rateLimiter.acquire("client", 3, 3000).isAllowed());
+    assertFalse(rateLimiter.acquire("client", 3, 3000).isAllowed());
+  }
+
+  @Test
+  void testFullBucketsAreSwept() {
+    rateLimiter.acquire("a", 3, 3000);
+    rateLimiter.acquire("b", 3, 3000);
+    assertEquals(2, rateLimiter.size());
+
+    clock.advance(1000);
+    rateLimiter.sweep(clock.millis() * 1000);
+
+    assertEquals(0, rateLimiter.size());
+  }
+
+  private static class MutableClock extends Clock {
+    private long millis = 1_000_000L;
+
+    void advance(long delta) {
+      millis += delta;
+    }
+
+    @Override
+    public long millis() {
+      return millis;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneOffset getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(java.time.ZoneId zone) {
+      return this;
+    }
+  }
+}
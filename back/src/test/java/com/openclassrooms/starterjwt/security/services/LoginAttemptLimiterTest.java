@@ -0,0 +1,173 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LoginAttemptLimiterTest {
+
+    private static final long WINDOW = 60_000L;
+
+    private MutableClock clock;
+
+    private LoginAttemptLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock();
+        limiter = new LoginAttemptLimiter(3, 5, WINDOW, 6400, clock);
+    }
+
+    @Test
+    void testEmailLimit() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.acquire("yoga@studio.com", "10.0.0." + i));
+        }
+
+        // La casse de l'email ne permet pas de contourner la limite
+        long retryAfter = limiter.acquire("YOGA@studio.com", "10.0.0.9");
+        assertTrue(retryAfter > 0 && retryAfter <= WINDOW);
+        assertEquals(0, limiter.acquire("other@studio.com", "10.0.0.9"));
+    }
+
+    @Test
+    void testAddressLimit() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.acquire("user" + i + "@studio.com", "10.0.0.1"));
+        }
+
+        assertTrue(limiter.acquire("user9@studio.com", "10.0.0.1") > 0);
+        assertEquals(0, limiter.acquire("user9@studio.com", "10.0.0.2"));
+    }
+
+    @Test
+    void testSlidingWindow() {
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire("yoga@studio.com", "10.0.0.1");
+        }
+
+        // Au début de la fenêtre suivante, les tentatives précédentes comptent encore presque entièrement
+        clock.advance(WINDOW);
+        assertTrue(limiter.acquire("yoga@studio.com", "10.0.0.1") > 0);
+
+        // Aux deux tiers de la fenêtre, leur poids est retombé sous la limite
+        clock.advance(WINDOW * 2 / 3);
+        assertEquals(0, limiter.acquire("yoga@studio.com", "10.0.0.1"));
+
+        clock.advance(2 * WINDOW);
+        assertEquals(0, limiter.acquire("yoga@studio.com", "10.0.0.1"));
+    }
+
+    @Test
+    void testSuccessResetsEmailCounter() {
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire("yoga@studio.com", "10.0.0.1");
+        }
+
+        limiter.onSuccess("yoga@studio.com");
+
+        assertEquals(0, limiter.acquire("yoga@studio.com", "10.0.0.1"));
+    }
+
+    @Test
+    void testConcurrentAttemptsNeverExceedTheLimit() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Future<?>> attempts = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                String address = "10.0.1." + i;
+                attempts.add(executor.submit(() -> {
+                    start.await();
+                    if (limiter.acquire("yoga@studio.com", address) == 0) {
+                        accepted.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> attempt : attempts) {
+                attempt.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Vérification et enregistrement sont atomiques : exactement la limite passe
+        assertEquals(3, accepted.get());
+    }
+
+    @Test
+    void testSprayingNewKeysDoesNotResetAnActiveCounter() {
+        // Une seule entrée par stripe : le compteur de la victime occupe la sienne
+        LoginAttemptLimiter small = new LoginAttemptLimiter(3, 5, WINDOW, 64, clock);
+        assertEquals(0, small.acquire("victim@studio.com", "10.0.0.1"));
+        assertEquals(0, small.acquire("victim@studio.com", "10.0.0.1"));
+
+        for (int i = 0; i < 10_000; i++) {
+            small.acquire("user" + i + "@studio.com", "10.1." + (i >> 8) + "." + (i & 0xFF));
+        }
+
+        // Le compteur de la victime n'a pas été évincé : une seule tentative reste
+        assertEquals(0, small.acquire("victim@studio.com", "10.0.0.1"));
+        assertTrue(small.acquire("victim@studio.com", "10.0.0.1") > 0);
+        // Une nouvelle clé d'un stripe saturé partage le compteur de débordement, déjà épuisé
+        assertTrue(small.acquire("late@studio.com", "10.0.0.1") > 0);
+
+        // Une fois les fenêtres passées, les compteurs expirés laissent la place aux nouvelles clés
+        clock.advance(2 * WINDOW);
+        assertEquals(0, small.acquire("new@studio.com", "10.2.0.1"));
+        assertTrue(small.trackedKeys() <= 64);
+    }
+
+    @Test
+    void testMemoryIsBounded() {
+        for (int i = 0; i < 100_000; i++) {
+            limiter.acquire("user" + i + "@studio.com", "10.0." + (i >> 8) + "." + (i & 0xFF));
+        }
+
+        assertTrue(limiter.trackedKeys() <= 6400);
+    }
+
+    private static class MutableClock extends Clock {
+        private long millis = 1_000_000L * 60;
+
+        void advance(long delta) {
+            millis += delta;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+    }
+}
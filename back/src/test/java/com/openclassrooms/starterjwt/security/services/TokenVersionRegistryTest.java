@@ -0,0 +1,141 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+class TokenVersionRegistryTest {
+    private static final long TTL = 5000;
+
+    private static final int MAX_ENTRIES = 640;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private MutableClock clock;
+
+    private TokenVersionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        clock = new MutableClock();
+        registry = new TokenVersionRegistry(userRepository, TTL, MAX_ENTRIES, clock);
+    }
+
+    @Test
+    void testUnknownUser_ReadsStoredVersion() {
+        when(userRepository.findTokenVersion(1L)).thenReturn(Optional.of(0));
+
+        assertTrue(registry.isCurrent(1L, 0));
+        // La version lue reste en cache pendant le TTL
+        assertTrue(registry.isCurrent(1L, 0));
+        verify(userRepository, times(1)).findTokenVersion(1L);
+    }
+
+    @Test
+    void testDeletedUser_IsRejected() {
+        // L'utilisateur n'existe plus en base : ses jetons ne sont plus acceptés
+        when(userRepository.findTokenVersion(1L)).thenReturn(Optional.empty());
+
+        assertFalse(registry.isCurrent(1L, 0));
+        assertFalse(registry.isCurrent(null, 0));
+    }
+
+    @Test
+    void testOlderVersionIsRejected() {
+        registry.record(1L, 2);
+
+        assertFalse(registry.isCurrent(1L, 1));
+        assertTrue(registry.isCurrent(1L, 2));
+
+        // Le minimum ne redescend jamais
+        registry.record(1L, 0);
+        assertFalse(registry.isCurrent(1L, 1));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void testRevokeAll() {
+        registry.record(1L, 0);
+        registry.revokeAll(1L);
+        when(userRepository.findTokenVersion(2L)).thenReturn(Optional.of(0));
+
+        assertFalse(registry.isCurrent(1L, 0));
+        assertTrue(registry.isCurrent(2L, 0));
+    }
+
+    @Test
+    void testRevocationByAnotherInstance_SeenAfterTtl() {
+        registry.record(1L, 0);
+        // Une autre instance a révoqué les jetons : la base porte la version 1
+        when(userRepository.findTokenVersion(1L)).thenReturn(Optional.of(1));
+
+        assertTrue(registry.isCurrent(1L, 0));
+        clock.advance(TTL);
+        assertFalse(registry.isCurrent(1L, 0));
+    }
+
+    @Test
+    void testCacheIsBounded() {
+        when(userRepository.findTokenVersion(anyLong())).thenReturn(Optional.of(0));
+
+        for (long userId = 1; userId <= 10_000; userId++) {
+            assertTrue(registry.isCurrent(userId, 0));
+        }
+
+        // Les utilisateurs inactifs sortent du cache : la mémoire ne suit pas la table USERS
+        assertTrue(registry.cachedUsers() <= MAX_ENTRIES);
+    }
+
+    @Test
+    void testDatabaseFailure_UsesStaleVersion() {
+        registry.record(1L, 1);
+        clock.advance(TTL);
+        when(userRepository.findTokenVersion(anyLong())).thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertTrue(registry.isCurrent(1L, 1));
+        // Sans version en cache, l'échec remonte et la requête n'est pas authentifiée
+        assertThrows(DataAccessResourceFailureException.class, () -> registry.isCurrent(2L, 0));
+    }
+
+    private static class MutableClock extends Clock {
+        private long millis = 1_000_000L * 60;
+
+        void advance(long delta) {
+            millis += delta;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+    }
+}
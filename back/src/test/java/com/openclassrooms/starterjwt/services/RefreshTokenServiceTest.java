@@ -0,0 +1,110 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.RefreshToken;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private RefreshTokenService refreshTokenService;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        user = new User("yoga@studio.com", "Admin", "Admin", "password", true);
+        user.setId(1L);
+        user.setTokenVersion(2);
+        when(userRepository.getById(1L)).thenReturn(user);
+    }
+
+    @Test
+    void testIssueStoresOnlyTheHash() {
+        String token = refreshTokenService.issue(1L, 2);
+
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        assertNotEquals(token, saved.getValue().getTokenHash());
+        assertEquals(RefreshTokenService.hash(token), saved.getValue().getTokenHash());
+        assertEquals(64, saved.getValue().getTokenHash().length());
+        assertEquals(2, saved.getValue().getTokenVersion());
+        assertTrue(saved.getValue().getExpiresAt().after(new Date()));
+    }
+
+    @Test
+    void testRotateIssuesNewToken() {
+        String hash = RefreshTokenService.hash("current");
+        when(refreshTokenRepository.findByTokenHash(hash)).thenReturn(Optional.of(stored(2, 60000)));
+        when(refreshTokenRepository.deleteByTokenHash(hash)).thenReturn(1);
+
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate("current");
+
+        assertNotNull(rotation);
+        assertSame(user, rotation.getUser());
+        assertNotEquals("current", rotation.getRefreshToken());
+        verify(refreshTokenRepository).save(any(RefreshToken.class));
+    }
+
+    @Test
+    void testRotateAlreadyConsumedToken() {
+        String hash = RefreshTokenService.hash("current");
+        when(refreshTokenRepository.findByTokenHash(hash)).thenReturn(Optional.of(stored(2, 60000)));
+        // Une requête concurrente a déjà consommé le jeton
+        when(refreshTokenRepository.deleteByTokenHash(hash)).thenReturn(0);
+
+        assertNull(refreshTokenService.rotate("current"));
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void testRotateExpiredOrRevokedToken() {
+        String hash = RefreshTokenService.hash("current");
+        when(refreshTokenRepository.deleteByTokenHash(hash)).thenReturn(1);
+
+        when(refreshTokenRepository.findByTokenHash(hash)).thenReturn(Optional.of(stored(2, -1000)));
+        assertNull(refreshTokenService.rotate("current"));
+
+        // Jeton émis avant une révocation forcée
+        when(refreshTokenRepository.findByTokenHash(hash)).thenReturn(Optional.of(stored(1, 60000)));
+        assertNull(refreshTokenService.rotate("current"));
+
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void testRotateUnknownToken() {
+        when(refreshTokenRepository.findByTokenHash(any())).thenReturn(Optional.empty());
+
+        assertNull(refreshTokenService.rotate("unknown"));
+        verify(refreshTokenRepository, never()).deleteByTokenHash(any());
+    }
+
+    private RefreshToken stored(int tokenVersion, long expiresInMs) {
+        return new RefreshToken()
+                .setUser(user)
+                .setTokenVersion(tokenVersion)
+                .setExpiresAt(new Date(System.currentTimeMillis() + expiresInMs));
+    }
+}
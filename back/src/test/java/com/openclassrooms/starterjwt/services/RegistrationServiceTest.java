@@ -0,0 +1,162 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.BulkSignupResponse;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RegistrationServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    private ExecutorService executor;
+
+    private RegistrationService registrationService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        executor = Executors.newFixedThreadPool(2);
+        registrationService = new RegistrationService(userRepository, jdbcTemplate, namedJdbcTemplate, passwordEncoder, executor);
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> "hash:" + invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testRegisterHashesOffThreadThenInsertsOnce() {
+        Thread caller = Thread.currentThread();
+        when(passwordEncoder.encode("secret!1")).thenAnswer(invocation -> {
+            assertNotSame(caller, Thread.currentThread());
+            return "hashed";
+        });
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        User saved = registrationService.register(new User("member@studio.com", "Member", "Member", "", false), "secret!1").join();
+
+        assertEquals("hashed", saved.getPassword());
+        verify(userRepository, times(1)).saveAndFlush(any(User.class));
+        verify(userRepository, never()).existsByEmail(any());
+    }
+
+    @Test
+    void testRegisterDuplicateEmail() {
+        when(userRepository.saveAndFlush(any(User.class))).thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+        when(userRepository.existsByEmail("yoga@studio.com")).thenReturn(true);
+
+        CompletionException error = assertThrows(CompletionException.class, () ->
+                registrationService.register(new User("yoga@studio.com", "Admin", "Admin", "", false), "secret!1").join());
+
+        assertTrue(error.getCause() instanceof DuplicateKeyException);
+    }
+
+    @Test
+    void testRegisterOtherConstraintFailure_IsNotReportedAsDuplicate() {
+        // Une autre contrainte (NOT NULL, longueur...) : l'email est libre, l'erreur d'origine remonte
+        DataIntegrityViolationException notNull = new DataIntegrityViolationException("Column 'last_name' cannot be null");
+        when(userRepository.saveAndFlush(any(User.class))).thenThrow(notNull);
+        when(userRepository.existsByEmail("member@studio.com")).thenReturn(false);
+
+        CompletionException error = assertThrows(CompletionException.class, () ->
+                registrationService.register(new User("member@studio.com", "Member", "Member", "", false), "secret!1").join());
+
+        assertSame(notNull, error.getCause());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportAllSkipsExistingAndDuplicatesBeforeHashing() {
+        registrationService.setImportBatchSize(2);
+        // Le premier lot contient un email déjà inscrit
+        when(namedJdbcTemplate.queryForList(eq(RegistrationService.SELECT_EXISTING_EMAILS), any(SqlParameterSource.class), eq(String.class)))
+                .thenReturn(Collections.singletonList("yoga@studio.com"), Collections.emptyList());
+        // Le pilote ne renvoie que SUCCESS_NO_INFO avec rewriteBatchedStatements
+        when(jdbcTemplate.batchUpdate(eq(RegistrationService.INSERT_USER), anyList())).thenAnswer(invocation -> {
+            int[] counts = new int[((List<Object[]>) invocation.getArgument(1)).size()];
+            Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+            return counts;
+        });
+        when(namedJdbcTemplate.queryForList(eq(RegistrationService.SELECT_PASSWORDS), any(SqlParameterSource.class)))
+                .thenReturn(Collections.singletonList(storedUser("a@studio.com", "hash:pw-2")));
+
+        List<User> users = Arrays.asList(
+                new User("yoga@studio.com", "Admin", "Admin", "pw-1", false),
+                new User("a@studio.com", "A", "A", "pw-2", false),
+                new User("a@studio.com", "A", "A", "pw-3", false));
+
+        BulkSignupResponse response = registrationService.importAll(users);
+
+        assertEquals(3, response.getRequested());
+        assertEquals(1, response.getCreated());
+        verify(passwordEncoder, never()).encode("pw-1");
+        verify(passwordEncoder, never()).encode("pw-3");
+        verify(passwordEncoder).encode("pw-2");
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(eq(RegistrationService.INSERT_USER), batches.capture());
+        assertEquals("hash:pw-2", batches.getValue().get(0)[3]);
+        assertEquals(Arrays.asList("yoga@studio.com", "a@studio.com"), response.getSkippedEmails());
+    }
+
+    @Test
+    void testImportAllReportsUsersRegisteredConcurrently() {
+        when(namedJdbcTemplate.queryForList(eq(RegistrationService.SELECT_EXISTING_EMAILS), any(SqlParameterSource.class), eq(String.class)))
+                .thenReturn(Collections.emptyList());
+        when(jdbcTemplate.batchUpdate(eq(RegistrationService.INSERT_USER), anyList())).thenReturn(
+                new int[] {Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO});
+        // b@studio.com a été inscrit par une autre requête entre la recherche et l'insertion
+        when(namedJdbcTemplate.queryForList(eq(RegistrationService.SELECT_PASSWORDS), any(SqlParameterSource.class)))
+                .thenReturn(Arrays.asList(storedUser("a@studio.com", "hash:pw-a"), storedUser("b@studio.com", "other-hash")));
+
+        BulkSignupResponse response = registrationService.importAll(Arrays.asList(
+                new User("a@studio.com", "A", "A", "pw-a", false),
+                new User("b@studio.com", "B", "B", "pw-b", false)));
+
+        assertEquals(1, response.getCreated());
+        assertEquals(Collections.singletonList("b@studio.com"), response.getSkippedEmails());
+    }
+
+    private static Map<String, Object> storedUser(String email, String password) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("email", email);
+        row.put("password", password);
+        return row;
+    }
+}
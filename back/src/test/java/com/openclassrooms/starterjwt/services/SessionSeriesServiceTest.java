@@ -0,0 +1,172 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.ScheduleConflictException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.SessionSeries;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionSeriesRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SessionSeriesServiceTest {
+
+    @Mock
+    private SessionSeriesRepository sessionSeriesRepository;
+
+    @Mock
+    private SessionRepository sessionRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private TeacherScheduleIndex scheduleIndex;
+
+    private SessionSeriesService sessionSeriesService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        scheduleIndex = new TeacherScheduleIndex(sessionRepository);
+        sessionSeriesService = new SessionSeriesService(sessionSeriesRepository, sessionRepository, jdbcTemplate, scheduleIndex);
+        when(sessionSeriesRepository.save(any(SessionSeries.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private static Date daysFromNow(int days) {
+        return Date.from(LocalDateTime.now().plusDays(days).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private SessionSeries series(String recurrence) {
+        return SessionSeries.builder()
+                .id(1L)
+                .name("Vinyasa")
+                .description("Weekly class")
+                .teacher(Teacher.builder().id(3L).build())
+                .start(daysFromNow(1))
+                .recurrence(recurrence)
+                .build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCreateMaterializesInBatches() {
+        sessionSeriesService.setHorizonDays(30);
+        sessionSeriesService.setBatchSize(10);
+
+        SessionSeries result = sessionSeriesService.create(series("FREQ=DAILY"));
+
+        // 29 ou 30 occurrences quotidiennes selon l'heure : 3 lots au maximum de 10 lignes
+        verify(jdbcTemplate, times(3)).batchUpdate(eq(SessionSeriesService.INSERT_OCCURRENCE), anyList());
+        assertTrue(result.getMaterializedUntil().after(daysFromNow(29)));
+    }
+
+    @Test
+    void testCreateRejectsInvalidRule() {
+        assertThrows(IllegalArgumentException.class, () -> sessionSeriesService.create(series("FREQ=HOURLY")));
+        verify(sessionSeriesRepository, never()).save(any());
+    }
+
+    @Test
+    void testExtendHorizonOnlyMaterializesNewOccurrences() {
+        sessionSeriesService.setHorizonDays(21);
+        SessionSeries series = series("FREQ=WEEKLY;COUNT=2");
+        series.setMaterializedUntil(daysFromNow(2));
+        when(sessionSeriesRepository.findByMaterializedUntilBefore(any())).thenReturn(List.of(series));
+
+        sessionSeriesService.extendHorizon();
+
+        // La première occurrence est déjà générée, seule la seconde est insérée
+        verify(jdbcTemplate).batchUpdate(eq(SessionSeriesService.INSERT_OCCURRENCE),
+                argThat((List<Object[]> rows) -> rows.size() == 1 && rows.get(0)[4].equals(1L)));
+        assertTrue(series.getMaterializedUntil().after(daysFromNow(20)));
+    }
+
+    @Test
+    void testUpdateRewritesFutureOccurrences() {
+        SessionSeries series = series("FREQ=WEEKLY");
+        Teacher teacher = Teacher.builder().id(4L).build();
+        SessionSeries changes = SessionSeries.builder().name("Hatha").description("New").teacher(teacher).build();
+        when(sessionSeriesRepository.findById(1L)).thenReturn(Optional.of(series));
+
+        SessionSeries result = sessionSeriesService.update(1L, changes);
+
+        assertEquals("Hatha", result.getName());
+        verify(sessionRepository).updateSeriesOccurrences(eq(1L), any(Date.class), eq("Hatha"), eq("New"), eq(teacher), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testMaterializeSkipsOccurrencesTheTeacherIsBusyFor() {
+        sessionSeriesService.setHorizonDays(21);
+        SessionSeries series = series("FREQ=WEEKLY;COUNT=3");
+        series.setMaterializedUntil(series.getStart());
+        Date second = Date.from(LocalDateTime.ofInstant(series.getStart().toInstant(), ZoneId.systemDefault())
+                .plusWeeks(1).atZone(ZoneId.systemDefault()).toInstant());
+        // Le professeur donne déjà une séance à l'heure de la deuxième occurrence
+        scheduleIndex.book(new Session().setId(50L).setTeacher(Teacher.builder().id(3L).build()).setDate(second).setDuration(60));
+        when(sessionRepository.findSeriesOccurrences(eq(1L), any(Date.class)))
+                .thenReturn(Collections.singletonList(new Object[] {60L, series.getStart(), 60}));
+
+        int written = sessionSeriesService.materialize(series, daysFromNow(21));
+
+        assertEquals(2, written);
+        verify(jdbcTemplate).batchUpdate(eq(SessionSeriesService.INSERT_OCCURRENCE),
+                argThat((List<Object[]> rows) -> rows.size() == 2
+                        && rows.stream().noneMatch(row -> ((Date) row[2]).getTime() == second.getTime())));
+        // Les occurrences écrites sont réservées dans l'index avant la fin du verrou
+        assertEquals(60L, scheduleIndex.findConflict(3L, series.getStart(), 60, null));
+    }
+
+    @Test
+    void testUpdateRejectsOccurrenceOverlappingTheNewTeacher() {
+        SessionSeries series = series("FREQ=WEEKLY");
+        Date occurrence = daysFromNow(7);
+        Teacher teacher = Teacher.builder().id(4L).build();
+        scheduleIndex.book(new Session().setId(50L).setTeacher(teacher).setDate(occurrence).setDuration(60));
+        when(sessionSeriesRepository.findById(1L)).thenReturn(Optional.of(series));
+        when(sessionRepository.findSeriesOccurrences(eq(1L), any(Date.class)))
+                .thenReturn(Collections.singletonList(new Object[] {60L, occurrence, 60}));
+
+        ScheduleConflictException e = assertThrows(ScheduleConflictException.class, () -> sessionSeriesService.update(1L,
+                SessionSeries.builder().name("Hatha").description("New").teacher(teacher).build()));
+
+        assertEquals(50L, e.getConflictingSessionId());
+        verify(sessionRepository, never()).updateSeriesOccurrences(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testUpdateMovesOccurrencesToTheNewTeacherSchedule() {
+        SessionSeries series = series("FREQ=WEEKLY");
+        Date occurrence = daysFromNow(7);
+        scheduleIndex.book(new Session().setId(60L).setTeacher(Teacher.builder().id(3L).build()).setDate(occurrence).setDuration(60));
+        when(sessionSeriesRepository.findById(1L)).thenReturn(Optional.of(series));
+        when(sessionRepository.findSeriesOccurrences(eq(1L), any(Date.class)))
+                .thenReturn(Collections.singletonList(new Object[] {60L, occurrence, 60}));
+
+        sessionSeriesService.update(1L, SessionSeries.builder().name("Hatha").description("New")
+                .teacher(Teacher.builder().id(4L).build()).build());
+
+        assertNull(scheduleIndex.findConflict(3L, occurrence, 60, null));
+        assertEquals(60L, scheduleIndex.findConflict(4L, occurrence, 60, null));
+    }
+
+    @Test
+    void testUpdateNotFound() {
+        when(sessionSeriesRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> sessionSeriesService.update(1L, new SessionSeries()));
+    }
+}
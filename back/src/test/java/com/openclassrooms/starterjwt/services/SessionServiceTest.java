@@ -3,26 +3,47 @@ package com.openclassrooms.starterjwt.services;
 import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import com.openclassrooms.starterjwt.audit.ParticipationEvent;
+import com.openclassrooms.starterjwt.datasource.ReadYourWritesStickiness;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.ScheduleConflictException;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.notification.SessionChangedEvent;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.services.SessionService;
 
 import org.junit.jupiter.api.BeforeEach;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 
 //import org.mockito.Mockito;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
 import static org.mockito.Mockito.*;
 // L'utilisation d'un mock de SessionRepository au lieu d'une instance réelle de SessionRepository présente plusieurs avantages dans les tests unitaires :
 // Isolation du test : L'objectif principal des tests unitaires est de tester la logique d'une méthode ou d'une classe de manière isolée, sans dépendre des autres composants du système. En utilisant un mock de SessionRepository, on peut s'assurer que le test se concentre uniquement sur le comportement de la classe SessionService, sans être influencé par la logique interne de SessionRepository.
@@ -42,16 +63,26 @@ class SessionServiceTest {
 	
 	@Mock
     private UserRepository userRepository;
+
+	@Mock
+    private ReadYourWritesStickiness stickiness;
+
+	@Mock
+    private ApplicationEventPublisher eventPublisher;
 	
 	@InjectMocks
     private SessionService sessionService;
 
+    // Index réel : le repository simulé ne renvoie aucun créneau au chargement
+    private TeacherScheduleIndex scheduleIndex;
+
     @BeforeEach
     void setUp() {
         //sessionRepository = mock(SessionRepository.class); remplacé par @Mock
         //userRepository = mock(UserRepository.class); remplacé par @Mock
     	MockitoAnnotations.openMocks(this);
-        sessionService = new SessionService(sessionRepository, userRepository);
+        scheduleIndex = new TeacherScheduleIndex(sessionRepository);
+        sessionService = new SessionService(sessionRepository, userRepository, stickiness, eventPublisher, scheduleIndex);
     }
 
     @Test
@@ -79,6 +110,9 @@ class SessionServiceTest {
         // permettant au développeur de voir quel test n'a pas réussi et pourquoi.
         
         verify(sessionRepository, times(1)).save(session);
+        // La création est publiée pour que le cumul de fréquentation recalcule ce jour-là
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof SessionChangedEvent
+                && ((SessionChangedEvent) event).getType() == SessionChangedEvent.Type.SESSION_CREATED));
         // Vérifie que la méthode `save()` du `sessionRepository` a été appelée exactement une fois avec l'objet `session`
         // comme argument. Cela confirme que la méthode `create()` du `SessionService` a bien utilisé le repository pour
         // sauvegarder la session, et que le comportement attendu a été respecté lors de l'appel du service.
@@ -110,6 +144,21 @@ class SessionServiceTest {
         verify(sessionRepository, times(1)).deleteById(sessionId);
     }
 
+    @Test
+    void testDeleteSession_PublishesChangeBeforeDeleting() {
+        Session session = new Session().setId(1L);
+        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
+
+        sessionService.delete(1L);
+
+        // La notification est écrite dans la même transaction, avant la suppression
+        InOrder inOrder = inOrder(eventPublisher, sessionRepository);
+        inOrder.verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof SessionChangedEvent
+                && ((SessionChangedEvent) event).getType() == SessionChangedEvent.Type.SESSION_DELETED
+                && ((SessionChangedEvent) event).getSession() == session));
+        inOrder.verify(sessionRepository).deleteById(1L);
+    }
+
     @Test
     void testFindAllSessions() {
         List<Session> sessions = new ArrayList<>();
@@ -149,15 +198,70 @@ class SessionServiceTest {
     @Test
     void testUpdateSession() {
         Long sessionId = 1L;
+        Session current = new Session();
+        current.setId(sessionId);
+        current.setVersion(3L);
+        current.setUsers(new ArrayList<>());
         Session session = new Session();
-        session.setId(sessionId);
-        when(sessionRepository.save(session)).thenReturn(session);
+        session.setName("Yoga");
+        session.setVersion(3L);
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(current));
+        when(sessionRepository.save(current)).thenReturn(current);
 
         Session result = sessionService.update(sessionId, session);
 
         assertNotNull(result);
         assertEquals(sessionId, result.getId());
-        verify(sessionRepository, times(1)).save(session);
+        assertEquals("Yoga", result.getName());
+        verify(sessionRepository, times(1)).save(current);
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof SessionChangedEvent
+                && ((SessionChangedEvent) event).getType() == SessionChangedEvent.Type.SESSION_UPDATED));
+    }
+
+    @Test
+    void testUpdateSessionStaleVersion() {
+        Long sessionId = 1L;
+        Session current = new Session();
+        current.setId(sessionId);
+        current.setVersion(4L);
+        Session session = new Session();
+        session.setVersion(3L);
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(current));
+
+        // Une version périmée ne doit jamais écraser les données courantes
+        ConflictException exception = assertThrows(ConflictException.class, () -> sessionService.update(sessionId, session));
+
+        assertEquals(current, exception.getCurrent());
+        verify(sessionRepository, never()).save(any());
+    }
+
+    @Test
+    void testUpdateSessionKeepsUnchangedRoster() {
+        Long sessionId = 1L;
+        User user = new User();
+        user.setId(2L);
+        List<User> roster = new ArrayList<>(List.of(user));
+        Session current = new Session();
+        current.setId(sessionId);
+        current.setUsers(roster);
+        User sameUser = new User();
+        sameUser.setId(2L);
+        Session session = new Session();
+        session.setUsers(List.of(sameUser));
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(current));
+        when(sessionRepository.save(current)).thenReturn(current);
+
+        sessionService.update(sessionId, session);
+
+        // La collection gérée par Hibernate n'est pas remplacée, la table PARTICIPATE n'est donc pas réécrite
+        assertSame(roster, current.getUsers());
+    }
+
+    @Test
+    void testUpdateSessionNotFound() {
+        when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> sessionService.update(1L, new Session()));
     }
 
     @Test
@@ -176,6 +280,12 @@ class SessionServiceTest {
 
         assertTrue(session.getUsers().contains(user));
         verify(sessionRepository, times(1)).save(session);
+        // L'événement est publié, il ne sera journalisé qu'après le commit
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof ParticipationEvent
+                && ((ParticipationEvent) event).getType() == ParticipationEvent.Type.JOINED
+                && ((ParticipationEvent) event).getUserId().equals(userId)));
+        // Les lectures suivantes de l'utilisateur restent sur la base primaire
+        verify(stickiness, times(1)).markWrite();
     }
 
     @Test
@@ -191,6 +301,7 @@ class SessionServiceTest {
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
 
         assertThrows(BadRequestException.class, () -> sessionService.participate(sessionId, userId));
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -208,6 +319,8 @@ class SessionServiceTest {
 
         assertFalse(session.getUsers().contains(user));
         verify(sessionRepository, times(1)).save(session);
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof ParticipationEvent
+                && ((ParticipationEvent) event).getType() == ParticipationEvent.Type.LEFT));
     }
 
     @Test
@@ -222,7 +335,6 @@ class SessionServiceTest {
         assertThrows(BadRequestException.class, () -> sessionService.noLongerParticipate(sessionId, userId));
     }
 
-    /*
     @Test
     void testParticipateSessionNotFound() {
         Long sessionId = 1L;
@@ -231,9 +343,7 @@ class SessionServiceTest {
 
         assertThrows(NotFoundException.class, () -> sessionService.participate(sessionId, userId));
     }
-    */
 
-    /*
     @Test
     void testParticipateUserNotFound() {
         Long sessionId = 1L;
@@ -244,7 +354,20 @@ class SessionServiceTest {
 
         assertThrows(NotFoundException.class, () -> sessionService.participate(sessionId, userId));
     }
-     */
+
+    @Test
+    void testNoLongerParticipateSessionNotFound() {
+        when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> sessionService.noLongerParticipate(1L, 2L));
+    }
+
+    @Test
+    void testExpectedErrors_CarryNoStackTrace() {
+        // Erreurs attendues sur le chemin de la requête : aucune trace de pile n'est capturée
+        assertEquals(0, new NotFoundException().getStackTrace().length);
+        assertEquals(0, new BadRequestException().getStackTrace().length);
+    }
     
     
     /*
@@ -266,5 +389,138 @@ class SessionServiceTest {
         verify(sessionRepository, times(1)).save(session);
     }
     */
-  
+
+    @Test
+    void testParticipantCounts_ReturnsCountsBySessionId() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] {1L, 3L});
+        rows.add(new Object[] {2L, 0L});
+        when(sessionRepository.countParticipantsBySession()).thenReturn(rows);
+
+        Map<Long, Long> counts = sessionService.participantCounts();
+
+        assertEquals(3L, counts.get(1L));
+        assertEquals(0L, counts.get(2L));
+        // Le comptage ne charge aucune session
+        verify(sessionRepository, never()).findAll();
+    }
+
+    @Test
+    void testFindParticipants_UnknownSession_ReturnsNull() {
+        when(sessionRepository.existsById(1L)).thenReturn(false);
+
+        assertNull(sessionService.findParticipants(1L, PageRequest.of(0, 20)));
+        verify(userRepository, never()).findParticipants(anyLong(), any());
+    }
+
+    @Test
+    void testFindParticipants_ReturnsRepositoryPage() {
+        Page<User> page = new PageImpl<>(Collections.singletonList(new User()));
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.findParticipants(1L, PageRequest.of(0, 20))).thenReturn(page);
+
+        assertSame(page, sessionService.findParticipants(1L, PageRequest.of(0, 20)));
+    }
+
+    @Test
+    void testFindChunk_WithoutUsers_ReturnsSessionsAfterId() {
+        List<Session> sessions = Collections.singletonList(new Session().setId(51L));
+        when(sessionRepository.findByIdGreaterThanOrderByIdAsc(50L, PageRequest.of(0, 50))).thenReturn(sessions);
+
+        assertSame(sessions, sessionService.findChunk(50L, 50, false));
+    }
+
+    private Session booked(Long id, Long teacherId, long startMs, int duration) {
+        Session session = new Session().setId(id).setTeacher(new Teacher().setId(teacherId))
+                .setDate(new Date(startMs)).setDuration(duration);
+        when(sessionRepository.save(any(Session.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        return sessionService.create(session);
+    }
+
+    @Test
+    void testCreateSession_OverlappingSameTeacher_ThrowsScheduleConflict() {
+        booked(1L, 7L, 0L, 60);
+
+        Session overlapping = new Session().setId(2L).setTeacher(new Teacher().setId(7L))
+                .setDate(new Date(30 * 60_000L)).setDuration(60);
+
+        ScheduleConflictException e = assertThrows(ScheduleConflictException.class, () -> sessionService.create(overlapping));
+        assertEquals(1L, e.getConflictingSessionId());
+        verify(sessionRepository, never()).save(overlapping);
+    }
+
+    @Test
+    void testCreateSession_BackToBackOrOtherTeacher_IsAccepted() {
+        booked(1L, 7L, 0L, 60);
+
+        // Un créneau qui commence à la fin du précédent ne le chevauche pas
+        assertNotNull(booked(2L, 7L, 60 * 60_000L, 60));
+        assertNotNull(booked(3L, 8L, 0L, 60));
+    }
+
+    @Test
+    void testUpdateSession_MovedOntoAnotherBooking_ThrowsScheduleConflict() {
+        booked(1L, 7L, 0L, 60);
+        Session current = booked(2L, 7L, 120 * 60_000L, 60);
+        current.setUsers(new ArrayList<>());
+        when(sessionRepository.findById(2L)).thenReturn(Optional.of(current));
+
+        Session moved = new Session().setTeacher(new Teacher().setId(7L)).setDate(new Date(45 * 60_000L));
+
+        assertThrows(ScheduleConflictException.class, () -> sessionService.update(2L, moved));
+    }
+
+    @Test
+    void testUpdateSession_DoesNotConflictWithItself() {
+        Session current = booked(1L, 7L, 0L, 60);
+        current.setUsers(new ArrayList<>());
+        when(sessionRepository.findById(1L)).thenReturn(Optional.of(current));
+
+        Session longer = new Session().setTeacher(new Teacher().setId(7L)).setDate(new Date(0L)).setDuration(90);
+
+        assertEquals(90, sessionService.update(1L, longer).getDuration());
+    }
+
+    @Test
+    void testDeleteSession_FreesTheSlot() {
+        booked(1L, 7L, 0L, 60);
+
+        sessionService.delete(1L);
+
+        assertNotNull(booked(2L, 7L, 0L, 60));
+    }
+
+    @Test
+    void testOperations_RecordFlightRecorderEvents() throws Exception {
+        when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
+        when(sessionRepository.save(any(Session.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        // Le service passe par l'aspect, comme dans le contexte Spring
+        AspectJProxyFactory factory = new AspectJProxyFactory(sessionService);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new SessionOperationAspect());
+        SessionService proxied = factory.getProxy();
+        Path dump = Files.createTempFile("sessions", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("savasana.SessionOperation");
+            recording.start();
+            proxied.getById(1L);
+            assertThrows(NotFoundException.class, () -> proxied.participate(1L, 2L));
+            proxied.create(new Session().setId(5L));
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        // Les appels terminés par une exception sont aussi enregistrés
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        Files.delete(dump);
+        assertEquals(3, events.size());
+        assertEquals("getById", events.get(0).getString("operation"));
+        assertEquals(1L, events.get(0).getLong("sessionId"));
+        assertEquals("participate", events.get(1).getString("operation"));
+        assertEquals(2L, events.get(1).getLong("userId"));
+        // Pour une création, l'identifiant vient de la session renvoyée
+        assertEquals("create", events.get(2).getString("operation"));
+        assertEquals(5L, events.get(2).getLong("sessionId"));
+    }
 }
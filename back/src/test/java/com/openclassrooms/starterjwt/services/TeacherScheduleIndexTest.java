@@ -0,0 +1,51 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+class TeacherScheduleIndexTest {
+
+    @Mock
+    private SessionRepository sessionRepository;
+
+    private TeacherScheduleIndex scheduleIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        scheduleIndex = new TeacherScheduleIndex(sessionRepository);
+    }
+
+    @Test
+    void testBookingDuringReloadIsNotLost() throws Exception {
+        Date start = new Date(System.currentTimeMillis() + 3_600_000L);
+        Thread booking = new Thread(() -> scheduleIndex.book(
+                new Session().setId(2L).setTeacher(new Teacher().setId(7L)).setDate(start).setDuration(60)));
+        when(sessionRepository.findTeacherSchedule(eq(7L), any(Date.class))).thenAnswer(invocation -> {
+            // Une réservation arrive pendant la lecture : elle attend la fin du rechargement
+            booking.start();
+            booking.join(200);
+            assertTrue(booking.isAlive());
+            return Collections.emptyList();
+        });
+
+        scheduleIndex.reloadAfterCommit(Collections.singletonList(7L));
+        booking.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertEquals(2L, scheduleIndex.findConflict(7L, start, 60, null));
+    }
+}
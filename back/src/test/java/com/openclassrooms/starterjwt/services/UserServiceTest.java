@@ -1,8 +1,11 @@
 package com.openclassrooms.starterjwt.services;
 
 
+import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.BulkDeleteResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.TokenVersionRegistry;
 import com.openclassrooms.starterjwt.services.UserService;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -10,8 +13,14 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -22,6 +31,12 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private TokenVersionRegistry tokenVersionRegistry;
+
     // Injection automatique du mock UserRepository dans l'instance de UserService
     @InjectMocks
     private UserService userService;
@@ -30,6 +45,9 @@ class UserServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        // Le TransactionTemplate simulé exécute directement le callback
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
     }
 
     // Test pour vérifier le fonctionnement de la méthode delete()
@@ -40,8 +58,93 @@ class UserServiceTest {
         // Appel de la méthode à tester
         userService.delete(userId);
 
-        // Vérification que la méthode deleteById() du repository a été appelée avec le bon argument
-        verify(userRepository, times(1)).deleteById(userId);
+        // Vérification que les participations puis l'utilisateur sont supprimés sans charger l'entité
+        verify(userRepository, times(1)).deleteParticipationsByUserIds(Collections.singletonList(userId));
+        verify(userRepository, times(1)).deleteAllByIds(Collections.singletonList(userId));
+        verify(userRepository, never()).findById(userId);
+        // Les jetons déjà émis pour cet utilisateur sont révoqués
+        verify(tokenVersionRegistry).revokeAll(userId);
+    }
+
+    // Test pour vérifier la suppression en masse découpée en lots
+    @Test
+    void testDeleteAllInChunks() {
+        userService.setDeleteChunkSize(2);
+        when(userRepository.deleteParticipationsByUserIds(anyCollection())).thenReturn(1);
+        when(userRepository.deleteAllByIds(anyCollection())).thenAnswer(invocation ->
+                invocation.<List<Long>>getArgument(0).size());
+
+        // Les doublons ne sont supprimés qu'une seule fois
+        BulkDeleteResponse response = userService.deleteAll(Arrays.asList(1L, 2L, 3L, 2L, 4L, 5L));
+
+        assertEquals(5, response.getRequested());
+        assertEquals(5, response.getUsersDeleted());
+        assertEquals(3, response.getParticipationsDeleted());
+        assertEquals(3, response.getChunks());
+        verify(transactionTemplate, times(3)).execute(any());
+        verify(userRepository).deleteAllByIds(Arrays.asList(1L, 2L));
+        verify(userRepository).deleteAllByIds(Arrays.asList(3L, 4L));
+        verify(userRepository).deleteAllByIds(Collections.singletonList(5L));
+        verify(tokenVersionRegistry, times(5)).revokeAll(anyLong());
+    }
+
+    // Une taille de lot nulle ou négative ferait boucler deleteAll indéfiniment
+    @Test
+    void testSetDeleteChunkSize_RejectsNonPositive() {
+        assertThrows(IllegalArgumentException.class, () -> userService.setDeleteChunkSize(0));
+        assertThrows(IllegalArgumentException.class, () -> userService.setDeleteChunkSize(-1));
+        assertEquals(500, userService.getDeleteChunkSize());
+    }
+
+    // Test pour vérifier la révocation forcée des jetons d'un utilisateur
+    @Test
+    void testRevokeTokens() {
+        when(userRepository.incrementTokenVersion(1L)).thenReturn(1);
+        when(userRepository.findTokenVersion(1L)).thenReturn(Optional.of(3));
+
+        userService.revokeTokens(1L);
+
+        // Incrément atomique en base, sans lecture-modification-écriture de l'entité
+        verify(userRepository).incrementTokenVersion(1L);
+        verify(userRepository, never()).save(any());
+        verify(tokenVersionRegistry).record(1L, 3);
+    }
+
+    @Test
+    void testRevokeTokensWhenUserDoesNotExist() {
+        when(userRepository.incrementTokenVersion(1L)).thenReturn(0);
+
+        assertThrows(NotFoundException.class, () -> userService.revokeTokens(1L));
+        verifyNoInteractions(tokenVersionRegistry);
+    }
+
+    // La révocation est durable : un registre neuf (redémarrage, autre instance) rejette l'ancien jeton
+    @Test
+    void testRevokedToken_StaysRejectedByANewRegistry() {
+        AtomicInteger storedVersion = new AtomicInteger(0);
+        when(userRepository.incrementTokenVersion(1L)).thenAnswer(invocation -> {
+            storedVersion.incrementAndGet();
+            return 1;
+        });
+        when(userRepository.findTokenVersion(1L)).thenAnswer(invocation -> Optional.of(storedVersion.get()));
+        TokenVersionRegistry before = new TokenVersionRegistry(userRepository, 5000, 1000);
+        assertTrue(before.isCurrent(1L, 0));
+
+        userService.revokeTokens(1L);
+
+        TokenVersionRegistry restarted = new TokenVersionRegistry(userRepository, 5000, 1000);
+        assertFalse(restarted.isCurrent(1L, 0));
+        assertTrue(restarted.isCurrent(1L, 1));
+    }
+
+    // Un utilisateur supprimé n'a plus de ligne en base : ses jetons sont rejetés partout
+    @Test
+    void testDeletedUser_TokensRejectedByANewRegistry() {
+        when(userRepository.findTokenVersion(1L)).thenReturn(Optional.empty());
+
+        userService.delete(1L);
+
+        assertFalse(new TokenVersionRegistry(userRepository, 5000, 1000).isCurrent(1L, 0));
     }
 
     // Test pour vérifier le fonctionnement de la méthode findById() lorsque l'utilisateur existe
@@ -11,7 +11,22 @@ CREATE TABLE `SESSIONS` (
   `name` VARCHAR(50),
   `description` VARCHAR(2000),
   `date` TIMESTAMP,
+  `duration` INT NOT NULL DEFAULT 60,
   `teacher_id` int,
+  `series_id` INT,
+  `version` INT NOT NULL DEFAULT 0,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+CREATE TABLE `SESSION_SERIES` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `name` VARCHAR(50),
+  `description` VARCHAR(2000),
+  `teacher_id` int,
+  `start_date` TIMESTAMP NULL,
+  `recurrence` VARCHAR(255),
+  `materialized_until` TIMESTAMP NULL,
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
   `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
@@ -21,20 +36,80 @@ CREATE TABLE `USERS` (
   `last_name` VARCHAR(40),
   `first_name` VARCHAR(40),
   `admin` BOOLEAN NOT NULL DEFAULT false,
+  `token_version` INT NOT NULL DEFAULT 0,
   `email` VARCHAR(255),
   `password` VARCHAR(255),
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
   `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
 
+CREATE TABLE `REFRESH_TOKENS` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `token_hash` CHAR(64) NOT NULL,
+  `user_id` INT NOT NULL,
+  `token_version` INT NOT NULL DEFAULT 0,
+  `expires_at` DATETIME NOT NULL,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE `EVENTS` (
+  `id` BIGINT PRIMARY KEY AUTO_INCREMENT,
+  `type` VARCHAR(16) NOT NULL,
+  `session_id` INT NOT NULL,
+  `user_id` INT NOT NULL,
+  `occurred_at` TIMESTAMP(3) NOT NULL
+);
+
+-- Drained with SELECT ... FOR UPDATE SKIP LOCKED: MySQL 8.0 or later (or set oc.app.outbox.enabled=false).
+CREATE TABLE `OUTBOX` (
+  `id` BIGINT PRIMARY KEY AUTO_INCREMENT,
+  `event_type` VARCHAR(32) NOT NULL,
+  `aggregate_id` INT NOT NULL,
+  `payload` TEXT NOT NULL,
+  `attempts` INT NOT NULL DEFAULT 0,
+  `available_at` DATETIME(3),
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE `ATTENDANCE_ROLLUP` (
+  `day` DATE NOT NULL,
+  `teacher_id` INT NOT NULL,
+  `hour` TINYINT NOT NULL,
+  `sessions` INT NOT NULL,
+  `participations` INT NOT NULL,
+  PRIMARY KEY (`day`, `teacher_id`, `hour`)
+);
+
+-- Signing keys shared by every instance. Private material is AES-GCM encrypted.
+CREATE TABLE `JWT_KEYS` (
+  `kid` VARCHAR(32) PRIMARY KEY,
+  `algorithm` VARCHAR(8) NOT NULL,
+  `private_key` VARCHAR(4096) NOT NULL,
+  `public_key` VARCHAR(1024),
+  `created_at` BIGINT NOT NULL,
+  `retire_at` BIGINT
+);
+
 CREATE TABLE `PARTICIPATE` (
   `user_id` INT, 
   `session_id` INT
 );
 
 ALTER TABLE `SESSIONS` ADD FOREIGN KEY (`teacher_id`) REFERENCES `TEACHERS` (`id`);
+ALTER TABLE `SESSIONS` ADD FOREIGN KEY (`series_id`) REFERENCES `SESSION_SERIES` (`id`);
+ALTER TABLE `SESSION_SERIES` ADD FOREIGN KEY (`teacher_id`) REFERENCES `TEACHERS` (`id`);
+CREATE UNIQUE INDEX `UK_SESSIONS_SERIES_DATE` ON `SESSIONS` (`series_id`, `date`);
+CREATE INDEX `IDX_SESSIONS_DATE` ON `SESSIONS` (`date`);
+CREATE INDEX `IDX_SESSIONS_TEACHER_DATE` ON `SESSIONS` (`teacher_id`, `date`);
+CREATE INDEX `IDX_PARTICIPATE_USER_SESSION` ON `PARTICIPATE` (`user_id`, `session_id`);
+CREATE UNIQUE INDEX `UK_USERS_EMAIL` ON `USERS` (`email`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
+ALTER TABLE `REFRESH_TOKENS` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`) ON DELETE CASCADE;
+CREATE UNIQUE INDEX `UK_REFRESH_TOKENS_HASH` ON `REFRESH_TOKENS` (`token_hash`);
+CREATE INDEX `IDX_REFRESH_TOKENS_EXPIRES_AT` ON `REFRESH_TOKENS` (`expires_at`);
+CREATE INDEX `IDX_OUTBOX_AVAILABLE_AT` ON `OUTBOX` (`available_at`, `id`);
+CREATE INDEX `IDX_EVENTS_SESSION_OCCURRED_AT` ON `EVENTS` (`session_id`, `occurred_at`);
 
 INSERT INTO TEACHERS (first_name, last_name)
 VALUES ('Margot', 'DELAHAYE'),